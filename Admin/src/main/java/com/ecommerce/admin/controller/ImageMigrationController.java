@@ -0,0 +1,47 @@
+package com.ecommerce.admin.controller;
+
+import com.ecommerce.admin.job.ImageMigrationJob;
+import com.ecommerce.admin.job.ImageMigrationStatus;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Controls the migration of Base64 product images into the image store and reports its throughput
+ */
+@RestController
+@RequestMapping("/image-migration")
+@RequiredArgsConstructor
+public class ImageMigrationController {
+    private final ImageMigrationJob imageMigrationJob;
+
+    /**
+     * @return progress, rows per second and megabytes per second of the current or last run
+     */
+    @GetMapping
+    public ImageMigrationStatus status() {
+        return imageMigrationJob.status();
+    }
+
+    /**
+     * Starts the job, it resumes from the last checkpoint
+     * @return progress after starting
+     */
+    @PostMapping("/start")
+    public ImageMigrationStatus start() {
+        imageMigrationJob.start();
+        return imageMigrationJob.status();
+    }
+
+    /**
+     * Stops the job once the current chunk is committed
+     * @return progress after the stop request
+     */
+    @PostMapping("/stop")
+    public ImageMigrationStatus stop() {
+        imageMigrationJob.stop();
+        return imageMigrationJob.status();
+    }
+}
@@ -0,0 +1,63 @@
+package com.ecommerce.admin.controller;
+
+import com.ecommerce.library.bulk.ImportResult;
+import com.ecommerce.library.bulk.ProductExporter;
+import com.ecommerce.library.bulk.ProductImporter;
+import com.ecommerce.library.bulk.ProductRowReader;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Imports products from a CSV or JSON file and exports the whole catalog, both streamed
+ */
+@RestController
+@RequestMapping("/products-bulk")
+@RequiredArgsConstructor
+public class ProductBulkController {
+    private final ProductImporter productImporter;
+
+    private final ProductExporter productExporter;
+
+    /**
+     * @param file CSV with a header row, or a JSON array when the name ends in .json
+     * @return imported and rejected counts, with the line and reason of each rejected row
+     */
+    @PostMapping("/import")
+    public ImportResult importProducts(@RequestParam("file") MultipartFile file) throws IOException {
+        try (ProductRowReader reader = ProductRowReader.of(file.getOriginalFilename(), file.getInputStream())) {
+            return productImporter.importProducts(reader);
+        }
+    }
+
+    /**
+     * @param format csv or json
+     * @return every product, written to the response while it is read from the database
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportProducts(@RequestParam(defaultValue = "csv") String format) {
+        boolean json = format.equalsIgnoreCase("json");
+        StreamingResponseBody body = json
+                ? productExporter::exportJson
+                : output -> productExporter.exportCsv(
+                        new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8)));
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"products." + (json ? "json" : "csv") + "\"")
+                .contentType(json ? MediaType.APPLICATION_JSON : new MediaType("text", "csv", StandardCharsets.UTF_8))
+                .body(body);
+    }
+}
@@ -1,6 +1,7 @@
 package com.ecommerce.admin.controller;
 
 import com.ecommerce.library.dto.ProductDto;
+import com.ecommerce.library.dto.ProductSummary;
 import com.ecommerce.library.model.Category;
 import com.ecommerce.library.service.CategoryService;
 import com.ecommerce.library.service.ProductService;
@@ -48,7 +49,7 @@ public class ProductController {
         if (principal == null) {
             return "redirect:/login";
         }
-        List<ProductDto> products = productService.allProduct();
+        List<ProductSummary> products = productService.allProduct();
         model.addAttribute("products", products);
         model.addAttribute("size", products.size());
         return "products";
@@ -56,24 +57,31 @@ public class ProductController {
 
     /**
      * Makes GET requests to /products/{pageNo} with the pagination page number.
-     * Checks authentication and calls productService.getAllProducts(pageNo) to get products paged.
+     * Checks authentication and calls productService.getAllProducts(pageNo, after) to get products paged.
      * Adds information about the products, the current page, and the total number of pages to the model.
+     * The next link carries the id of the last product shown, so deep pages are read by seeking past it.
      * @param pageNo
+     * @param after
      * @param model
      * @param principal
      * @return page number of products
      */
     @GetMapping("/products/{pageNo}")
-    public String allProducts(@PathVariable("pageNo") int pageNo, Model model, Principal principal) {
+    public String allProducts(@PathVariable("pageNo") int pageNo,
+                              @RequestParam(value = "after", required = false) Long after,
+                              Model model, Principal principal) {
         if (principal == null) {
             return "redirect:/login";
         }
-        Page<ProductDto> products = productService.getAllProducts(pageNo);
+        Page<ProductSummary> products = productService.getAllProducts(pageNo, after);
         model.addAttribute("title", "Manage Products");
         model.addAttribute("size", products.getSize());
         model.addAttribute("products", products);
         model.addAttribute("currentPage", pageNo);
         model.addAttribute("totalPages", products.getTotalPages());
+        if (products.hasContent()) {
+            model.addAttribute("lastId", products.getContent().get(products.getNumberOfElements() - 1).getId());
+        }
         return "products";
     }
 
@@ -95,7 +103,7 @@ public class ProductController {
         if (principal == null) {
             return "redirect:/login";
         }
-        Page<ProductDto> products = productService.searchProducts(pageNo, keyword);
+        Page<ProductSummary> products = productService.searchProducts(pageNo, keyword);
         model.addAttribute("title", "Result Search Products");
         model.addAttribute("size", products.getSize());
         model.addAttribute("products", products);
@@ -0,0 +1,204 @@
+package com.ecommerce.admin.job;
+
+import com.ecommerce.library.event.ProductImagesMigratedEvent;
+import com.ecommerce.library.model.MigrationCheckpoint;
+import com.ecommerce.library.utils.ImageUpload;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Base64;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Background job that moves Base64 images out of products.image into the image store
+ * Walks the products in id order, one chunk per transaction, through a stateless session so nothing accumulates
+ * in a persistence context. The last committed id is kept in migration_checkpoints, a restart resumes from there.
+ * Writing the same image twice is harmless because the store is content-addressed.
+ * Every committed chunk is published as a ProductImagesMigratedEvent, so the catalog version moves and both apps
+ * serve the images of the chunk from the store.
+ */
+@Component
+public class ImageMigrationJob {
+    private static final String JOB_NAME = "product-images";
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    private final ImageUpload imageUpload;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final int chunkSize;
+
+    private final boolean enabled;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "image-migration");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicLong migrated = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private volatile boolean stopRequested;
+    private volatile Long lastId;
+    private volatile long startedAt;
+    private volatile long finishedAt;
+    private volatile String lastError;
+
+    public ImageMigrationJob(EntityManagerFactory entityManagerFactory,
+                             ImageUpload imageUpload,
+                             ApplicationEventPublisher eventPublisher,
+                             @Value("${image.migration.chunk-size:50}") int chunkSize,
+                             @Value("${image.migration.enabled:true}") boolean enabled) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.imageUpload = imageUpload;
+        this.eventPublisher = eventPublisher;
+        this.chunkSize = chunkSize;
+        this.enabled = enabled;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startOnBoot() {
+        if (enabled) {
+            start();
+        }
+    }
+
+    /**
+     * @return false when the job is already running
+     */
+    public boolean start() {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        stopRequested = false;
+        lastError = null;
+        migrated.set(0);
+        failed.set(0);
+        bytesWritten.set(0);
+        startedAt = System.nanoTime();
+        finishedAt = 0;
+        executor.submit(this::run);
+        return true;
+    }
+
+    /**
+     * Stops after the current chunk is committed
+     */
+    public void stop() {
+        stopRequested = true;
+    }
+
+    public ImageMigrationStatus status() {
+        long end = finishedAt != 0 ? finishedAt : System.nanoTime();
+        double seconds = startedAt == 0 ? 0 : (end - startedAt) / 1e9;
+        double rowsPerSecond = seconds > 0 ? migrated.get() / seconds : 0;
+        double megabytesPerSecond = seconds > 0 ? bytesWritten.get() / 1e6 / seconds : 0;
+        return new ImageMigrationStatus(running.get(), lastId, migrated.get(), failed.get(), bytesWritten.get(),
+                rowsPerSecond, megabytesPerSecond, lastError);
+    }
+
+    private void run() {
+        SessionFactory sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+        try (StatelessSession session = sessionFactory.openStatelessSession()) {
+            MigrationCheckpoint checkpoint = session.get(MigrationCheckpoint.class, JOB_NAME);
+            boolean exists = checkpoint != null;
+            if (!exists) {
+                checkpoint = new MigrationCheckpoint(JOB_NAME, 0L, 0, 0, new Date());
+            }
+            lastId = checkpoint.getLastId();
+            while (!stopRequested) {
+                Transaction transaction = session.beginTransaction();
+                try {
+                    List<Object[]> rows = session.createQuery(
+                                    "select p.id, p.image from Product p where p.id > :lastId " +
+                                            "and p.imageKey is null and p.image is not null order by p.id", Object[].class)
+                            .setParameter("lastId", lastId)
+                            .setMaxResults(chunkSize)
+                            .list();
+                    if (rows.isEmpty()) {
+                        transaction.commit();
+                        break;
+                    }
+                    long chunkLastId = lastId;
+                    Map<Long, String> chunkKeys = new HashMap<>();
+                    long chunkFailed = 0;
+                    for (Object[] row : rows) {
+                        Long id = (Long) row[0];
+                        String key = migrate(session, id, (String) row[1]);
+                        if (key != null) {
+                            chunkKeys.put(id, key);
+                        } else {
+                            chunkFailed++;
+                        }
+                        chunkLastId = id;
+                    }
+                    long chunkMigrated = chunkKeys.size();
+                    checkpoint.setLastId(chunkLastId);
+                    checkpoint.setProcessed(checkpoint.getProcessed() + chunkMigrated);
+                    checkpoint.setFailed(checkpoint.getFailed() + chunkFailed);
+                    checkpoint.setUpdatedAt(new Date());
+                    if (exists) {
+                        session.update(checkpoint);
+                    } else {
+                        session.insert(checkpoint);
+                        exists = true;
+                    }
+                    transaction.commit();
+                    lastId = chunkLastId;
+                    migrated.addAndGet(chunkMigrated);
+                    failed.addAndGet(chunkFailed);
+                    if (!chunkKeys.isEmpty()) {
+                        eventPublisher.publishEvent(new ProductImagesMigratedEvent(chunkKeys));
+                    }
+                } catch (RuntimeException e) {
+                    transaction.rollback();
+                    throw e;
+                }
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            lastError = e.getMessage();
+        } finally {
+            finishedAt = System.nanoTime();
+            running.set(false);
+        }
+    }
+
+    /**
+     * @return the image key, null when the image could not be stored
+     */
+    private String migrate(StatelessSession session, Long id, String image) {
+        byte[] bytes;
+        String key;
+        try {
+            bytes = Base64.getMimeDecoder().decode(image);
+            key = imageUpload.store(bytes);
+        } catch (Exception e) {
+            lastError = "Product " + id + ": " + e.getMessage();
+            return null;
+        }
+        session.createMutationQuery("update Product p set p.imageKey = :key, p.image = null where p.id = :id")
+                .setParameter("key", key)
+                .setParameter("id", id)
+                .executeUpdate();
+        bytesWritten.addAndGet(bytes.length);
+        return key;
+    }
+}
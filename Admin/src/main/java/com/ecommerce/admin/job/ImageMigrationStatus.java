@@ -0,0 +1,14 @@
+package com.ecommerce.admin.job;
+
+/**
+ * Snapshot of the image migration progress, serialized as JSON by the controller
+ */
+public record ImageMigrationStatus(boolean running,
+                                   Long lastId,
+                                   long migrated,
+                                   long failed,
+                                   long bytesWritten,
+                                   double rowsPerSecond,
+                                   double megabytesPerSecond,
+                                   String lastError) {
+}
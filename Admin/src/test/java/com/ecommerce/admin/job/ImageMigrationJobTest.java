@@ -0,0 +1,248 @@
+package com.ecommerce.admin.job;
+
+import com.ecommerce.library.event.ProductImagesMigratedEvent;
+import com.ecommerce.library.model.MigrationCheckpoint;
+import com.ecommerce.library.utils.ImageUpload;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+import org.hibernate.query.MutationQuery;
+import org.hibernate.query.Query;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InOrder;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.RETURNS_SELF;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * The stateless session works on an in-memory products table: updates and the checkpoint are kept aside and only
+ * applied when the transaction commits, a rollback drops them
+ */
+class ImageMigrationJobTest {
+    @TempDir
+    Path store;
+
+    private final TreeMap<Long, String> images = new TreeMap<>();
+
+    private final Map<Long, String> keys = new HashMap<>();
+
+    private final List<Runnable> uncommitted = new ArrayList<>();
+
+    private final List<Long> chunksAfter = new ArrayList<>();
+
+    private final ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+
+    private MigrationCheckpoint checkpoint;
+
+    private int commits;
+
+    private int failingCommit;
+
+    private StatelessSession session;
+
+    private Transaction transaction;
+
+    @BeforeEach
+    void products() {
+        for (long id = 1; id <= 5; id++) {
+            images.put(id, Base64.getEncoder().encodeToString(("image " + id).getBytes(StandardCharsets.UTF_8)));
+        }
+    }
+
+    @Test
+    void migratesInChunksByIdAndPublishesEachChunk() throws Exception {
+        images.remove(3L);
+        keys.put(3L, "already-in-the-store");
+
+        ImageMigrationStatus status = runToEnd(job(2));
+
+        assertEquals(List.of(0L, 2L, 5L), chunksAfter);
+        assertEquals(4, status.migrated());
+        assertEquals(0, status.failed());
+        assertTrue(images.isEmpty());
+        for (long id : new long[]{1, 2, 4, 5}) {
+            assertTrue(Files.exists(new ImageUpload(store.toString()).resolve(keys.get(id))));
+        }
+        assertEquals(5L, checkpoint.getLastId());
+        assertEquals(4, checkpoint.getProcessed());
+        verify(eventPublisher, times(2)).publishEvent(any(ProductImagesMigratedEvent.class));
+    }
+
+    @Test
+    void writesTheCheckpointInTheTransactionOfTheChunk() throws Exception {
+        runToEnd(job(5));
+
+        InOrder order = inOrder(session, transaction);
+        order.verify(session).beginTransaction();
+        order.verify(session).insert(any(MigrationCheckpoint.class));
+        order.verify(transaction).commit();
+        order.verify(session).beginTransaction();
+        order.verify(transaction).commit();
+    }
+
+    @Test
+    void resumesAfterTheLastCommittedChunk() throws Exception {
+        failingCommit = 2;
+
+        ImageMigrationStatus failed = runToEnd(job(2));
+
+        assertNotNull(failed.lastError());
+        assertEquals(2L, checkpoint.getLastId());
+        assertFalse(keys.containsKey(3L));
+        assertEquals(List.of(3L, 4L, 5L), new ArrayList<>(images.keySet()));
+
+        failingCommit = 0;
+        chunksAfter.clear();
+        ImageMigrationStatus resumed = runToEnd(job(2));
+
+        assertNull(resumed.lastError());
+        assertEquals(List.of(2L, 4L, 5L), chunksAfter);
+        assertEquals(3, resumed.migrated());
+        assertEquals(5L, checkpoint.getLastId());
+        assertEquals(5, checkpoint.getProcessed());
+        assertTrue(images.isEmpty());
+    }
+
+    @Test
+    void countsEveryImageThatCannotBeStored() throws Exception {
+        images.put(2L, "A");
+        images.put(4L, "A");
+
+        ImageMigrationStatus status = runToEnd(job(2));
+
+        assertEquals(3, status.migrated());
+        assertEquals(2, status.failed());
+        assertEquals(2, checkpoint.getFailed());
+        assertEquals(5L, checkpoint.getLastId());
+        assertTrue(status.lastError().startsWith("Product 4"));
+        assertEquals(List.of(2L, 4L), new ArrayList<>(images.keySet()));
+    }
+
+    private ImageMigrationJob job(int chunkSize) {
+        session = session();
+        SessionFactory sessionFactory = mock(SessionFactory.class);
+        when(sessionFactory.openStatelessSession()).thenReturn(session);
+        EntityManagerFactory entityManagerFactory = mock(EntityManagerFactory.class);
+        when(entityManagerFactory.unwrap(SessionFactory.class)).thenReturn(sessionFactory);
+        return new ImageMigrationJob(entityManagerFactory, new ImageUpload(store.toString()), eventPublisher,
+                chunkSize, false);
+    }
+
+    @SuppressWarnings("unchecked")
+    private StatelessSession session() {
+        StatelessSession session = mock(StatelessSession.class);
+        when(session.get(MigrationCheckpoint.class, "product-images")).thenAnswer(call -> copy(checkpoint));
+
+        transaction = mock(Transaction.class);
+        when(session.beginTransaction()).thenReturn(transaction);
+        doAnswer(call -> {
+            if (++commits == failingCommit) {
+                throw new IllegalStateException("connection lost");
+            }
+            uncommitted.forEach(Runnable::run);
+            uncommitted.clear();
+            return null;
+        }).when(transaction).commit();
+        doAnswer(call -> {
+            uncommitted.clear();
+            return null;
+        }).when(transaction).rollback();
+
+        Query<Object[]> select = mock(Query.class, RETURNS_SELF);
+        long[] after = new long[1];
+        int[] max = new int[1];
+        when(session.createQuery(anyString(), eq(Object[].class))).thenReturn(select);
+        when(select.setParameter(eq("lastId"), any())).thenAnswer(call -> {
+            after[0] = call.<Long>getArgument(1);
+            return select;
+        });
+        when(select.setMaxResults(anyInt())).thenAnswer(call -> {
+            max[0] = call.getArgument(0);
+            return select;
+        });
+        when(select.list()).thenAnswer(call -> {
+            chunksAfter.add(after[0]);
+            List<Object[]> rows = new ArrayList<>();
+            for (Map.Entry<Long, String> image : images.tailMap(after[0], false).entrySet()) {
+                if (rows.size() < max[0]) {
+                    rows.add(new Object[]{image.getKey(), image.getValue()});
+                }
+            }
+            return rows;
+        });
+
+        when(session.createMutationQuery(anyString())).thenAnswer(call -> {
+            MutationQuery update = mock(MutationQuery.class, RETURNS_SELF);
+            Map<String, Object> parameters = new HashMap<>();
+            when(update.setParameter(anyString(), any())).thenAnswer(set -> {
+                parameters.put(set.getArgument(0), set.getArgument(1));
+                return update;
+            });
+            when(update.executeUpdate()).thenAnswer(execute -> {
+                Long id = (Long) parameters.get("id");
+                String key = (String) parameters.get("key");
+                uncommitted.add(() -> {
+                    images.remove(id);
+                    keys.put(id, key);
+                });
+                return 1;
+            });
+            return update;
+        });
+
+        doAnswer(call -> {
+            MigrationCheckpoint saved = copy(call.getArgument(0));
+            uncommitted.add(() -> checkpoint = saved);
+            return saved.getName();
+        }).when(session).insert(any(MigrationCheckpoint.class));
+        doAnswer(call -> {
+            MigrationCheckpoint saved = copy(call.getArgument(0));
+            uncommitted.add(() -> checkpoint = saved);
+            return null;
+        }).when(session).update(any(MigrationCheckpoint.class));
+        return session;
+    }
+
+    private static MigrationCheckpoint copy(MigrationCheckpoint checkpoint) {
+        return checkpoint == null ? null : new MigrationCheckpoint(checkpoint.getName(), checkpoint.getLastId(),
+                checkpoint.getProcessed(), checkpoint.getFailed(), checkpoint.getUpdatedAt());
+    }
+
+    private static ImageMigrationStatus runToEnd(ImageMigrationJob job) throws InterruptedException {
+        assertTrue(job.start());
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (job.status().running()) {
+            assertTrue(System.currentTimeMillis() < deadline, "still running");
+            Thread.sleep(5);
+        }
+        return job.status();
+    }
+}
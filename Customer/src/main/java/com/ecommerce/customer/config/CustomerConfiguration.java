@@ -61,10 +61,11 @@ public class CustomerConfiguration {
      * You configure how HTTP requests should be secured, which paths are allowed
      * for all and which require authentication.
      * @param http
+     * @param loginHandler merges the guest cart into the customer's cart, then redirects to /index
      * @throws Exception
      */
     @Bean
-    public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain filterChain(HttpSecurity http, GuestCartLoginHandler loginHandler) throws Exception {
         AuthenticationManagerBuilder authenticationManagerBuilder
                 = http.getSharedObject(AuthenticationManagerBuilder.class);
 
@@ -84,7 +85,7 @@ public class CustomerConfiguration {
                 .csrf(AbstractHttpConfigurer::disable)
                 .authorizeHttpRequests(author ->
                         author.requestMatchers(PathRequest.toStaticResources().atCommonLocations()).permitAll()
-                                .requestMatchers("/*", "/product-detail/**").permitAll()
+                                .requestMatchers("/*", "/product-detail/**", "/product-image/**").permitAll()
                                 .requestMatchers("/shop/**", "/find-products/**").hasAuthority("CUSTOMER")
                 )
                 /**
@@ -93,7 +94,7 @@ public class CustomerConfiguration {
                 .formLogin(login ->
                         login.loginPage("/login")
                                 .loginProcessingUrl("/do-login")
-                                .defaultSuccessUrl("/index", true)
+                                .successHandler(loginHandler)
                                 .permitAll()
                 )
                 /**
@@ -0,0 +1,47 @@
+package com.ecommerce.customer.config;
+
+import com.ecommerce.library.cart.GuestCart;
+import com.ecommerce.library.cart.GuestCartCookie;
+import com.ecommerce.library.service.ShoppingCartService;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.web.authentication.SimpleUrlAuthenticationSuccessHandler;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * After a successful login the guest cart cookie is merged into the customer's cart and removed,
+ * then the customer goes to /index as before
+ * When the merge fails the cookie is kept, so the next login tries again
+ */
+@Component
+public class GuestCartLoginHandler extends SimpleUrlAuthenticationSuccessHandler {
+    private final GuestCartCookie guestCartCookie;
+
+    private final ShoppingCartService cartService;
+
+    public GuestCartLoginHandler(GuestCartCookie guestCartCookie, ShoppingCartService cartService) {
+        super("/index");
+        setAlwaysUseDefaultTargetUrl(true);
+        this.guestCartCookie = guestCartCookie;
+        this.cartService = cartService;
+    }
+
+    @Override
+    public void onAuthenticationSuccess(HttpServletRequest request, HttpServletResponse response,
+                                        Authentication authentication) throws IOException, ServletException {
+        GuestCart guestCart = guestCartCookie.read(request);
+        if (!guestCart.isEmpty()) {
+            try {
+                cartService.mergeGuestCart(guestCart, authentication.getName());
+                guestCartCookie.clear(request, response);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+        super.onAuthenticationSuccess(request, response, authentication);
+    }
+}
@@ -3,6 +3,7 @@ package com.ecommerce.customer.controller;
 import com.ecommerce.library.model.Customer;
 import com.ecommerce.library.model.ShoppingCart;
 import com.ecommerce.library.service.CustomerService;
+import com.ecommerce.library.service.ShoppingCartService;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpSession;
 import lombok.RequiredArgsConstructor;
@@ -27,6 +28,8 @@ public class HomeController {
      */
     @Autowired
     private  CustomerService customerService;
+    @Autowired
+    private  ShoppingCartService cartService;
 
     /**
      * Maps the root URL / and /index to the home method. This handles the default
@@ -72,7 +75,7 @@ public class HomeController {
         if (principal != null) {
             Customer customer = customerService.findByUsername(principal.getName());
             session.setAttribute("username", customer.getFirstName() + " " + customer.getLastName());
-            ShoppingCart shoppingCart = customer.getCart();
+            ShoppingCart shoppingCart = cartService.getCart(principal.getName());
             if (shoppingCart != null) {
                 session.setAttribute("totalItems", shoppingCart.getTotalItems());
             }
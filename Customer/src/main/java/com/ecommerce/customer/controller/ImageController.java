@@ -0,0 +1,40 @@
+package com.ecommerce.customer.controller;
+
+import com.ecommerce.library.utils.ImageStreamer;
+import com.ecommerce.library.utils.ImageVariant;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+
+import java.io.IOException;
+
+/**
+ * Serves product images from the image store by their content hash
+ */
+@Controller
+@RequiredArgsConstructor
+public class ImageController {
+    private final ImageStreamer imageStreamer;
+
+    /**
+     * Streams the image with a strong ETag and an immutable Cache-Control header,
+     * answers 304 when the browser already has it
+     * size picks a derivative (thumbnail, card, detail), without it the original is sent
+     * @param key
+     * @param size
+     * @param request
+     * @param response
+     * @throws IOException
+     */
+    @GetMapping("/product-image/{key}")
+    public void image(@PathVariable("key") String key,
+                      @RequestParam(value = "size", required = false) String size,
+                      HttpServletRequest request,
+                      HttpServletResponse response) throws IOException {
+        imageStreamer.stream(key, ImageVariant.fromParameter(size), request, response);
+    }
+}
@@ -1,6 +1,7 @@
 package com.ecommerce.customer.controller;
 
 import com.ecommerce.library.dto.CustomerDto;
+import com.ecommerce.library.inventory.OutOfStockException;
 import com.ecommerce.library.model.*;
 import com.ecommerce.library.service.*;
 import jakarta.servlet.http.HttpSession;
@@ -71,7 +72,7 @@ public class OrderController {
                 model.addAttribute("page", "Profile");
                 return "customer-information";
             } else {
-                ShoppingCart cart = customerService.findByUsername(principal.getName()).getCart();
+                ShoppingCart cart = cartService.getCart(principal.getName());
                 model.addAttribute("customer", customer);
                 model.addAttribute("title", "Check-Out");
                 model.addAttribute("page", "Check-Out");
@@ -157,21 +158,29 @@ public class OrderController {
      * the completed purchase.
      * Order Confirmation: After the order is created, the user is directed to the
      * "Order Detail" page to view the newly created order.
+     * Stock: When a product sold out in the meantime nothing is ordered and the user is sent back to the cart.
      * @param principal
      * @param model
      * @param session
+     * @param attributes
      * @return "order-detail"
      */
     @RequestMapping(value = "/add-order", method = {RequestMethod.POST})
     public String createOrder(Principal principal,
                               Model model,
-                              HttpSession session) {
+                              HttpSession session,
+                              RedirectAttributes attributes) {
         if (principal == null) {
             return "redirect:/login";
         } else {
-            Customer customer = customerService.findByUsername(principal.getName());
-            ShoppingCart cart = customer.getCart();
-            Order order = orderService.save(cart);
+            ShoppingCart cart = cartService.getCart(principal.getName());
+            Order order;
+            try {
+                order = orderService.save(cart);
+            } catch (OutOfStockException e) {
+                attributes.addFlashAttribute("error", "Sorry, one of the products in your cart is sold out");
+                return "redirect:/cart";
+            }
             session.removeAttribute("totalItems");
             model.addAttribute("order", order);
             model.addAttribute("title", "Order Detail");
@@ -1,20 +1,29 @@
 package com.ecommerce.customer.controller;
 
+import com.ecommerce.library.catalog.FacetQuery;
+import com.ecommerce.library.catalog.FacetResult;
+import com.ecommerce.library.catalog.RecentlyViewed;
 import com.ecommerce.library.dto.CategoryDto;
 import com.ecommerce.library.dto.ProductDto;
+import com.ecommerce.library.dto.ProductSummary;
 import com.ecommerce.library.model.Category;
+import com.ecommerce.library.search.Suggestion;
 import com.ecommerce.library.service.CategoryService;
 import com.ecommerce.library.service.ProductService;
+import jakarta.servlet.http.HttpSession;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
 
 import java.security.Principal;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Controller for products
@@ -22,6 +31,8 @@ import java.util.List;
 @Controller
 @RequiredArgsConstructor
 public class ProductController {
+    private static final int RECENTLY_VIEWED = 4;
+
     @Autowired
     private  ProductService productService;
 
@@ -40,7 +51,7 @@ public class ProductController {
         model.addAttribute("page", "Products");
         model.addAttribute("title", "Menu");
         List<Category> categories = categoryService.findAllByActivatedTrue();
-        List<ProductDto> products = productService.products();
+        List<ProductSummary> products = productService.products();
         model.addAttribute("products", products);
         model.addAttribute("categories", categories);
         return "index";
@@ -48,17 +59,22 @@ public class ProductController {
 
 
     /**
-     * Shows the detailed view of a specific product identified by its id.
-     * Related Products: Retrieves and displays products from the same category,
-     * allowing customers to explore similar items.
+     * Shows the detailed view of a specific product identified by its id
+     * and remembers it in the recently viewed products of the session.
+     * Related Products: Displays the precomputed related products, bought together
+     * with this one or popular in the same category, allowing customers to explore similar items.
      * @param id
      * @param model
+     * @param session
      * @return "product-detail"
      */
     @GetMapping("/product-detail/{id}")
-    public String details(@PathVariable("id") Long id, Model model) {
+    public String details(@PathVariable("id") Long id, Model model, HttpSession session) {
         ProductDto product = productService.getById(id);
-        List<ProductDto> productDtoList = productService.findAllByCategory(product.getCategory().getName());
+        RecentlyViewed recentlyViewed = recentlyViewed(session);
+        recentlyViewed.add(id);
+        session.setAttribute(RecentlyViewed.SESSION_ATTRIBUTE, recentlyViewed);
+        List<ProductSummary> productDtoList = productService.relatedProducts(id);
         model.addAttribute("products", productDtoList);
         model.addAttribute("title", "Product Detail");
         model.addAttribute("page", "Product Detail");
@@ -72,14 +88,15 @@ public class ProductController {
      * Product and Category Data: The page includes various lists, such as
      * random products and recently viewed products, making the shopping experience more engaging.
      * @param model
+     * @param session
      * @return "shop-detail"
      */
     @GetMapping("/shop-detail")
-    public String shopDetail(Model model) {
+    public String shopDetail(Model model, HttpSession session) {
         List<CategoryDto> categories = categoryService.getCategoriesAndSize();
         model.addAttribute("categories", categories);
-        List<ProductDto> products = productService.randomProduct();
-        List<ProductDto> listView = productService.listViewProducts();
+        List<ProductSummary> products = productService.randomProduct();
+        List<ProductSummary> listView = productService.listViewProducts(recentlyViewed(session).ids());
         model.addAttribute("productViews", listView);
         model.addAttribute("title", "Shop Detail");
         model.addAttribute("page", "Shop Detail");
@@ -91,14 +108,15 @@ public class ProductController {
     /**
      * Show from high price to low
      * @param model
+     * @param session
      * @return "shop-detail"
      */
     @GetMapping("/high-price")
-    public String filterHighPrice(Model model) {
+    public String filterHighPrice(Model model, HttpSession session) {
         List<CategoryDto> categories = categoryService.getCategoriesAndSize();
         model.addAttribute("categories", categories);
-        List<ProductDto> products = productService.filterHighProducts();
-        List<ProductDto> listView = productService.listViewProducts();
+        List<ProductSummary> products = productService.filterHighProducts();
+        List<ProductSummary> listView = productService.listViewProducts(recentlyViewed(session).ids());
         model.addAttribute("title", "Shop Detail");
         model.addAttribute("page", "Shop Detail");
         model.addAttribute("productViews", listView);
@@ -110,14 +128,15 @@ public class ProductController {
     /**
      * Show from Low price to High
      * @param model
+     * @param session
      * @return "shop-detail"
      */
     @GetMapping("/lower-price")
-    public String filterLowerPrice(Model model) {
+    public String filterLowerPrice(Model model, HttpSession session) {
         List<CategoryDto> categories = categoryService.getCategoriesAndSize();
         model.addAttribute("categories", categories);
-        List<ProductDto> products = productService.filterLowerProducts();
-        List<ProductDto> listView = productService.listViewProducts();
+        List<ProductSummary> products = productService.filterLowerProducts();
+        List<ProductSummary> listView = productService.listViewProducts(recentlyViewed(session).ids());
         model.addAttribute("productViews", listView);
         model.addAttribute("title", "Shop Detail");
         model.addAttribute("page", "Shop Detail");
@@ -125,41 +144,121 @@ public class ProductController {
         return "shop-detail";
     }
 
+    /**
+     * Shows the active products priced between minPrice and maxPrice, cheapest first, 9 per page
+     * @param minPrice
+     * @param maxPrice
+     * @param pageNo
+     * @param model
+     * @param session
+     * @return "shop-detail"
+     */
+    @GetMapping("/price-range")
+    public String filterPriceRange(@RequestParam(value = "minPrice", defaultValue = "0") double minPrice,
+                                   @RequestParam(value = "maxPrice", required = false) Double maxPrice,
+                                   @RequestParam(value = "pageNo", defaultValue = "0") int pageNo,
+                                   Model model, HttpSession session) {
+        List<CategoryDto> categories = categoryService.getCategoriesAndSize();
+        model.addAttribute("categories", categories);
+        Page<ProductSummary> products = productService.filterByPrice(minPrice,
+                maxPrice == null ? Double.MAX_VALUE : maxPrice, pageNo);
+        List<ProductSummary> listView = productService.listViewProducts(recentlyViewed(session).ids());
+        model.addAttribute("productViews", listView);
+        model.addAttribute("title", "Shop Detail");
+        model.addAttribute("page", "Shop Detail");
+        model.addAttribute("products", products.getContent());
+        model.addAttribute("minPrice", minPrice);
+        model.addAttribute("maxPrice", maxPrice);
+        model.addAttribute("currentPage", pageNo);
+        model.addAttribute("totalPages", products.getTotalPages());
+        return "shop-detail";
+    }
+
+    /**
+     * Faceted filter over category, price band, availability and sale, e.g. /filter?category=1&category=2&band=0&inStock=true
+     * Values of the same facet are OR-ed, different facets are AND-ed, every facet value shows how many products it would give
+     * @param categoryIds
+     * @param priceBands
+     * @param inStock
+     * @param onSale
+     * @param pageNo
+     * @param model
+     * @param session
+     * @return "products"
+     */
+    @GetMapping("/filter")
+    public String filter(@RequestParam(value = "category", required = false) Set<Long> categoryIds,
+                         @RequestParam(value = "band", required = false) Set<Integer> priceBands,
+                         @RequestParam(value = "inStock", defaultValue = "false") boolean inStock,
+                         @RequestParam(value = "onSale", defaultValue = "false") boolean onSale,
+                         @RequestParam(value = "pageNo", defaultValue = "0") int pageNo,
+                         Model model, HttpSession session) {
+        FacetQuery query = new FacetQuery(categoryIds, priceBands, inStock, onSale);
+        FacetResult facets = productService.filterProducts(query, pageNo);
+        List<CategoryDto> categoryDtos = categoryService.getCategoriesAndSize();
+        List<ProductSummary> listView = productService.listViewProducts(recentlyViewed(session).ids());
+        model.addAttribute("productViews", listView);
+        model.addAttribute("categories", categoryDtos);
+        model.addAttribute("title", "Filter Products");
+        model.addAttribute("page", "Filter Products");
+        model.addAttribute("products", facets.products().getContent());
+        model.addAttribute("facets", facets);
+        model.addAttribute("query", query);
+        model.addAttribute("currentPage", pageNo);
+        model.addAttribute("totalPages", facets.products().getTotalPages());
+        return "products";
+    }
+
     /**
      * Displays products within a specific category identified by its id.
      * Category-Specific Products: Allows customers to browse all products
      * belonging to a particular category.
      * @param id
      * @param model
+     * @param session
      * @return "products"
      */
     @GetMapping("/find-products/{id}")
-    public String productsInCategory(@PathVariable("id") Long id, Model model) {
+    public String productsInCategory(@PathVariable("id") Long id, Model model, HttpSession session) {
         List<CategoryDto> categoryDtos = categoryService.getCategoriesAndSize();
-        List<ProductDto> productDtos = productService.findByCategoryId(id);
-        List<ProductDto> listView = productService.listViewProducts();
+        List<ProductSummary> productDtos = productService.findByCategoryId(id);
+        List<ProductSummary> listView = productService.listViewProducts(recentlyViewed(session).ids());
         model.addAttribute("productViews", listView);
         model.addAttribute("categories", categoryDtos);
-        model.addAttribute("title", productDtos.get(0).getCategory().getName());
+        model.addAttribute("title", productDtos.get(0).getCategoryName());
         model.addAttribute("page", "Product-Category");
         model.addAttribute("products", productDtos);
         return "products";
     }
 
 
+    /**
+     * Search-as-you-type completions for the search box, product and category names ranked by popularity
+     * @param prefix what the customer typed so far
+     * @param limit at most 10
+     * @return JSON list of {type, id, name}
+     */
+    @GetMapping("/typeahead")
+    @ResponseBody
+    public List<Suggestion> typeahead(@RequestParam("q") String prefix,
+                                      @RequestParam(value = "limit", defaultValue = "8") int limit) {
+        return productService.typeahead(prefix, limit);
+    }
+
     /**
      * Enables users to search for products using a keyword.
      * Search Results: Displays the search results along with recently
      * viewed products and categories on the "products" page.
      * @param keyword
      * @param model
+     * @param session
      * @return "products"
      */
     @GetMapping("/search-product")
-    public String searchProduct(@RequestParam("keyword") String keyword, Model model) {
+    public String searchProduct(@RequestParam("keyword") String keyword, Model model, HttpSession session) {
         List<CategoryDto> categoryDtos = categoryService.getCategoriesAndSize();
-        List<ProductDto> productDtos = productService.searchProducts(keyword);
-        List<ProductDto> listView = productService.listViewProducts();
+        List<ProductSummary> productDtos = productService.searchProducts(keyword);
+        List<ProductSummary> listView = productService.listViewProducts(recentlyViewed(session).ids());
         model.addAttribute("productViews", listView);
         model.addAttribute("categories", categoryDtos);
         model.addAttribute("title", "Search Products");
@@ -167,4 +266,16 @@ public class ProductController {
         model.addAttribute("products", productDtos);
         return "products";
     }
+
+    /**
+     * @return the recently viewed products of this session, created on first use
+     */
+    private RecentlyViewed recentlyViewed(HttpSession session) {
+        RecentlyViewed recentlyViewed = (RecentlyViewed) session.getAttribute(RecentlyViewed.SESSION_ATTRIBUTE);
+        if (recentlyViewed == null) {
+            recentlyViewed = new RecentlyViewed(RECENTLY_VIEWED);
+            session.setAttribute(RecentlyViewed.SESSION_ATTRIBUTE, recentlyViewed);
+        }
+        return recentlyViewed;
+    }
 }
@@ -1,27 +1,40 @@
 package com.ecommerce.customer.controller;
 
+import com.ecommerce.library.cart.CartLineChange;
+import com.ecommerce.library.cart.CartTotals;
+import com.ecommerce.library.cart.GuestCart;
+import com.ecommerce.library.cart.GuestCartCookie;
 import com.ecommerce.library.dto.ProductDto;
-import com.ecommerce.library.model.Customer;
+import com.ecommerce.library.dto.ShoppingCartDto;
 import com.ecommerce.library.model.ShoppingCart;
 import com.ecommerce.library.service.CustomerService;
 import com.ecommerce.library.service.ProductService;
 import com.ecommerce.library.service.ShoppingCartService;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 
 import java.security.Principal;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Controller for shopping cart
+ * Guests get a cart too, kept in a signed cookie (see GuestCartCookie) and merged into their cart at login
  */
 @Controller
 @RequiredArgsConstructor
 public class ShoppingCartController {
+    private static final int MAX_LINE_CHANGES = 100;
+
     /**
      * The controller interacts with the ShoppingCartService,
      * ProductService, and CustomerService to handle these operations.
@@ -32,23 +45,32 @@ public class ShoppingCartController {
     private  ProductService productService;
     @Autowired
     private  CustomerService customerService;
+    @Autowired
+    private  GuestCartCookie guestCartCookie;
 
     /**
      * Displays the shopping cart page for the logged-in customer.
      * Cart and Customer Data: Retrieves the shopping cart associated with the current customer and calculates the total price. The cart data is then displayed on the "cart" view.
      * Session Management: Updates the session with the total number of items in the cart.
+     * Guests: The cart is read from the guest cart cookie, no session is created for them.
      * @param model
      * @param principal
      * @param session
+     * @param request
      * @return "cart"
      */
     @GetMapping("/cart")
-    public String cart(Model model, Principal principal, HttpSession session) {
+    public String cart(Model model, Principal principal, HttpSession session, HttpServletRequest request) {
         if (principal == null) {
-            return "redirect:/login";
+            ShoppingCartDto guestCart = cartService.guestCart(guestCartCookie.read(request));
+            if (guestCart.getTotalItems() > 0) {
+                model.addAttribute("grandTotal", guestCart.getTotalPrice());
+            }
+            model.addAttribute("shoppingCart", guestCart);
+            model.addAttribute("title", "Cart");
+            return "cart";
         }
-        Customer customer = customerService.findByUsername(principal.getName());
-        ShoppingCart cart = customer.getCart();
+        ShoppingCart cart = cartService.getCart(principal.getName());
         if (cart == null) {
             model.addAttribute("check");
 
@@ -65,7 +87,7 @@ public class ShoppingCartController {
     }
 
     /**
-     * Adds a specified product to the shopping cart. If the user is not logged in, they are redirected to the login page.
+     * Adds a specified product to the shopping cart. If the user is not logged in, the product goes into their guest cart cookie.
      * Product and Quantity: The method receives the product ID and quantity, adds the product to the cart, and updates the session with the new total items count.
      * Redirection: After adding the item, the user is redirected back to the page they were on.
      * @param id
@@ -74,6 +96,7 @@ public class ShoppingCartController {
      * @param model
      * @param principal
      * @param session
+     * @param response
      * @return will redirect to referer
      */
     @PostMapping("/add-to-cart")
@@ -82,13 +105,17 @@ public class ShoppingCartController {
                                 HttpServletRequest request,
                                 Model model,
                                 Principal principal,
-                                HttpSession session) {
-
-
-        ProductDto productDto = productService.getById(id);
+                                HttpSession session,
+                                HttpServletResponse response) {
         if (principal == null) {
-            return "redirect:/login";
+            if (quantity > 0) {
+                GuestCart guestCart = guestCartCookie.read(request);
+                guestCart.add(id, quantity);
+                guestCartCookie.write(request, response, guestCart);
+            }
+            return "redirect:" + request.getHeader("Referer");
         }
+        ProductDto productDto = productService.getById(id);
         String username = principal.getName();
         ShoppingCart shoppingCart = cartService.addItemToCart(productDto, quantity, username);
         session.setAttribute("totalItems", shoppingCart.getTotalItems());
@@ -105,6 +132,8 @@ public class ShoppingCartController {
      * @param model
      * @param principal
      * @param session
+     * @param request
+     * @param response
      * @return "cart"
      */
     @RequestMapping(value = "/update-cart", method = RequestMethod.POST, params = "action=update")
@@ -112,9 +141,14 @@ public class ShoppingCartController {
                              @RequestParam("quantity") int quantity,
                              Model model,
                              Principal principal,
-                             HttpSession session) {
+                             HttpSession session,
+                             HttpServletRequest request,
+                             HttpServletResponse response) {
         if (principal == null) {
-            return "redirect:/login";
+            GuestCart guestCart = guestCartCookie.read(request);
+            guestCart.setQuantity(id, quantity);
+            guestCartCookie.write(request, response, guestCart);
+            return "redirect:/cart";
         }
         ProductDto productDto = productService.getById(id);
         String username = principal.getName();
@@ -133,16 +167,23 @@ public class ShoppingCartController {
      * @param model
      * @param principal
      * @param session
+     * @param request
+     * @param response
      * @return "cart" with deleted item
      */
     @RequestMapping(value = "/update-cart", method = RequestMethod.POST, params = "action=delete")
     public String deleteItem(@RequestParam("id") Long id,
                              Model model,
                              Principal principal,
-                             HttpSession session
+                             HttpSession session,
+                             HttpServletRequest request,
+                             HttpServletResponse response
     ) {
         if (principal == null) {
-            return "redirect:/login";
+            GuestCart guestCart = guestCartCookie.read(request);
+            guestCart.remove(id);
+            guestCartCookie.write(request, response, guestCart);
+            return "redirect:/cart";
         } else {
             ProductDto productDto = productService.getById(id);
             String username = principal.getName();
@@ -153,4 +194,84 @@ public class ShoppingCartController {
         }
     }
 
+    /**
+     * Applies the quantity changes of many lines at once and answers with the new totals, so the cart page can
+     * update itself without a reload. A quantity of zero or less removes the line.
+     * Customers: All changes are written in one transaction. Guests: The guest cart cookie is rewritten.
+     * @param changes product ids and new quantities, at most MAX_LINE_CHANGES
+     * @param principal
+     * @param session
+     * @param request
+     * @param response
+     * @return the new totals as JSON
+     */
+    @PostMapping(value = "/update-cart-lines", consumes = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseBody
+    public CartTotals updateCartLines(@RequestBody List<CartLineChange> changes,
+                                      Principal principal,
+                                      HttpSession session,
+                                      HttpServletRequest request,
+                                      HttpServletResponse response) {
+        return applyLineChanges(changes, principal, session, request, response);
+    }
+
+    /**
+     * Form fallback of the JSON endpoint, the ids and quantities come as repeated id and quantity fields in the
+     * same order.
+     * @param ids
+     * @param quantities
+     * @param principal
+     * @param session
+     * @param request
+     * @param response
+     * @return will redirect to the cart page
+     */
+    @PostMapping(value = "/update-cart-lines", consumes = MediaType.APPLICATION_FORM_URLENCODED_VALUE)
+    public String updateCartLinesForm(@RequestParam("id") List<Long> ids,
+                                      @RequestParam("quantity") List<Integer> quantities,
+                                      Principal principal,
+                                      HttpSession session,
+                                      HttpServletRequest request,
+                                      HttpServletResponse response) {
+        if (ids.size() != quantities.size()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Every id needs a quantity");
+        }
+        List<CartLineChange> changes = new ArrayList<>(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            if (quantities.get(i) == null) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Every id needs a quantity");
+            }
+            changes.add(new CartLineChange(ids.get(i), quantities.get(i)));
+        }
+        applyLineChanges(changes, principal, session, request, response);
+        return "redirect:/cart";
+    }
+
+    private CartTotals applyLineChanges(List<CartLineChange> changes,
+                                        Principal principal,
+                                        HttpSession session,
+                                        HttpServletRequest request,
+                                        HttpServletResponse response) {
+        if (changes.size() > MAX_LINE_CHANGES) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Too many cart lines");
+        }
+        for (CartLineChange change : changes) {
+            if (change == null || change.productId() == null) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Every cart line needs a product id");
+            }
+        }
+        if (principal == null) {
+            GuestCart guestCart = guestCartCookie.read(request);
+            for (CartLineChange change : changes) {
+                if (guestCart.getLines().containsKey(change.productId())) {
+                    guestCart.setQuantity(change.productId(), change.quantity());
+                }
+            }
+            guestCartCookie.write(request, response, guestCart);
+            return CartTotals.of(cartService.guestCart(guestCart));
+        }
+        ShoppingCart shoppingCart = cartService.updateCartLines(changes, principal.getName());
+        session.setAttribute("totalItems", shoppingCart.getTotalItems());
+        return CartTotals.of(shoppingCart);
+    }
 }
@@ -0,0 +1,9 @@
+package com.ecommerce.library.bulk;
+
+import java.util.List;
+
+/**
+ * Outcome of a bulk import, errors holds at most the first ProductImporter.MAX_ERRORS rejected rows
+ */
+public record ImportResult(long imported, long rejected, List<RowError> errors, double seconds) {
+}
@@ -0,0 +1,130 @@
+package com.ecommerce.library.bulk;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Streams every product to CSV or JSON straight from a forward-only JDBC result set, nothing goes through JPA
+ * The default fetch size Integer.MIN_VALUE makes MySQL Connector/J send the rows one by one instead of the whole
+ * result, so memory stays flat however many products there are
+ * The columns are the ones ProductImporter reads: importing an export again replaces every product by its id,
+ * deleted flag and image key included
+ */
+@Component
+public class ProductExporter {
+    static final String[] COLUMNS = {"id", "name", "description", "costPrice", "salePrice", "currentQuantity",
+            "category", "activated", "deleted", "imageKey"};
+
+    static final String SELECT = "select p.product_id, p.name, p.description, p.cost_price, p.sale_price, " +
+            "p.current_quantity, c.name, p.is_activated, p.is_deleted, p.image_key " +
+            "from products p left join categories c on c.category_id = p.category_id order by p.product_id";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final int fetchSize;
+
+    public ProductExporter(JdbcTemplate jdbcTemplate,
+                           @Value("${bulk.export.fetch-size:-2147483648}") int fetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * @return number of products written
+     */
+    public long exportCsv(Writer writer) throws IOException {
+        writer.write(String.join(",", COLUMNS));
+        writer.write("\r\n");
+        long[] count = {0};
+        stream(result -> {
+            try {
+                for (int i = 1; i <= COLUMNS.length; i++) {
+                    if (i > 1) {
+                        writer.write(',');
+                    }
+                    writer.write(i == 8 || i == 9 ? String.valueOf(result.getBoolean(i)) : csv(result.getString(i)));
+                }
+                writer.write("\r\n");
+                count[0]++;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        writer.flush();
+        return count[0];
+    }
+
+    /**
+     * @return number of products written
+     */
+    public long exportJson(OutputStream output) throws IOException {
+        long[] count = {0};
+        try (JsonGenerator json = new JsonFactory().createGenerator(output, JsonEncoding.UTF8)) {
+            json.writeStartArray();
+            stream(result -> {
+                try {
+                    json.writeStartObject();
+                    json.writeNumberField("id", result.getLong(1));
+                    json.writeStringField("name", result.getString(2));
+                    json.writeStringField("description", result.getString(3));
+                    json.writeNumberField("costPrice", result.getDouble(4));
+                    json.writeNumberField("salePrice", result.getDouble(5));
+                    json.writeNumberField("currentQuantity", result.getInt(6));
+                    json.writeStringField("category", result.getString(7));
+                    json.writeBooleanField("activated", result.getBoolean(8));
+                    json.writeBooleanField("deleted", result.getBoolean(9));
+                    json.writeStringField("imageKey", result.getString(10));
+                    json.writeEndObject();
+                    count[0]++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            json.writeEndArray();
+        }
+        return count[0];
+    }
+
+    private void stream(RowHandler handler) throws IOException {
+        try {
+            jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(SELECT,
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                statement.setFetchSize(fetchSize);
+                return statement;
+            }, (RowCallbackHandler) handler::process);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Quotes a value that holds a comma, quote or line break, doubling the quotes inside
+     */
+    static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private interface RowHandler {
+        void process(ResultSet result) throws SQLException;
+    }
+}
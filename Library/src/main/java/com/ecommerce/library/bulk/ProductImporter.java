@@ -0,0 +1,176 @@
+package com.ecommerce.library.bulk;
+
+import com.ecommerce.library.event.ProductsImportedEvent;
+import com.ecommerce.library.model.Category;
+import com.ecommerce.library.repository.CategoryRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Bulk product import, the file is read record by record and valid rows are inserted with JDBC batches,
+ * one transaction per bulk.import.chunk-size rows
+ * A row with an id (as in a ProductExporter file) replaces that product, or recreates it under the same id,
+ * deleted flag and image key included; rows without an id are new products
+ * Categories are looked up by name (ignoring case) in a map loaded once per import, unknown categories are an error
+ * A chunk the database refuses is retried row by row, so one bad row only rejects itself
+ * Rows already committed stay when the file turns out to be broken half way
+ */
+@Component
+public class ProductImporter {
+    public static final int MAX_ERRORS = 1000;
+
+    static final String INSERT = "insert into products (name, description, cost_price, sale_price, current_quantity, " +
+            "category_id, is_activated, is_deleted, image_key) values (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    static final String UPSERT = "insert into products (product_id, name, description, cost_price, sale_price, " +
+            "current_quantity, category_id, is_activated, is_deleted, image_key) " +
+            "values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?) on duplicate key update name = values(name), " +
+            "description = values(description), cost_price = values(cost_price), sale_price = values(sale_price), " +
+            "current_quantity = values(current_quantity), category_id = values(category_id), " +
+            "is_activated = values(is_activated), is_deleted = values(is_deleted), image_key = values(image_key)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final CategoryRepository categoryRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final int chunkSize;
+
+    public ProductImporter(JdbcTemplate jdbcTemplate,
+                           CategoryRepository categoryRepository,
+                           PlatformTransactionManager transactionManager,
+                           ApplicationEventPublisher eventPublisher,
+                           @Value("${bulk.import.chunk-size:1000}") int chunkSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.categoryRepository = categoryRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.eventPublisher = eventPublisher;
+        this.chunkSize = chunkSize;
+    }
+
+    public ImportResult importProducts(ProductRowReader reader) {
+        long started = System.nanoTime();
+        Map<String, Long> categories = categoryIds();
+        Progress progress = new Progress();
+        List<Write> chunk = new ArrayList<>(chunkSize);
+        try {
+            ProductRowReader.Record record;
+            while ((record = reader.next()) != null) {
+                if (record.error() != null) {
+                    progress.reject(record.line(), record.error());
+                    continue;
+                }
+                ProductRow row;
+                try {
+                    row = ProductRow.parse(record.line(), record.fields());
+                } catch (IllegalArgumentException e) {
+                    progress.reject(record.line(), e.getMessage());
+                    continue;
+                }
+                Long categoryId = categories.get(row.category().toLowerCase(Locale.ROOT));
+                if (categoryId == null) {
+                    progress.reject(row.line(), "unknown category " + row.category());
+                    continue;
+                }
+                chunk.add(Write.of(row, categoryId));
+                if (chunk.size() == chunkSize) {
+                    insert(chunk, progress);
+                }
+            }
+        } catch (IOException e) {
+            progress.reject(-1, "import stopped, the file is broken: " + e.getMessage());
+        }
+        insert(chunk, progress);
+        if (progress.imported > 0) {
+            eventPublisher.publishEvent(new ProductsImportedEvent(progress.imported));
+        }
+        return new ImportResult(progress.imported, progress.rejected, progress.errors,
+                (System.nanoTime() - started) / 1e9);
+    }
+
+    private void insert(List<Write> chunk, Progress progress) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                batch(INSERT, chunk);
+                batch(UPSERT, chunk);
+            });
+            progress.imported += chunk.size();
+        } catch (DataAccessException e) {
+            for (Write write : chunk) {
+                try {
+                    jdbcTemplate.update(write.sql(), write.args());
+                    progress.imported++;
+                } catch (DataAccessException rowError) {
+                    progress.reject(write.line(), rowError.getMostSpecificCause().getMessage());
+                }
+            }
+        }
+        chunk.clear();
+    }
+
+    private void batch(String sql, List<Write> chunk) {
+        List<Object[]> args = new ArrayList<>(chunk.size());
+        for (Write write : chunk) {
+            if (write.sql().equals(sql)) {
+                args.add(write.args());
+            }
+        }
+        if (!args.isEmpty()) {
+            jdbcTemplate.batchUpdate(sql, args);
+        }
+    }
+
+    private Map<String, Long> categoryIds() {
+        Map<String, Long> ids = new HashMap<>();
+        for (Category category : categoryRepository.findAll()) {
+            if (!category.isDeleted()) {
+                ids.put(category.getName().toLowerCase(Locale.ROOT), category.getId());
+            }
+        }
+        return ids;
+    }
+
+    private record Write(long line, String sql, Object[] args) {
+        static Write of(ProductRow row, Long categoryId) {
+            if (row.id() == null) {
+                return new Write(row.line(), INSERT, new Object[]{row.name(), row.description(), row.costPrice(),
+                        row.salePrice(), row.currentQuantity(), categoryId, row.activated(), row.deleted(),
+                        row.imageKey()});
+            }
+            return new Write(row.line(), UPSERT, new Object[]{row.id(), row.name(), row.description(),
+                    row.costPrice(), row.salePrice(), row.currentQuantity(), categoryId, row.activated(),
+                    row.deleted(), row.imageKey()});
+        }
+    }
+
+    private static final class Progress {
+        private long imported;
+        private long rejected;
+        private final List<RowError> errors = new ArrayList<>();
+
+        private void reject(long line, String message) {
+            rejected++;
+            if (errors.size() < MAX_ERRORS) {
+                errors.add(new RowError(line, message));
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.ecommerce.library.bulk;
+
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * One validated product of an import file, the category is still a name
+ * Columns and JSON fields are matched by name, ignoring case: name, description, costPrice, salePrice,
+ * currentQuantity, category and activated, and the optional id, deleted and imageKey of an export; other columns
+ * are ignored
+ */
+public record ProductRow(long line, Long id, String name, String description, double costPrice, double salePrice,
+                         int currentQuantity, String category, boolean activated, boolean deleted, String imageKey) {
+    static final int MAX_NAME_LENGTH = 255;
+
+    /**
+     * @param fields values by lower-case column name, missing and empty values count as absent
+     * @throws IllegalArgumentException with a message for the user when the row is invalid
+     */
+    public static ProductRow parse(long line, Map<String, String> fields) {
+        String name = text(fields, "name");
+        if (name == null) {
+            throw new IllegalArgumentException("name is required");
+        }
+        if (name.length() > MAX_NAME_LENGTH) {
+            throw new IllegalArgumentException("name is longer than " + MAX_NAME_LENGTH + " characters");
+        }
+        String category = text(fields, "category");
+        if (category == null) {
+            throw new IllegalArgumentException("category is required");
+        }
+        Double costPrice = number(fields, "costPrice");
+        if (costPrice == null) {
+            throw new IllegalArgumentException("costPrice is required");
+        }
+        Double salePrice = number(fields, "salePrice");
+        int quantity = quantity(fields);
+        Boolean activated = flag(fields, "activated");
+        Boolean deleted = flag(fields, "deleted");
+        return new ProductRow(line, id(fields), name, text(fields, "description"), costPrice,
+                salePrice == null ? 0 : salePrice, quantity, category, activated == null || activated,
+                deleted != null && deleted, text(fields, "imageKey"));
+    }
+
+    private static Long id(Map<String, String> fields) {
+        String value = text(fields, "id");
+        if (value == null) {
+            return null;
+        }
+        long id;
+        try {
+            id = Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("id is not a whole number: " + value);
+        }
+        if (id <= 0) {
+            throw new IllegalArgumentException("id must be more than zero: " + value);
+        }
+        return id;
+    }
+
+    private static Boolean flag(Map<String, String> fields, String column) {
+        String value = text(fields, column);
+        if (value == null) {
+            return null;
+        }
+        if (!value.equalsIgnoreCase("true") && !value.equalsIgnoreCase("false")) {
+            throw new IllegalArgumentException(column + " must be true or false");
+        }
+        return value.equalsIgnoreCase("true");
+    }
+
+    private static String text(Map<String, String> fields, String column) {
+        String value = fields.get(column.toLowerCase(Locale.ROOT));
+        if (value == null) {
+            return null;
+        }
+        value = value.trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    private static Double number(Map<String, String> fields, String column) {
+        String value = text(fields, column);
+        if (value == null) {
+            return null;
+        }
+        double number;
+        try {
+            number = Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(column + " is not a number: " + value);
+        }
+        if (!Double.isFinite(number) || number < 0) {
+            throw new IllegalArgumentException(column + " must be zero or more: " + value);
+        }
+        return number;
+    }
+
+    private static int quantity(Map<String, String> fields) {
+        String value = text(fields, "currentQuantity");
+        if (value == null) {
+            return 0;
+        }
+        int quantity;
+        try {
+            quantity = Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("currentQuantity is not a whole number: " + value);
+        }
+        if (quantity < 0) {
+            throw new IllegalArgumentException("currentQuantity must be zero or more: " + value);
+        }
+        return quantity;
+    }
+}
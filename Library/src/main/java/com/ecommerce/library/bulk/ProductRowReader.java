@@ -0,0 +1,206 @@
+package com.ecommerce.library.bulk;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Streams the records of an import file one at a time, so the file is never held in memory
+ * CSV needs a header row and follows RFC 4180 (quoted fields may contain commas, quotes and line breaks),
+ * JSON is an array of flat objects
+ */
+public abstract class ProductRowReader implements Closeable {
+
+    /**
+     * @param line line of the file where the record starts
+     * @param fields values by lower-case column name
+     * @param error why the record cannot be read, the reader carries on with the next one
+     */
+    public record Record(long line, Map<String, String> fields, String error) {
+    }
+
+    /**
+     * @return the next record, null at the end of the file
+     * @throws IOException when the file is broken beyond the current record
+     */
+    public abstract Record next() throws IOException;
+
+    /**
+     * @param fileName a name ending in .json is read as JSON, anything else as CSV
+     */
+    public static ProductRowReader of(String fileName, InputStream input) throws IOException {
+        if (fileName != null && fileName.toLowerCase(Locale.ROOT).endsWith(".json")) {
+            return json(input);
+        }
+        return csv(new InputStreamReader(input, StandardCharsets.UTF_8));
+    }
+
+    public static ProductRowReader csv(Reader reader) {
+        return new Csv(reader);
+    }
+
+    public static ProductRowReader json(InputStream input) throws IOException {
+        return new Json(new JsonFactory().createParser(input));
+    }
+
+    private static final class Csv extends ProductRowReader {
+        private final BufferedReader reader;
+        private List<String> header;
+        private long line = 1;
+        private boolean end;
+
+        private Csv(Reader reader) {
+            this.reader = reader instanceof BufferedReader buffered ? buffered : new BufferedReader(reader);
+        }
+
+        @Override
+        public Record next() throws IOException {
+            if (header == null) {
+                List<String> names = fields();
+                if (names == null) {
+                    return null;
+                }
+                header = new ArrayList<>(names.size());
+                for (String name : names) {
+                    header.add(name.replace("\uFEFF", "").trim().toLowerCase(Locale.ROOT));
+                }
+            }
+            while (true) {
+                long start = line;
+                List<String> values = fields();
+                if (values == null) {
+                    return null;
+                }
+                if (values.size() == 1 && values.get(0).isBlank()) {
+                    continue;
+                }
+                if (values.size() > header.size()) {
+                    return new Record(start, Map.of(), values.size() + " fields, the header has " + header.size());
+                }
+                Map<String, String> fields = new HashMap<>();
+                for (int i = 0; i < values.size(); i++) {
+                    fields.put(header.get(i), values.get(i));
+                }
+                return new Record(start, fields, null);
+            }
+        }
+
+        /**
+         * @return the fields of the next record, null at the end of the file
+         */
+        private List<String> fields() throws IOException {
+            if (end) {
+                return null;
+            }
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            boolean any = false;
+            long start = line;
+            while (true) {
+                int c = reader.read();
+                if (c == -1) {
+                    end = true;
+                    if (quoted) {
+                        throw new IOException("Line " + start + " has an unterminated quoted field");
+                    }
+                    if (!any) {
+                        return null;
+                    }
+                    fields.add(field.toString());
+                    return fields;
+                }
+                any = true;
+                if (quoted) {
+                    if (c == '"') {
+                        reader.mark(1);
+                        if (reader.read() == '"') {
+                            field.append('"');
+                        } else {
+                            reader.reset();
+                            quoted = false;
+                        }
+                    } else {
+                        if (c == '\n') {
+                            line++;
+                        }
+                        field.append((char) c);
+                    }
+                } else if (c == '"' && field.length() == 0) {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else if (c == '\n') {
+                    line++;
+                    fields.add(field.toString());
+                    return fields;
+                } else if (c != '\r') {
+                    field.append((char) c);
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    private static final class Json extends ProductRowReader {
+        private final JsonParser parser;
+        private boolean started;
+
+        private Json(JsonParser parser) {
+            this.parser = parser;
+        }
+
+        @Override
+        public Record next() throws IOException {
+            if (!started) {
+                started = true;
+                if (parser.nextToken() != JsonToken.START_ARRAY) {
+                    throw new IOException("Expected a JSON array of products");
+                }
+            }
+            JsonToken token = parser.nextToken();
+            if (token == null || token == JsonToken.END_ARRAY) {
+                return null;
+            }
+            long line = parser.getTokenLocation().getLineNr();
+            if (token != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                return new Record(line, Map.of(), "not a JSON object");
+            }
+            Map<String, String> fields = new HashMap<>();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName().toLowerCase(Locale.ROOT);
+                JsonToken value = parser.nextToken();
+                if (value.isScalarValue() && value != JsonToken.VALUE_NULL) {
+                    fields.put(name, parser.getText());
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            return new Record(line, fields, null);
+        }
+
+        @Override
+        public void close() throws IOException {
+            parser.close();
+        }
+    }
+}
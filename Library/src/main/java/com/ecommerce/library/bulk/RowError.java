@@ -0,0 +1,7 @@
+package com.ecommerce.library.bulk;
+
+/**
+ * A rejected row of an import, line is the line of the file where the row starts
+ */
+public record RowError(long line, String message) {
+}
@@ -0,0 +1,73 @@
+package com.ecommerce.library.cart;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Serializes the cart changes of one customer: within a node a striped lock (cart.concurrency.stripes, hashed by
+ * username) lets one change per customer run at a time, so double clicks and several tabs queue up instead of
+ * overwriting each other
+ * Between nodes ShoppingCart and CartItem carry a @Version, a change that lost the race fails with an
+ * OptimisticLockingFailureException and is run again in a new transaction, at most cart.concurrency.max-attempts
+ * times with a short random pause
+ */
+@Component
+public class CartConcurrency {
+    private final ReentrantLock[] locks;
+
+    private final int maxAttempts;
+
+    public CartConcurrency(@Value("${cart.concurrency.stripes:64}") int stripes,
+                           @Value("${cart.concurrency.max-attempts:3}") int maxAttempts) {
+        int size = Integer.highestOneBit(Math.max(1, stripes - 1) << 1);
+        this.locks = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        this.maxAttempts = Math.max(1, maxAttempts);
+    }
+
+    /**
+     * @param attempt runs its own transaction; inside a transaction that is already open it runs once, a retry
+     *                would reuse the failed persistence context
+     */
+    public <T> T mutate(String username, Supplier<T> attempt) {
+        ReentrantLock lock = locks[stripe(username)];
+        lock.lock();
+        try {
+            int attempts = TransactionSynchronizationManager.isActualTransactionActive() ? 1 : maxAttempts;
+            for (int i = 1; ; i++) {
+                try {
+                    return attempt.get();
+                } catch (OptimisticLockingFailureException e) {
+                    if (i >= attempts) {
+                        throw e;
+                    }
+                    pause(i);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int stripe(String username) {
+        int hash = username.hashCode();
+        return (hash ^ (hash >>> 16)) & (locks.length - 1);
+    }
+
+    private static void pause(int attempt) {
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(1, 10L * attempt + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
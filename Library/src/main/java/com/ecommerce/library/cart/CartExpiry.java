@@ -0,0 +1,229 @@
+package com.ecommerce.library.cart;
+
+import com.ecommerce.library.model.ShoppingCart;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Empties carts nobody changed for cart.expiry.ttl-days (off by default, cart.expiry.enabled)
+ * Every change of a cart reschedules it in a TimingWheel, so finding the abandoned carts never reads the table;
+ * the sweep (cart.expiry.sweep-cron, off-peak) takes the carts whose deadline passed and empties them in chunks of
+ * cart.expiry.chunk-size, one transaction and three statements per chunk
+ * The carts are locked and their touched_at checked again before anything is deleted, so a cart changed since
+ * (on another node too) is kept and scheduled from its new time
+ * The carts that had lines when this node started are read once, by primary key pages, at the first sweep
+ * Once a chunk commits its carts are dropped from the CartStore too, so a cached cart never outlives its rows; a
+ * chunk that fails is counted and scheduled again for the next sweep
+ */
+@Component
+@ManagedResource(objectName = "ecommerce:name=CartExpiry")
+public class CartExpiry {
+    static final String SEED = "select shopping_cart_id, touched_at from shopping_cart " +
+            "where shopping_cart_id > ? and total_items > 0 order by shopping_cart_id limit ?";
+
+    static final String LOCK = "select shopping_cart_id, touched_at from shopping_cart " +
+            "where total_items > 0 and shopping_cart_id in (%s) for update";
+
+    static final String DELETE_ITEMS = "delete from cart_items where shopping_cart_id in (%s)";
+
+    static final String EMPTY_CARTS = "update shopping_cart set total_items = 0, total_price = 0, " +
+            "version = version + 1 where shopping_cart_id in (%s)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final CartStore cartStore;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final boolean enabled;
+
+    private final long ttlMillis;
+
+    private final int chunkSize;
+
+    private final TimingWheel wheel;
+
+    private final AtomicLong reclaimedCarts = new AtomicLong();
+
+    private final AtomicLong reclaimedItems = new AtomicLong();
+
+    private final AtomicLong failedChunks = new AtomicLong();
+
+    private volatile long lastSweep;
+
+    private boolean seeded;
+
+    public CartExpiry(JdbcTemplate jdbcTemplate,
+                      CartStore cartStore,
+                      PlatformTransactionManager transactionManager,
+                      @Value("${cart.expiry.enabled:false}") boolean enabled,
+                      @Value("${cart.expiry.ttl-days:30}") int ttlDays,
+                      @Value("${cart.expiry.tick-ms:60000}") long tickMillis,
+                      @Value("${cart.expiry.chunk-size:500}") int chunkSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.cartStore = cartStore;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.ttlMillis = ttlDays * 24L * 60 * 60 * 1000;
+        this.chunkSize = chunkSize;
+        this.wheel = new TimingWheel(tickMillis, System.currentTimeMillis());
+    }
+
+    /**
+     * Starts the time to live of the cart again
+     */
+    public void touch(ShoppingCart cart) {
+        if (!enabled || cart == null || cart.getId() == null) {
+            return;
+        }
+        long deadline = System.currentTimeMillis() + ttlMillis;
+        synchronized (wheel) {
+            wheel.schedule(cart.getId(), deadline);
+        }
+    }
+
+    @Scheduled(cron = "${cart.expiry.sweep-cron:0 */10 1-5 * * *}")
+    public void sweep() {
+        if (enabled) {
+            sweep(System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * @return number of carts emptied
+     */
+    synchronized long sweep(long now) {
+        if (!seeded) {
+            seed();
+            seeded = true;
+        }
+        List<Long> expired;
+        synchronized (wheel) {
+            expired = wheel.advance(now);
+        }
+        long carts = 0;
+        for (int from = 0; from < expired.size(); from += chunkSize) {
+            List<Long> chunk = expired.subList(from, Math.min(from + chunkSize, expired.size()));
+            try {
+                Reclaimed reclaimed = transactionTemplate.execute(status -> reclaim(chunk, now));
+                cartStore.linesDeleted(reclaimed.carts());
+                reclaimedCarts.addAndGet(reclaimed.carts().size());
+                reclaimedItems.addAndGet(reclaimed.items());
+                carts += reclaimed.carts().size();
+            } catch (RuntimeException e) {
+                failedChunks.incrementAndGet();
+                reschedule(chunk, now);
+            }
+        }
+        lastSweep = now;
+        return carts;
+    }
+
+    @ManagedAttribute(description = "Carts emptied since start")
+    public long getReclaimedCarts() {
+        return reclaimedCarts.get();
+    }
+
+    @ManagedAttribute(description = "Cart lines deleted since start")
+    public long getReclaimedItems() {
+        return reclaimedItems.get();
+    }
+
+    @ManagedAttribute(description = "Chunks that failed and wait for the next sweep")
+    public long getFailedChunks() {
+        return failedChunks.get();
+    }
+
+    @ManagedAttribute(description = "Carts waiting for their deadline")
+    public int getTrackedCarts() {
+        synchronized (wheel) {
+            return wheel.size();
+        }
+    }
+
+    @ManagedAttribute(description = "Time of the last sweep in epoch milliseconds")
+    public long getLastSweep() {
+        return lastSweep;
+    }
+
+    private void seed() {
+        long lastId = 0;
+        while (true) {
+            List<long[]> page = jdbcTemplate.query(SEED,
+                    (result, row) -> new long[]{result.getLong(1), result.getLong(2)}, lastId, chunkSize);
+            synchronized (wheel) {
+                for (long[] cart : page) {
+                    wheel.scheduleIfAbsent(cart[0], deadline(cart[1]));
+                }
+            }
+            if (page.size() < chunkSize) {
+                return;
+            }
+            lastId = page.get(page.size() - 1)[0];
+        }
+    }
+
+    /**
+     * Locks the carts of the chunk, empties the ones still untouched for the time to live and schedules the others
+     * again from their touched_at
+     * @return carts emptied and lines deleted
+     */
+    private Reclaimed reclaim(List<Long> chunk, long now) {
+        List<long[]> carts = jdbcTemplate.query(String.format(LOCK, placeholders(chunk.size())),
+                (result, row) -> new long[]{result.getLong(1), result.getLong(2)}, chunk.toArray());
+        List<Long> stale = new ArrayList<>();
+        List<long[]> fresh = new ArrayList<>();
+        for (long[] cart : carts) {
+            if (cart[1] + ttlMillis <= now) {
+                stale.add(cart[0]);
+            } else {
+                fresh.add(cart);
+            }
+        }
+        int items = 0;
+        if (!stale.isEmpty()) {
+            String in = placeholders(stale.size());
+            items = jdbcTemplate.update(String.format(DELETE_ITEMS, in), stale.toArray());
+            jdbcTemplate.update(String.format(EMPTY_CARTS, in), stale.toArray());
+        }
+        synchronized (wheel) {
+            for (long[] cart : fresh) {
+                wheel.scheduleIfAbsent(cart[0], deadline(cart[1]));
+            }
+        }
+        return new Reclaimed(stale, items);
+    }
+
+    private void reschedule(List<Long> chunk, long now) {
+        synchronized (wheel) {
+            for (Long cartId : chunk) {
+                wheel.scheduleIfAbsent(cartId, now);
+            }
+        }
+    }
+
+    /**
+     * Carts from before touched_at existed (0) get a full time to live from now
+     */
+    private long deadline(long touchedAt) {
+        return (touchedAt == 0 ? System.currentTimeMillis() : touchedAt) + ttlMillis;
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
+    private record Reclaimed(List<Long> carts, int items) {
+    }
+}
@@ -0,0 +1,7 @@
+package com.ecommerce.library.cart;
+
+/**
+ * New quantity of one cart line, zero or less removes the line
+ */
+public record CartLineChange(Long productId, int quantity) {
+}
@@ -0,0 +1,449 @@
+package com.ecommerce.library.cart;
+
+import com.ecommerce.library.model.CartItem;
+import com.ecommerce.library.model.Customer;
+import com.ecommerce.library.model.ShoppingCart;
+import com.ecommerce.library.repository.ShoppingCartRepository;
+import com.ecommerce.library.service.CustomerService;
+import jakarta.annotation.PreDestroy;
+import org.hibernate.Hibernate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Optional write-behind cart store (cart.store.write-behind, off by default)
+ * The carts of active customers stay in memory and clicks only change them there; every cart.store.flush-ms the
+ * lines changed since the last flush are written in one transaction with JDBC batches, so many clicks on a cart
+ * cost one row per changed line. Checkout flushes the cart first (see flush(String))
+ * At most cart.store.max-carts carts are kept, carts idle for cart.store.ttl-ms are dropped once flushed
+ * Carts are per JVM, only one Customer instance may run in this mode
+ * Callers get copies of the carts taken under the cart's lock, the carts themselves only change in update
+ * A failed scheduled flush is retried with the next one and counted in the JMX attributes
+ */
+@Component
+@ManagedResource(objectName = "ecommerce:name=CartStore")
+public class CartStore {
+    static final String UPDATE_CART = "update shopping_cart set total_price = ?, total_items = ?, touched_at = ?, " +
+            "version = version + 1 where shopping_cart_id = ?";
+
+    static final String INSERT_ITEM = "insert into cart_items (shopping_cart_id, product_id, quantity, unit_price) " +
+            "values (?, ?, ?, ?)";
+
+    static final String UPDATE_ITEM = "update cart_items set quantity = ?, unit_price = ?, version = version + 1 " +
+            "where shopping_cart_id = ? and product_id = ?";
+
+    static final String DELETE_ITEM = "delete from cart_items where shopping_cart_id = ? and product_id = ?";
+
+    private final CustomerService customerService;
+
+    private final ShoppingCartRepository cartRepository;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final TransactionTemplate flushTransaction;
+
+    private final boolean enabled;
+
+    private final int maxCarts;
+
+    private final long ttlMillis;
+
+    private final Map<String, Entry> carts = new ConcurrentHashMap<>();
+
+    private final AtomicLong failedFlushes = new AtomicLong();
+
+    private volatile String lastFailure;
+
+    public CartStore(CustomerService customerService,
+                     ShoppingCartRepository cartRepository,
+                     JdbcTemplate jdbcTemplate,
+                     PlatformTransactionManager transactionManager,
+                     @Value("${cart.store.write-behind:false}") boolean enabled,
+                     @Value("${cart.store.max-carts:10000}") int maxCarts,
+                     @Value("${cart.store.ttl-ms:1800000}") long ttlMillis) {
+        this.customerService = customerService;
+        this.cartRepository = cartRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.flushTransaction = new TransactionTemplate(transactionManager);
+        this.flushTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.enabled = enabled;
+        this.maxCarts = maxCarts;
+        this.ttlMillis = ttlMillis;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return a copy of the cart of the customer, loaded (and created when the customer has none) on first use
+     */
+    public ShoppingCart get(String username) {
+        while (true) {
+            Entry entry = entry(username);
+            synchronized (entry) {
+                if (entry.evicted) {
+                    continue;
+                }
+                entry.lastAccess = System.currentTimeMillis();
+                return copy(entry.cart);
+            }
+        }
+    }
+
+    /**
+     * Applies a change to the line of one product, the line is written with the next flush
+     * @return a copy of the changed cart
+     */
+    public ShoppingCart update(String username, long productId, Consumer<ShoppingCart> change) {
+        return update(username, List.of(productId), change);
+    }
+
+    /**
+     * Applies a change to the lines of several products at once
+     * @return a copy of the changed cart
+     */
+    public ShoppingCart update(String username, Collection<Long> productIds, Consumer<ShoppingCart> change) {
+        while (true) {
+            Entry entry = entry(username);
+            synchronized (entry) {
+                if (entry.evicted) {
+                    continue;
+                }
+                change.accept(entry.cart);
+                entry.dirty.addAll(productIds);
+                entry.lastAccess = System.currentTimeMillis();
+                return copy(entry.cart);
+            }
+        }
+    }
+
+    /**
+     * Writes the pending changes of one cart in a transaction of its own, so they stay written whatever happens to
+     * the caller's transaction
+     */
+    public void flush(String username) {
+        Entry entry = carts.get(username);
+        if (entry == null) {
+            return;
+        }
+        synchronized (this) {
+            write(List.of(entry), true);
+        }
+    }
+
+    /**
+     * Drops the cart of the customer once the current transaction (checkout) commits, right away without one; the
+     * next use loads it again from the database
+     * Lines added after checkout flushed the cart are written first, so they stay in the cart
+     */
+    public void evictAfterCommit(String username) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            linesDeleted(carts.get(username));
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                linesDeleted(carts.get(username));
+            }
+        });
+    }
+
+    /**
+     * The lines of these carts were deleted in the database (see CartExpiry), their carts are dropped the same way
+     * as after checkout
+     */
+    public void linesDeleted(Collection<Long> cartIds) {
+        Set<Long> ids = new HashSet<>(cartIds);
+        for (Entry entry : new ArrayList<>(carts.values())) {
+            if (ids.contains(entry.cart.getId())) {
+                linesDeleted(entry);
+            }
+        }
+    }
+
+    @Scheduled(initialDelayString = "${cart.store.flush-ms:1000}", fixedDelayString = "${cart.store.flush-ms:1000}")
+    public synchronized void flush() {
+        if (carts.isEmpty()) {
+            return;
+        }
+        write(new ArrayList<>(carts.values()), false);
+        long idleSince = System.currentTimeMillis() - ttlMillis;
+        for (Entry entry : carts.values()) {
+            if (entry.lastAccess < idleSince) {
+                evictClean(entry);
+            }
+        }
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        write(new ArrayList<>(carts.values()), true);
+    }
+
+    @ManagedAttribute(description = "Carts kept in memory")
+    public int size() {
+        return carts.size();
+    }
+
+    @ManagedAttribute(description = "Scheduled flushes that failed since start")
+    public long getFailedFlushes() {
+        return failedFlushes.get();
+    }
+
+    @ManagedAttribute(description = "Error of the last failed flush")
+    public String getLastFailure() {
+        return lastFailure;
+    }
+
+    private Entry entry(String username) {
+        Entry entry = carts.get(username);
+        if (entry != null) {
+            return entry;
+        }
+        if (carts.size() >= maxCarts) {
+            shrink();
+        }
+        Entry loaded = transactionTemplate.execute(status -> load(username));
+        entry = carts.putIfAbsent(username, loaded);
+        return entry == null ? loaded : entry;
+    }
+
+    private Entry load(String username) {
+        Customer customer = customerService.findByUsername(username);
+        ShoppingCart cart = customer.getCart();
+        if (cart == null || cart.getId() == null) {
+            cart = new ShoppingCart();
+            cart.setCustomer(customer);
+            cart = cartRepository.save(cart);
+        }
+        // the cart outlives the session it was read in, so its lazy lines are loaded now
+        Hibernate.initialize(cart.getCartItems());
+        Entry entry = new Entry(username, cart);
+        for (CartItem item : cart.getCartItems()) {
+            entry.stored.add(item.getProduct().getId());
+        }
+        entry.lastAccess = System.currentTimeMillis();
+        return entry;
+    }
+
+    /**
+     * Makes room for a new cart, least recently used carts go first
+     */
+    private synchronized void shrink() {
+        if (carts.size() < maxCarts) {
+            return;
+        }
+        write(new ArrayList<>(carts.values()), false);
+        List<Entry> entries = new ArrayList<>(carts.values());
+        entries.sort(Comparator.comparingLong(entry -> entry.lastAccess));
+        int excess = carts.size() - maxCarts + 1 + maxCarts / 10;
+        for (int i = 0; i < entries.size() && excess > 0; i++) {
+            if (evictClean(entries.get(i))) {
+                excess--;
+            }
+        }
+    }
+
+    private boolean evictClean(Entry entry) {
+        synchronized (entry) {
+            if (!entry.dirty.isEmpty()) {
+                return false;
+            }
+            entry.evicted = true;
+            carts.remove(entry.username, entry);
+            return true;
+        }
+    }
+
+    /**
+     * The lines that had a row are gone: they are taken out of the cart, the lines added since the last flush are
+     * written and the cart is dropped once nothing is left to write
+     */
+    private void linesDeleted(Entry entry) {
+        if (entry == null) {
+            return;
+        }
+        synchronized (entry) {
+            if (entry.evicted) {
+                return;
+            }
+            for (Long productId : entry.stored) {
+                entry.cart.removeItem(productId);
+            }
+            entry.stored.clear();
+        }
+        synchronized (this) {
+            write(List.of(entry), false);
+        }
+        evictClean(entry);
+    }
+
+    /**
+     * A copy of the cart with copies of its lines, so it can be read while the cart changes
+     */
+    private static ShoppingCart copy(ShoppingCart cart) {
+        ShoppingCart copy = new ShoppingCart();
+        copy.setId(cart.getId());
+        copy.setCustomer(cart.getCustomer());
+        copy.setVersion(cart.getVersion());
+        copy.setTouchedAt(cart.getTouchedAt());
+        for (CartItem item : cart.getCartItems()) {
+            CartItem line = new CartItem();
+            line.setId(item.getId());
+            line.setCart(copy);
+            line.setProduct(item.getProduct());
+            line.setQuantity(item.getQuantity());
+            line.setUnitPrice(item.getUnitPrice());
+            line.setVersion(item.getVersion());
+            copy.addItem(line);
+        }
+        copy.setTotalItems(cart.getTotalItems());
+        copy.setTotalPrice(cart.getTotalPrice());
+        return copy;
+    }
+
+    /**
+     * Takes the pending changes of the carts and writes them with one batch per statement, the changes are put
+     * back when the write fails
+     * @param rethrow when false a failed write is only counted and retried with the next flush
+     */
+    private void write(List<Entry> entries, boolean rethrow) {
+        List<Pending> pending = new ArrayList<>();
+        for (Entry entry : entries) {
+            synchronized (entry) {
+                if (!entry.dirty.isEmpty()) {
+                    pending.add(entry.take());
+                }
+            }
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<Object[]> carts = new ArrayList<>();
+        List<Object[]> inserts = new ArrayList<>();
+        List<Object[]> updates = new ArrayList<>();
+        List<Object[]> deletes = new ArrayList<>();
+        for (Pending changes : pending) {
+            carts.add(new Object[]{changes.totalPrice, changes.totalItems, changes.touchedAt, changes.cartId});
+            inserts.addAll(changes.inserts);
+            updates.addAll(changes.updates);
+            deletes.addAll(changes.deletes);
+        }
+        try {
+            flushTransaction.executeWithoutResult(status -> {
+                batch(DELETE_ITEM, deletes);
+                batch(UPDATE_ITEM, updates);
+                batch(INSERT_ITEM, inserts);
+                batch(UPDATE_CART, carts);
+            });
+        } catch (RuntimeException e) {
+            for (Pending changes : pending) {
+                synchronized (changes.entry) {
+                    changes.entry.dirty.addAll(changes.products);
+                }
+            }
+            if (rethrow) {
+                throw e;
+            }
+            failedFlushes.incrementAndGet();
+            lastFailure = e.toString();
+            return;
+        }
+        for (Pending changes : pending) {
+            synchronized (changes.entry) {
+                changes.entry.stored.addAll(changes.inserted);
+                changes.entry.stored.removeAll(changes.deleted);
+            }
+        }
+    }
+
+    private void batch(String sql, List<Object[]> rows) {
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate(sql, rows);
+        }
+    }
+
+    private static final class Entry {
+        private final String username;
+        private final ShoppingCart cart;
+        private final Set<Long> stored = new HashSet<>();
+        private final Set<Long> dirty = new HashSet<>();
+        private volatile long lastAccess;
+        private boolean evicted;
+
+        private Entry(String username, ShoppingCart cart) {
+            this.username = username;
+            this.cart = cart;
+        }
+
+        /**
+         * Turns the changed lines into rows, a line is inserted, updated or deleted depending on whether it has a
+         * row (stored) and is still in the cart
+         */
+        private Pending take() {
+            Pending pending = new Pending(this, cart.getId(), cart.getTotalPrice(), cart.getTotalItems(), dirty);
+            for (Long productId : dirty) {
+                CartItem item = cart.findItem(productId);
+                boolean hasRow = stored.contains(productId);
+                if (item != null && hasRow) {
+                    pending.updates.add(new Object[]{item.getQuantity(), item.getUnitPrice(), cart.getId(), productId});
+                } else if (item != null) {
+                    pending.inserts.add(new Object[]{cart.getId(), productId, item.getQuantity(), item.getUnitPrice()});
+                    pending.inserted.add(productId);
+                } else if (hasRow) {
+                    pending.deletes.add(new Object[]{cart.getId(), productId});
+                    pending.deleted.add(productId);
+                }
+            }
+            dirty.clear();
+            return pending;
+        }
+    }
+
+    private static final class Pending {
+        private final Entry entry;
+        private final Long cartId;
+        private final double totalPrice;
+        private final int totalItems;
+        private final long touchedAt = System.currentTimeMillis();
+        private final Set<Long> products;
+        private final List<Object[]> inserts = new ArrayList<>();
+        private final List<Object[]> updates = new ArrayList<>();
+        private final List<Object[]> deletes = new ArrayList<>();
+        private final Set<Long> inserted = new HashSet<>();
+        private final Set<Long> deleted = new HashSet<>();
+
+        private Pending(Entry entry, Long cartId, double totalPrice, int totalItems, Set<Long> products) {
+            this.entry = entry;
+            this.cartId = cartId;
+            this.totalPrice = totalPrice;
+            this.totalItems = totalItems;
+            this.products = new HashSet<>(products);
+        }
+    }
+}
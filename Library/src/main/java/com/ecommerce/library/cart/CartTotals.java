@@ -0,0 +1,34 @@
+package com.ecommerce.library.cart;
+
+import com.ecommerce.library.dto.CartItemDto;
+import com.ecommerce.library.dto.ShoppingCartDto;
+import com.ecommerce.library.model.CartItem;
+import com.ecommerce.library.model.ShoppingCart;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Totals and line totals of a cart after a change, what the cart page needs to update itself without a reload
+ */
+public record CartTotals(int totalItems, double totalPrice, List<Line> lines) {
+
+    public record Line(Long productId, int quantity, double total) {
+    }
+
+    public static CartTotals of(ShoppingCart cart) {
+        List<Line> lines = new ArrayList<>();
+        for (CartItem item : cart.getCartItems()) {
+            lines.add(new Line(item.getProduct().getId(), item.getQuantity(), item.getUnitPrice() * item.getQuantity()));
+        }
+        return new CartTotals(cart.getTotalItems(), cart.getTotalPrice(), lines);
+    }
+
+    public static CartTotals of(ShoppingCartDto cart) {
+        List<Line> lines = new ArrayList<>();
+        for (CartItemDto item : cart.getCartItems()) {
+            lines.add(new Line(item.getProduct().getId(), item.getQuantity(), item.getUnitPrice() * item.getQuantity()));
+        }
+        return new CartTotals(cart.getTotalItems(), cart.getTotalPrice(), lines);
+    }
+}
@@ -0,0 +1,119 @@
+package com.ecommerce.library.cart;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cart of a visitor who is not logged in, only product ids and quantities so it fits in a cookie
+ * (see GuestCartCookie); prices and product data are looked up when the cart is shown or merged
+ * Binary form: a version byte, then a varint product id and a varint quantity per line
+ */
+public final class GuestCart {
+    static final int VERSION = 1;
+
+    public static final int MAX_LINES = 50;
+
+    public static final int MAX_QUANTITY = 999;
+
+    private final Map<Long, Integer> lines = new LinkedHashMap<>();
+
+    /**
+     * Adds to the quantity of the product, a new product is ignored once the cart has MAX_LINES lines
+     */
+    public void add(long productId, int quantity) {
+        Integer current = lines.get(productId);
+        if (current == null && lines.size() >= MAX_LINES) {
+            return;
+        }
+        setQuantity(productId, (current == null ? 0 : current) + quantity);
+    }
+
+    /**
+     * Sets the quantity of the product, zero or less removes it
+     */
+    public void setQuantity(long productId, int quantity) {
+        if (quantity <= 0) {
+            lines.remove(productId);
+        } else if (lines.containsKey(productId) || lines.size() < MAX_LINES) {
+            lines.put(productId, Math.min(quantity, MAX_QUANTITY));
+        }
+    }
+
+    public void remove(long productId) {
+        lines.remove(productId);
+    }
+
+    /**
+     * @return quantity by product id in the order the products were added
+     */
+    public Map<Long, Integer> getLines() {
+        return Collections.unmodifiableMap(lines);
+    }
+
+    public boolean isEmpty() {
+        return lines.isEmpty();
+    }
+
+    public int getTotalItems() {
+        int total = 0;
+        for (int quantity : lines.values()) {
+            total += quantity;
+        }
+        return total;
+    }
+
+    public byte[] toBytes() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(1 + lines.size() * 4);
+        out.write(VERSION);
+        for (Map.Entry<Long, Integer> line : lines.entrySet()) {
+            writeVarint(out, line.getKey());
+            writeVarint(out, line.getValue());
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * @throws IllegalArgumentException when the bytes are not a guest cart of this version
+     */
+    public static GuestCart fromBytes(byte[] bytes) {
+        if (bytes.length == 0 || bytes[0] != VERSION) {
+            throw new IllegalArgumentException("Unknown guest cart version");
+        }
+        GuestCart cart = new GuestCart();
+        int[] position = {1};
+        while (position[0] < bytes.length) {
+            long productId = readVarint(bytes, position);
+            long quantity = readVarint(bytes, position);
+            if (productId <= 0 || quantity > MAX_QUANTITY) {
+                throw new IllegalArgumentException("Invalid guest cart line");
+            }
+            cart.setQuantity(productId, (int) quantity);
+        }
+        return cart;
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarint(byte[] bytes, int[] position) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (position[0] >= bytes.length) {
+                throw new IllegalArgumentException("Truncated guest cart");
+            }
+            byte b = bytes[position[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Varint too long");
+    }
+}
@@ -0,0 +1,123 @@
+package com.ecommerce.library.cart;
+
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Keeps the guest cart in a cookie signed with HMAC-SHA256, so nothing is stored on the server for visitors who
+ * never log in; the value is the Base64url cart bytes, a dot and the first 16 bytes of the signature
+ * A cookie that was changed, signed with another secret or cannot be read counts as an empty cart
+ * Without cart.guest.secret a random secret is used, guest carts are then lost on restart and are not shared
+ * between instances
+ */
+@Component
+public class GuestCartCookie {
+    public static final String NAME = "guestCart";
+
+    static final int SIGNATURE_BYTES = 16;
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final SecretKeySpec key;
+
+    private final int maxAgeSeconds;
+
+    public GuestCartCookie(@Value("${cart.guest.secret:}") String secret,
+                           @Value("${cart.guest.max-age-days:30}") int maxAgeDays) {
+        byte[] keyBytes;
+        if (secret.isEmpty()) {
+            keyBytes = new byte[32];
+            new SecureRandom().nextBytes(keyBytes);
+        } else {
+            keyBytes = secret.getBytes(StandardCharsets.UTF_8);
+        }
+        this.key = new SecretKeySpec(keyBytes, "HmacSHA256");
+        this.maxAgeSeconds = maxAgeDays * 24 * 60 * 60;
+    }
+
+    /**
+     * @return the guest cart of the request, empty when there is none or it is not valid
+     */
+    public GuestCart read(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies != null) {
+            for (Cookie cookie : cookies) {
+                if (NAME.equals(cookie.getName())) {
+                    return decode(cookie.getValue());
+                }
+            }
+        }
+        return new GuestCart();
+    }
+
+    /**
+     * Sends the cart back to the browser, an empty cart removes the cookie
+     */
+    public void write(HttpServletRequest request, HttpServletResponse response, GuestCart cart) {
+        if (cart.isEmpty()) {
+            clear(request, response);
+        } else {
+            response.addCookie(cookie(request, encode(cart), maxAgeSeconds));
+        }
+    }
+
+    public void clear(HttpServletRequest request, HttpServletResponse response) {
+        response.addCookie(cookie(request, "", 0));
+    }
+
+    String encode(GuestCart cart) {
+        byte[] bytes = cart.toBytes();
+        return ENCODER.encodeToString(bytes) + "." + ENCODER.encodeToString(sign(bytes));
+    }
+
+    GuestCart decode(String value) {
+        int dot = value == null ? -1 : value.indexOf('.');
+        if (dot < 0) {
+            return new GuestCart();
+        }
+        try {
+            byte[] bytes = DECODER.decode(value.substring(0, dot));
+            byte[] signature = DECODER.decode(value.substring(dot + 1));
+            if (!MessageDigest.isEqual(signature, sign(bytes))) {
+                return new GuestCart();
+            }
+            return GuestCart.fromBytes(bytes);
+        } catch (IllegalArgumentException e) {
+            return new GuestCart();
+        }
+    }
+
+    private byte[] sign(byte[] bytes) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(key);
+            return Arrays.copyOf(mac.doFinal(bytes), SIGNATURE_BYTES);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Cookie cookie(HttpServletRequest request, String value, int maxAge) {
+        Cookie cookie = new Cookie(NAME, value);
+        cookie.setPath(request.getContextPath().isEmpty() ? "/" : request.getContextPath());
+        cookie.setMaxAge(maxAge);
+        cookie.setHttpOnly(true);
+        cookie.setSecure(request.isSecure());
+        cookie.setAttribute("SameSite", "Lax");
+        return cookie;
+    }
+}
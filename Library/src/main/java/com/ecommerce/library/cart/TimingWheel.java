@@ -0,0 +1,170 @@
+package com.ecommerce.library.cart;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hierarchical timing wheel of deadlines by key: LEVELS wheels of 64 slots, a slot of level n spans 64^n ticks
+ * Scheduling, rescheduling and cancelling a key cost O(1) (a map lookup and unlinking from a list); advancing
+ * empties one slot per tick and moves the entries of a higher slot down a level when its turn comes
+ * Deadlines further out than the wheel reaches wait in the last slot of the top level and are placed again when
+ * it turns
+ * Not thread safe, CartExpiry guards it
+ */
+final class TimingWheel {
+    static final int LEVELS = 5;
+
+    private static final int BITS = 6;
+
+    private static final int SLOTS = 1 << BITS;
+
+    private static final int MASK = SLOTS - 1;
+
+    private final long tickMillis;
+
+    private final long startMillis;
+
+    private final Node[][] wheels = new Node[LEVELS][SLOTS];
+
+    private final Map<Long, Node> nodes = new HashMap<>();
+
+    /**
+     * Last tick whose slot has been emptied
+     */
+    private long tick;
+
+    TimingWheel(long tickMillis, long startMillis) {
+        this.tickMillis = tickMillis;
+        this.startMillis = startMillis;
+        for (Node[] wheel : wheels) {
+            for (int i = 0; i < SLOTS; i++) {
+                wheel[i] = new Node(0, 0);
+                wheel[i].prev = wheel[i];
+                wheel[i].next = wheel[i];
+            }
+        }
+    }
+
+    /**
+     * Sets the deadline of the key, replacing the one it had; a deadline already passed expires with the next tick
+     */
+    void schedule(long key, long deadlineMillis) {
+        Node node = nodes.get(key);
+        if (node == null) {
+            node = new Node(key, 0);
+            nodes.put(key, node);
+        } else {
+            unlink(node);
+        }
+        node.deadline = Math.max(toTick(deadlineMillis), tick + 1);
+        place(node);
+    }
+
+    /**
+     * Schedules the key only when it has no deadline yet
+     */
+    void scheduleIfAbsent(long key, long deadlineMillis) {
+        if (!nodes.containsKey(key)) {
+            schedule(key, deadlineMillis);
+        }
+    }
+
+    boolean cancel(long key) {
+        Node node = nodes.remove(key);
+        if (node == null) {
+            return false;
+        }
+        unlink(node);
+        return true;
+    }
+
+    /**
+     * Moves the wheel up to the given time
+     * @return the keys whose deadline has passed, they are no longer scheduled
+     */
+    List<Long> advance(long nowMillis) {
+        long target = (nowMillis - startMillis) / tickMillis;
+        List<Long> expired = new ArrayList<>();
+        while (tick < target) {
+            tick++;
+            for (int level = LEVELS - 1; level > 0; level--) {
+                if ((tick & ((1L << (BITS * level)) - 1)) == 0) {
+                    cascade(wheels[level][(int) (tick >>> (BITS * level)) & MASK]);
+                }
+            }
+            Node head = wheels[0][(int) tick & MASK];
+            for (Node node = head.next; node != head; node = node.next) {
+                expired.add(node.key);
+                nodes.remove(node.key);
+            }
+            head.prev = head;
+            head.next = head;
+        }
+        return expired;
+    }
+
+    int size() {
+        return nodes.size();
+    }
+
+    private long toTick(long millis) {
+        long delta = millis - startMillis;
+        return delta <= 0 ? 0 : (delta + tickMillis - 1) / tickMillis;
+    }
+
+    /**
+     * Puts the node on the lowest level whose wheel turns before its deadline: the deadline and the current tick
+     * share the ticks above that level
+     */
+    private void place(Node node) {
+        long deadline = Math.max(node.deadline, tick);
+        for (int level = 0; level < LEVELS; level++) {
+            int shift = BITS * (level + 1);
+            if ((deadline >>> shift) == (tick >>> shift)) {
+                link(wheels[level][(int) (deadline >>> (BITS * level)) & MASK], node);
+                return;
+            }
+        }
+        int top = BITS * (LEVELS - 1);
+        link(wheels[LEVELS - 1][(int) ((tick >>> top) - 1) & MASK], node);
+    }
+
+    private void cascade(Node head) {
+        Node node = head.next;
+        head.prev = head;
+        head.next = head;
+        while (node != head) {
+            Node next = node.next;
+            place(node);
+            node = next;
+        }
+    }
+
+    private static void link(Node head, Node node) {
+        node.prev = head.prev;
+        node.next = head;
+        head.prev.next = node;
+        head.prev = node;
+    }
+
+    private static void unlink(Node node) {
+        node.prev.next = node.next;
+        node.next.prev = node.prev;
+        node.prev = null;
+        node.next = null;
+    }
+
+    private static final class Node {
+        private final long key;
+        private long deadline;
+        private Node prev;
+        private Node next;
+
+        private Node(long key, long deadline) {
+            this.key = key;
+            this.deadline = deadline;
+        }
+    }
+}
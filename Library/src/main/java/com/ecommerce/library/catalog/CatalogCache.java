@@ -0,0 +1,154 @@
+package com.ecommerce.library.catalog;
+
+import com.ecommerce.library.event.CatalogReloadedEvent;
+import com.ecommerce.library.event.CategoryChangedEvent;
+import com.ecommerce.library.event.ProductChangedEvent;
+import com.ecommerce.library.event.ProductImagesMigratedEvent;
+import com.ecommerce.library.event.ProductsImportedEvent;
+import com.ecommerce.library.model.CatalogVersion;
+import com.ecommerce.library.repository.CatalogVersionRepository;
+import com.ecommerce.library.repository.CategoryRepository;
+import com.ecommerce.library.repository.ProductRepository;
+import com.ecommerce.library.service.ProductMapper;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Holds the current CatalogSnapshot
+ * Writes in this app bump the catalog version and swap in a copy with the change applied,
+ * the version is polled every catalog.refresh-ms so changes made by the other app trigger a full reload,
+ * and everything is reloaded every catalog.reconcile-ms regardless
+ * Readers only read a volatile reference and never block
+ */
+@Component
+public class CatalogCache {
+    private final ProductRepository productRepository;
+
+    private final CategoryRepository categoryRepository;
+
+    private final CatalogVersionRepository versionRepository;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private volatile CatalogSnapshot snapshot;
+
+    public CatalogCache(ProductRepository productRepository,
+                        CategoryRepository categoryRepository,
+                        CatalogVersionRepository versionRepository,
+                        ApplicationEventPublisher eventPublisher) {
+        this.productRepository = productRepository;
+        this.categoryRepository = categoryRepository;
+        this.versionRepository = versionRepository;
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * @return the current snapshot, null until the first load finished
+     */
+    public CatalogSnapshot current() {
+        return snapshot;
+    }
+
+    /**
+     * @return the current snapshot, the first one is loaded on the calling thread if the scheduler has not done it yet
+     */
+    public CatalogSnapshot load() {
+        CatalogSnapshot current = snapshot;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (snapshot == null) {
+                reload(currentVersion());
+            }
+            return snapshot;
+        }
+    }
+
+    public boolean isReady() {
+        return snapshot != null;
+    }
+
+    @Scheduled(initialDelay = 0, fixedDelayString = "${catalog.refresh-ms:5000}")
+    public void refresh() {
+        long version = currentVersion();
+        CatalogSnapshot current = snapshot;
+        if (current == null || current.getVersion() != version) {
+            reload(version);
+        }
+    }
+
+    /**
+     * Full reload at a slow rate even when the version did not move,
+     * so lists and category counts also converge after database edits that bypass the services
+     */
+    @Scheduled(initialDelayString = "${catalog.reconcile-ms:600000}", fixedDelayString = "${catalog.reconcile-ms:600000}")
+    public void reconcile() {
+        reload(currentVersion());
+    }
+
+    public synchronized void reload(long version) {
+        CatalogSnapshot fresh = CatalogSnapshot.of(version,
+                productRepository.findActiveSummaries(),
+                categoryRepository.findAll());
+        snapshot = fresh;
+        eventPublisher.publishEvent(new CatalogReloadedEvent(fresh));
+    }
+
+    @EventListener
+    public synchronized void onProductChanged(ProductChangedEvent event) {
+        long version = bumpVersion();
+        CatalogSnapshot current = snapshot;
+        if (current == null) {
+            return;
+        }
+        if (version != current.getVersion() + 1) {
+            reload(version);
+            return;
+        }
+        snapshot = current.withProduct(version, ProductMapper.toSummary(event.getProduct()));
+    }
+
+    @EventListener
+    public synchronized void onCategoryChanged(CategoryChangedEvent event) {
+        reload(bumpVersion());
+    }
+
+    @EventListener
+    public synchronized void onProductsImported(ProductsImportedEvent event) {
+        reload(bumpVersion());
+    }
+
+    @EventListener
+    public synchronized void onProductImagesMigrated(ProductImagesMigratedEvent event) {
+        long version = bumpVersion();
+        CatalogSnapshot current = snapshot;
+        if (current == null) {
+            return;
+        }
+        if (version != current.getVersion() + 1) {
+            reload(version);
+            return;
+        }
+        snapshot = current.withImageKeys(version, event.getImageKeys());
+    }
+
+    private long currentVersion() {
+        Long version = versionRepository.currentVersion();
+        return version == null ? 0 : version;
+    }
+
+    private long bumpVersion() {
+        if (versionRepository.increment() == 0) {
+            try {
+                versionRepository.save(new CatalogVersion(CatalogVersion.ID, 1L));
+            } catch (DataIntegrityViolationException e) {
+                versionRepository.increment();
+            }
+        }
+        return currentVersion();
+    }
+}
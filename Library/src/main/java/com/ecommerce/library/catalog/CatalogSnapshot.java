@@ -0,0 +1,212 @@
+package com.ecommerce.library.catalog;
+
+import com.ecommerce.library.dto.CategoryDto;
+import com.ecommerce.library.dto.ProductSummary;
+import com.ecommerce.library.model.Category;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Immutable view of the active catalog at one catalog version
+ * Products are indexed by id, by category id and name, and sorted by price; categories carry their product counts
+ * which are recounted on every full load and adjusted by delta on single product changes
+ * A change never modifies a snapshot, it builds a new one (copy-on-write), so readers need no locks
+ */
+public final class CatalogSnapshot {
+    private final long version;
+    private final Map<Long, ProductSummary> productsById;
+    private final List<ProductSummary> products;
+    private final PriceIndex priceIndex;
+    private final Map<Long, List<ProductSummary>> productsByCategoryId;
+    private final Map<String, List<ProductSummary>> productsByCategoryName;
+    private final List<Category> categories;
+    private final List<CategoryDto> categorySizes;
+
+    private CatalogSnapshot(long version, TreeMap<Long, ProductSummary> productsById, PriceIndex priceIndex,
+                            Map<Long, List<ProductSummary>> productsByCategoryId,
+                            Map<String, List<ProductSummary>> productsByCategoryName,
+                            List<Category> categories) {
+        this.version = version;
+        this.productsById = Collections.unmodifiableMap(productsById);
+        this.products = List.copyOf(productsById.values());
+        this.priceIndex = priceIndex;
+        this.productsByCategoryId = Collections.unmodifiableMap(productsByCategoryId);
+        this.productsByCategoryName = Collections.unmodifiableMap(productsByCategoryName);
+        this.categories = categories;
+        List<CategoryDto> sizes = new ArrayList<>();
+        for (Category category : categories) {
+            if (category.isActivated() && !category.isDeleted()) {
+                long size = productsByCategoryId.getOrDefault(category.getId(), List.of()).size();
+                sizes.add(new CategoryDto(category.getId(), category.getName(), size));
+            }
+        }
+        this.categorySizes = Collections.unmodifiableList(sizes);
+    }
+
+    /**
+     * @param products only active products are kept
+     */
+    public static CatalogSnapshot of(long version, Collection<ProductSummary> products, List<Category> categories) {
+        TreeMap<Long, ProductSummary> byId = new TreeMap<>();
+        for (ProductSummary product : products) {
+            if (isActive(product)) {
+                byId.put(product.getId(), product);
+            }
+        }
+        Map<Long, List<ProductSummary>> byCategoryId = new HashMap<>();
+        Map<String, List<ProductSummary>> byCategoryName = new HashMap<>();
+        for (ProductSummary product : byId.values()) {
+            if (product.getCategoryId() != null) {
+                byCategoryId.computeIfAbsent(product.getCategoryId(), id -> new ArrayList<>()).add(product);
+                byCategoryName.computeIfAbsent(product.getCategoryName(), name -> new ArrayList<>()).add(product);
+            }
+        }
+        byCategoryId.replaceAll((id, list) -> Collections.unmodifiableList(list));
+        byCategoryName.replaceAll((name, list) -> Collections.unmodifiableList(list));
+        List<Category> sortedCategories = new ArrayList<>(categories);
+        sortedCategories.sort(Comparator.comparing(Category::getId));
+        return new CatalogSnapshot(version, byId, PriceIndex.of(byId.values()), byCategoryId, byCategoryName,
+                Collections.unmodifiableList(sortedCategories));
+    }
+
+    /**
+     * Only the price index entry and the lists of the old and new category are rebuilt,
+     * so the category counts follow activation, deactivation and re-categorization without a recount
+     * @return a new snapshot where the product is replaced, or removed when it is no longer active
+     */
+    public CatalogSnapshot withProduct(long version, ProductSummary product) {
+        TreeMap<Long, ProductSummary> byId = new TreeMap<>(productsById);
+        ProductSummary previous = isActive(product) ? byId.put(product.getId(), product) : byId.remove(product.getId());
+        PriceIndex prices = priceIndex;
+        Map<Long, List<ProductSummary>> byCategoryId = new HashMap<>(productsByCategoryId);
+        Map<String, List<ProductSummary>> byCategoryName = new HashMap<>(productsByCategoryName);
+        if (previous != null) {
+            prices = prices.without(previous.getId(), previous.getCostPrice());
+            if (previous.getCategoryId() != null) {
+                regroup(byCategoryId, previous.getCategoryId(), previous.getId(), null);
+                regroup(byCategoryName, previous.getCategoryName(), previous.getId(), null);
+            }
+        }
+        if (isActive(product)) {
+            prices = prices.with(product.getId(), product.getCostPrice());
+            if (product.getCategoryId() != null) {
+                regroup(byCategoryId, product.getCategoryId(), product.getId(), product);
+                regroup(byCategoryName, product.getCategoryName(), product.getId(), product);
+            }
+        }
+        return new CatalogSnapshot(version, byId, prices, byCategoryId, byCategoryName, categories);
+    }
+
+    /**
+     * Products whose image moved to the image store, nothing else about them changes so the indexes are kept
+     * @return a new snapshot where the products carry their image key instead of the Base64 image
+     */
+    public CatalogSnapshot withImageKeys(long version, Map<Long, String> imageKeys) {
+        TreeMap<Long, ProductSummary> byId = new TreeMap<>(productsById);
+        for (Map.Entry<Long, String> imageKey : imageKeys.entrySet()) {
+            ProductSummary product = byId.get(imageKey.getKey());
+            if (product != null) {
+                byId.put(product.getId(), new ProductSummary(product.getId(), product.getName(),
+                        product.getDescription(), product.getCostPrice(), product.getSalePrice(),
+                        product.getCurrentQuantity(), product.getCategoryId(), product.getCategoryName(),
+                        imageKey.getValue(), null, product.isActivated(), product.isDeleted()));
+            }
+        }
+        return new CatalogSnapshot(version, byId, priceIndex, relinked(productsByCategoryId, byId),
+                relinked(productsByCategoryName, byId), categories);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public ProductSummary getProduct(Long id) {
+        return productsById.get(id);
+    }
+
+    /**
+     * @return active products ordered by id
+     */
+    public List<ProductSummary> getProducts() {
+        return products;
+    }
+
+    /**
+     * @return active products ordered by cost price, then id
+     */
+    public PriceIndex getPriceIndex() {
+        return priceIndex;
+    }
+
+    /**
+     * @return the products with the given ids in the same order, ids that are no longer active are skipped
+     */
+    public List<ProductSummary> getProducts(long[] ids) {
+        List<ProductSummary> result = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            ProductSummary product = productsById.get(id);
+            if (product != null) {
+                result.add(product);
+            }
+        }
+        return result;
+    }
+
+    public List<ProductSummary> getProductsByCategoryId(Long categoryId) {
+        return productsByCategoryId.getOrDefault(categoryId, List.of());
+    }
+
+    public List<ProductSummary> getProductsByCategoryName(String categoryName) {
+        return productsByCategoryName.getOrDefault(categoryName, List.of());
+    }
+
+    public List<Category> getCategories() {
+        return categories;
+    }
+
+    /**
+     * @return active categories with the number of active products in each
+     */
+    public List<CategoryDto> getCategorySizes() {
+        return categorySizes;
+    }
+
+    /**
+     * Replaces the list under key with a copy where the product with the given id is removed and, if given, added back
+     */
+    private static <K> void regroup(Map<K, List<ProductSummary>> groups, K key, Long id, ProductSummary added) {
+        List<ProductSummary> list = new ArrayList<>(groups.getOrDefault(key, List.of()));
+        list.removeIf(product -> product.getId().equals(id));
+        if (added != null) {
+            int at = 0;
+            while (at < list.size() && list.get(at).getId() < added.getId()) {
+                at++;
+            }
+            list.add(at, added);
+        }
+        if (list.isEmpty()) {
+            groups.remove(key);
+        } else {
+            groups.put(key, Collections.unmodifiableList(list));
+        }
+    }
+
+    private static <K> Map<K, List<ProductSummary>> relinked(Map<K, List<ProductSummary>> groups,
+                                                             Map<Long, ProductSummary> byId) {
+        Map<K, List<ProductSummary>> relinked = new HashMap<>();
+        groups.forEach((key, list) -> relinked.put(key,
+                list.stream().map(product -> byId.get(product.getId())).toList()));
+        return relinked;
+    }
+
+    private static boolean isActive(ProductSummary product) {
+        return product.isActivated() && !product.isDeleted();
+    }
+}
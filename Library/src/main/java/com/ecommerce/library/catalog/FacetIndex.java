@@ -0,0 +1,263 @@
+package com.ecommerce.library.catalog;
+
+import com.ecommerce.library.dto.ProductSummary;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Bitmaps over the products of one catalog snapshot, bit i stands for the i-th product in id order
+ * One bitmap per category, per price band, and for in stock (currentQuantity > 0) and on sale (salePrice > 0)
+ * A filter is a few word-wise AND/OR passes and the facet counts are popcounts over the same words
+ * Price bands and the two flags are dense (n / 8 bytes each, 125 KB at 1M products) since together they cover
+ * every product. A category only gets a dense bitmap when it holds at least 1/32 of the products, smaller ones
+ * keep their positions as a sorted int[]; either way a category costs at most 4 bytes per product in it, so all
+ * categories together stay under 4 bytes per product (4 MB at 1M) however many categories there are
+ */
+public final class FacetIndex {
+    private final long version;
+    private final List<ProductSummary> products;
+    private final double[] bounds;
+    private final int words;
+    private final Map<Long, CategoryBits> byCategory;
+    private final long[][] byBand;
+    private final long[] inStock;
+    private final long[] onSale;
+
+    private FacetIndex(long version, List<ProductSummary> products, double[] bounds) {
+        this.version = version;
+        this.products = products;
+        this.bounds = bounds.clone();
+        this.words = (products.size() + 63) >>> 6;
+        this.byBand = new long[bounds.length + 1][words];
+        this.inStock = new long[words];
+        this.onSale = new long[words];
+        Map<Long, int[]> positions = new TreeMap<>();
+        Map<Long, Integer> sizes = new TreeMap<>();
+        for (int i = 0; i < products.size(); i++) {
+            ProductSummary product = products.get(i);
+            int word = i >>> 6;
+            long bit = 1L << i;
+            if (product.getCategoryId() != null) {
+                int size = sizes.merge(product.getCategoryId(), 1, Integer::sum);
+                int[] category = positions.computeIfAbsent(product.getCategoryId(), id -> new int[8]);
+                if (size > category.length) {
+                    category = Arrays.copyOf(category, category.length * 2);
+                    positions.put(product.getCategoryId(), category);
+                }
+                category[size - 1] = i;
+            }
+            byBand[bandOf(product.getCostPrice())][word] |= bit;
+            if (product.getCurrentQuantity() > 0) {
+                inStock[word] |= bit;
+            }
+            if (product.getSalePrice() > 0) {
+                onSale[word] |= bit;
+            }
+        }
+        Map<Long, CategoryBits> categories = new TreeMap<>();
+        positions.forEach((id, category) -> categories.put(id, new CategoryBits(category, sizes.get(id), words)));
+        this.byCategory = categories;
+    }
+
+    /**
+     * @param bounds ascending price band bounds, n bounds make n + 1 bands
+     */
+    public static FacetIndex of(CatalogSnapshot snapshot, double[] bounds) {
+        return new FacetIndex(snapshot.getVersion(), snapshot.getProducts(), bounds);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public int bandOf(double price) {
+        int band = 0;
+        while (band < bounds.length && price >= bounds[band]) {
+            band++;
+        }
+        return band;
+    }
+
+    public FacetResult filter(FacetQuery query, Pageable pageable) {
+        long[] categoryMask = null;
+        if (!query.categoryIds().isEmpty()) {
+            categoryMask = new long[words];
+            for (Long id : query.categoryIds()) {
+                CategoryBits category = byCategory.get(id);
+                if (category != null) {
+                    category.orInto(categoryMask);
+                }
+            }
+        }
+        long[] bandMask = null;
+        if (!query.priceBands().isEmpty()) {
+            bandMask = union(query.priceBands().stream()
+                    .map(band -> band >= 0 && band < byBand.length ? byBand[band] : null).toList());
+        }
+        long[] stockMask = query.inStock() ? inStock : null;
+        long[] saleMask = query.onSale() ? onSale : null;
+
+        long[] match = intersect(categoryMask, bandMask, stockMask, saleMask);
+        Map<Long, Integer> categoryCounts = new LinkedHashMap<>();
+        long[] withoutCategory = intersect(bandMask, stockMask, saleMask);
+        for (Map.Entry<Long, CategoryBits> category : byCategory.entrySet()) {
+            categoryCounts.put(category.getKey(), category.getValue().count(withoutCategory));
+        }
+        List<PriceBand> priceBands = new ArrayList<>(byBand.length);
+        long[] withoutBand = intersect(categoryMask, stockMask, saleMask);
+        for (int band = 0; band < byBand.length; band++) {
+            double min = band == 0 ? 0 : bounds[band - 1];
+            double max = band == bounds.length ? Double.POSITIVE_INFINITY : bounds[band];
+            priceBands.add(new PriceBand(band, min, max, count(byBand[band], withoutBand)));
+        }
+        int inStockCount = count(inStock, intersect(categoryMask, bandMask, saleMask));
+        int onSaleCount = count(onSale, intersect(categoryMask, bandMask, stockMask));
+
+        return new FacetResult(page(match, pageable), categoryCounts, priceBands, inStockCount, onSaleCount);
+    }
+
+    private PageImpl<ProductSummary> page(long[] match, Pageable pageable) {
+        int total = count(match, null);
+        List<ProductSummary> content = new ArrayList<>(Math.min(pageable.getPageSize(), total));
+        long skip = pageable.getOffset();
+        for (int word = 0; word < words && content.size() < pageable.getPageSize(); word++) {
+            long bits = match == null ? all(word) : match[word];
+            int bitCount = Long.bitCount(bits);
+            if (skip >= bitCount) {
+                skip -= bitCount;
+                continue;
+            }
+            while (bits != 0 && content.size() < pageable.getPageSize()) {
+                int bit = Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                if (skip > 0) {
+                    skip--;
+                } else {
+                    content.add(products.get((word << 6) + bit));
+                }
+            }
+        }
+        return new PageImpl<>(content, pageable, total);
+    }
+
+    /**
+     * @return bits of every product, for the last word only the bits that stand for a product
+     */
+    private long all(int word) {
+        int remaining = products.size() - (word << 6);
+        return remaining >= 64 ? -1L : (1L << remaining) - 1;
+    }
+
+    private int count(long[] bitmap, long[] mask) {
+        if (bitmap == null) {
+            int total = 0;
+            for (int word = 0; word < words; word++) {
+                total += Long.bitCount(mask == null ? all(word) : mask[word]);
+            }
+            return total;
+        }
+        int total = 0;
+        for (int word = 0; word < words; word++) {
+            total += Long.bitCount(mask == null ? bitmap[word] : bitmap[word] & mask[word]);
+        }
+        return total;
+    }
+
+    /**
+     * @return the AND of the given bitmaps, null (everything) when none is given
+     */
+    private long[] intersect(long[]... bitmaps) {
+        long[] result = null;
+        for (long[] bitmap : bitmaps) {
+            if (bitmap == null) {
+                continue;
+            }
+            if (result == null) {
+                result = bitmap.clone();
+            } else {
+                for (int word = 0; word < words; word++) {
+                    result[word] &= bitmap[word];
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the OR of the given bitmaps, missing ones count as empty
+     */
+    private long[] union(List<long[]> bitmaps) {
+        long[] result = new long[words];
+        for (long[] bitmap : bitmaps) {
+            if (bitmap == null) {
+                continue;
+            }
+            for (int word = 0; word < words; word++) {
+                result[word] |= bitmap[word];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Products of one category, a bitmap when dense enough and the sorted positions otherwise
+     */
+    private static final class CategoryBits {
+        private final long[] bitmap;
+        private final int[] positions;
+
+        private CategoryBits(int[] positions, int size, int words) {
+            if (size >= words * 2) {
+                this.bitmap = new long[words];
+                for (int i = 0; i < size; i++) {
+                    bitmap[positions[i] >>> 6] |= 1L << positions[i];
+                }
+                this.positions = null;
+            } else {
+                this.bitmap = null;
+                this.positions = Arrays.copyOf(positions, size);
+            }
+        }
+
+        private void orInto(long[] target) {
+            if (bitmap != null) {
+                for (int word = 0; word < target.length; word++) {
+                    target[word] |= bitmap[word];
+                }
+                return;
+            }
+            for (int position : positions) {
+                target[position >>> 6] |= 1L << position;
+            }
+        }
+
+        /**
+         * @param mask null for everything
+         */
+        private int count(long[] mask) {
+            int total = 0;
+            if (bitmap != null) {
+                for (int word = 0; word < bitmap.length; word++) {
+                    total += Long.bitCount(mask == null ? bitmap[word] : bitmap[word] & mask[word]);
+                }
+                return total;
+            }
+            if (mask == null) {
+                return positions.length;
+            }
+            for (int position : positions) {
+                if ((mask[position >>> 6] & 1L << position) != 0) {
+                    total++;
+                }
+            }
+            return total;
+        }
+    }
+}
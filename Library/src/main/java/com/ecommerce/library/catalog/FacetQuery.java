@@ -0,0 +1,14 @@
+package com.ecommerce.library.catalog;
+
+import java.util.Set;
+
+/**
+ * Selected facet values, values of one facet are OR-ed and facets are AND-ed
+ * An empty set or false means the facet is not filtered
+ */
+public record FacetQuery(Set<Long> categoryIds, Set<Integer> priceBands, boolean inStock, boolean onSale) {
+    public FacetQuery {
+        categoryIds = categoryIds == null ? Set.of() : Set.copyOf(categoryIds);
+        priceBands = priceBands == null ? Set.of() : Set.copyOf(priceBands);
+    }
+}
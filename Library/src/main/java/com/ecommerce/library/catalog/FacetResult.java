@@ -0,0 +1,16 @@
+package com.ecommerce.library.catalog;
+
+import com.ecommerce.library.dto.ProductSummary;
+import org.springframework.data.domain.Page;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One page of filtered products with the facet counts
+ * The count of a facet value is the number of products that would match if it were selected
+ * together with the current selection of every other facet
+ */
+public record FacetResult(Page<ProductSummary> products, Map<Long, Integer> categoryCounts, List<PriceBand> priceBands,
+                          int inStockCount, int onSaleCount) {
+}
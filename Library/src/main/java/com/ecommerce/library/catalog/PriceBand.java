@@ -0,0 +1,10 @@
+package com.ecommerce.library.catalog;
+
+/**
+ * Price band facet value, min inclusive and max exclusive, count of matching products
+ */
+public record PriceBand(int index, double min, double max, int count) {
+    public boolean isOpenEnded() {
+        return Double.isInfinite(max);
+    }
+}
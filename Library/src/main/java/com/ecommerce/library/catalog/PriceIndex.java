@@ -0,0 +1,173 @@
+package com.ecommerce.library.catalog;
+
+import com.ecommerce.library.dto.ProductSummary;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Immutable (price, id) pairs sorted by price, then id, kept in two parallel primitive arrays
+ * Lookups are binary searches, a change copies the arrays once around the changed slot instead of re-sorting
+ */
+public final class PriceIndex {
+    private static final PriceIndex EMPTY = new PriceIndex(new double[0], new long[0]);
+
+    private final double[] prices;
+    private final long[] ids;
+
+    private PriceIndex(double[] prices, long[] ids) {
+        this.prices = prices;
+        this.ids = ids;
+    }
+
+    public static PriceIndex of(Collection<ProductSummary> products) {
+        if (products.isEmpty()) {
+            return EMPTY;
+        }
+        ProductSummary[] sorted = products.toArray(new ProductSummary[0]);
+        Arrays.sort(sorted, (left, right) -> compare(left.getCostPrice(), left.getId(), right.getCostPrice(), right.getId()));
+        double[] prices = new double[sorted.length];
+        long[] ids = new long[sorted.length];
+        for (int i = 0; i < sorted.length; i++) {
+            prices[i] = sorted[i].getCostPrice();
+            ids[i] = sorted[i].getId();
+        }
+        return new PriceIndex(prices, ids);
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * @return a copy with the pair added, the same index when it is already present
+     */
+    public PriceIndex with(long id, double price) {
+        int slot = find(price, id);
+        if (slot >= 0) {
+            return this;
+        }
+        int at = -slot - 1;
+        double[] newPrices = new double[prices.length + 1];
+        long[] newIds = new long[ids.length + 1];
+        System.arraycopy(prices, 0, newPrices, 0, at);
+        System.arraycopy(ids, 0, newIds, 0, at);
+        newPrices[at] = price;
+        newIds[at] = id;
+        System.arraycopy(prices, at, newPrices, at + 1, prices.length - at);
+        System.arraycopy(ids, at, newIds, at + 1, ids.length - at);
+        return new PriceIndex(newPrices, newIds);
+    }
+
+    /**
+     * @return a copy without the pair, the same index when it is not present
+     */
+    public PriceIndex without(long id, double price) {
+        int at = find(price, id);
+        if (at < 0) {
+            return this;
+        }
+        double[] newPrices = new double[prices.length - 1];
+        long[] newIds = new long[ids.length - 1];
+        System.arraycopy(prices, 0, newPrices, 0, at);
+        System.arraycopy(ids, 0, newIds, 0, at);
+        System.arraycopy(prices, at + 1, newPrices, at, prices.length - at - 1);
+        System.arraycopy(ids, at + 1, newIds, at, ids.length - at - 1);
+        return new PriceIndex(newPrices, newIds);
+    }
+
+    /**
+     * @return ids of the count most expensive products, most expensive first
+     */
+    public long[] highest(int count) {
+        int size = Math.min(count, ids.length);
+        long[] result = new long[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = ids[ids.length - 1 - i];
+        }
+        return result;
+    }
+
+    /**
+     * @return ids of the count cheapest products, cheapest first
+     */
+    public long[] lowest(int count) {
+        return Arrays.copyOf(ids, Math.min(count, ids.length));
+    }
+
+    /**
+     * @return number of products priced between min and max, both inclusive
+     */
+    public int count(double min, double max) {
+        return Math.max(0, upperBound(max) - lowerBound(min));
+    }
+
+    /**
+     * @return ids of at most limit products priced between min and max (inclusive), cheapest first, skipping offset
+     */
+    public long[] range(double min, double max, long offset, int limit) {
+        int from = lowerBound(min);
+        int to = upperBound(max);
+        if (from + offset >= to) {
+            return new long[0];
+        }
+        int start = (int) (from + offset);
+        return Arrays.copyOfRange(ids, start, (int) Math.min(to, (long) start + limit));
+    }
+
+    private int find(double price, long id) {
+        int low = 0;
+        int high = ids.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compare(prices[mid], ids[mid], price, id);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * @return first slot whose price is not below min
+     */
+    private int lowerBound(double min) {
+        int low = 0;
+        int high = prices.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (prices[mid] < min) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return first slot whose price is above max
+     */
+    private int upperBound(double max) {
+        int low = 0;
+        int high = prices.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (prices[mid] <= max) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static int compare(double leftPrice, long leftId, double rightPrice, long rightId) {
+        int cmp = Double.compare(leftPrice, rightPrice);
+        return cmp != 0 ? cmp : Long.compare(leftId, rightId);
+    }
+}
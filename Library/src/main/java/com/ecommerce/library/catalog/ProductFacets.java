@@ -0,0 +1,37 @@
+package com.ecommerce.library.catalog;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+
+/**
+ * Faceted filtering over the current catalog snapshot
+ * The FacetIndex is built on the first filter after each catalog version change and shared until the next one
+ */
+@Component
+public class ProductFacets {
+    private final CatalogCache catalogCache;
+
+    private final double[] priceBands;
+
+    private volatile FacetIndex index;
+
+    public ProductFacets(CatalogCache catalogCache,
+                         @Value("${catalog.price-bands:10,25,50,100}") double[] priceBands) {
+        this.catalogCache = catalogCache;
+        this.priceBands = priceBands;
+    }
+
+    public FacetResult filter(FacetQuery query, Pageable pageable) {
+        return index(catalogCache.load()).filter(query, pageable);
+    }
+
+    private FacetIndex index(CatalogSnapshot snapshot) {
+        FacetIndex current = index;
+        if (current == null || current.getVersion() != snapshot.getVersion()) {
+            current = FacetIndex.of(snapshot, priceBands);
+            index = current;
+        }
+        return current;
+    }
+}
@@ -0,0 +1,65 @@
+package com.ecommerce.library.catalog;
+
+import com.ecommerce.library.dto.ProductSummary;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Picks random active products without "order by rand()"
+ * Keeps the active product ids in a long[] per catalog version and draws k distinct ones with a partial
+ * Fisher-Yates shuffle that only records the swapped slots, so a draw costs O(k) whatever the catalog size
+ */
+@Component
+public class RandomProductSampler {
+    private final CatalogCache catalogCache;
+
+    private volatile Ids ids = new Ids(-1, new long[0]);
+
+    public RandomProductSampler(CatalogCache catalogCache) {
+        this.catalogCache = catalogCache;
+    }
+
+    /**
+     * @return up to count distinct active products in random order
+     */
+    public List<ProductSummary> sample(int count) {
+        CatalogSnapshot snapshot = catalogCache.load();
+        return snapshot.getProducts(sample(ids(snapshot), count));
+    }
+
+    static long[] sample(long[] ids, int count) {
+        int size = ids.length;
+        int k = Math.min(count, size);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Map<Integer, Integer> swapped = new HashMap<>(k * 2);
+        long[] result = new long[k];
+        for (int i = 0; i < k; i++) {
+            int j = i + random.nextInt(size - i);
+            int atJ = swapped.getOrDefault(j, j);
+            swapped.put(j, swapped.getOrDefault(i, i));
+            result[i] = ids[atJ];
+        }
+        return result;
+    }
+
+    private long[] ids(CatalogSnapshot snapshot) {
+        Ids current = ids;
+        if (current.version() == snapshot.getVersion()) {
+            return current.values();
+        }
+        List<ProductSummary> products = snapshot.getProducts();
+        long[] values = new long[products.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = products.get(i).getId();
+        }
+        ids = new Ids(snapshot.getVersion(), values);
+        return values;
+    }
+
+    private record Ids(long version, long[] values) {
+    }
+}
@@ -0,0 +1,75 @@
+package com.ecommerce.library.catalog;
+
+import java.io.Serial;
+import java.io.Serializable;
+
+/**
+ * The last product ids a visitor looked at, kept in their HTTP session
+ * A fixed-size ring of primitive ids: viewing a product again moves it to the front instead of adding a duplicate,
+ * once full the oldest id is overwritten
+ */
+public class RecentlyViewed implements Serializable {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    public static final String SESSION_ATTRIBUTE = "recentlyViewed";
+
+    private final long[] ring;
+
+    private int head;
+
+    private int size;
+
+    public RecentlyViewed(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.ring = new long[capacity];
+    }
+
+    public synchronized void add(long id) {
+        int index = indexOf(id);
+        if (index >= 0 && index == size - 1) {
+            return;
+        }
+        if (index >= 0) {
+            for (int i = index; i < size - 1; i++) {
+                ring[slot(i)] = ring[slot(i + 1)];
+            }
+            size--;
+            head = (head - 1 + ring.length) % ring.length;
+        }
+        ring[head] = id;
+        head = (head + 1) % ring.length;
+        if (size < ring.length) {
+            size++;
+        }
+    }
+
+    /**
+     * @return the ids, most recently viewed first
+     */
+    public synchronized long[] ids() {
+        long[] ids = new long[size];
+        for (int i = 0; i < size; i++) {
+            ids[i] = ring[slot(size - 1 - i)];
+        }
+        return ids;
+    }
+
+    /**
+     * @return position of the id counted from the oldest, -1 when it is not there
+     */
+    private int indexOf(long id) {
+        for (int i = 0; i < size; i++) {
+            if (ring[slot(i)] == id) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int slot(int index) {
+        return (head - size + index + 2 * ring.length) % ring.length;
+    }
+}
@@ -0,0 +1,95 @@
+package com.ecommerce.library.catalog;
+
+import com.ecommerce.library.dto.ProductSummary;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded related-product lists for every product of one catalog snapshot
+ * Products bought in the same orders come first (most shared orders first), the rest of the list is filled
+ * with the most ordered products of the same category
+ */
+public final class RelatedIndex {
+    private static final long[] NONE = new long[0];
+
+    private final long version;
+    private final Map<Long, long[]> related;
+
+    private RelatedIndex(long version, Map<Long, long[]> related) {
+        this.version = version;
+        this.related = related;
+    }
+
+    /**
+     * @param coPurchases rows of product id, other product id and the number of orders with both
+     * @param popularity number of order lines per product id
+     * @param limit the size of every list
+     */
+    public static RelatedIndex of(CatalogSnapshot snapshot, List<Object[]> coPurchases,
+                                  Map<Long, Long> popularity, int limit) {
+        Map<Long, List<long[]>> bought = new HashMap<>();
+        for (Object[] row : coPurchases) {
+            Long id = (Long) row[0];
+            Long other = (Long) row[1];
+            if (snapshot.getProduct(id) != null && snapshot.getProduct(other) != null) {
+                bought.computeIfAbsent(id, key -> new ArrayList<>()).add(new long[]{other, (Long) row[2]});
+            }
+        }
+        Comparator<ProductSummary> byPopularity = Comparator
+                .comparing((ProductSummary product) -> popularity.getOrDefault(product.getId(), 0L)).reversed()
+                .thenComparing(ProductSummary::getId);
+        Map<Long, List<ProductSummary>> popularInCategory = new HashMap<>();
+        Map<Long, long[]> related = new HashMap<>();
+        for (ProductSummary product : snapshot.getProducts()) {
+            long[] ids = new long[limit];
+            int size = 0;
+            List<long[]> pairs = bought.get(product.getId());
+            if (pairs != null) {
+                pairs.sort(Comparator.<long[]>comparingLong(pair -> -pair[1]).thenComparingLong(pair -> pair[0]));
+                for (int i = 0; i < pairs.size() && size < limit; i++) {
+                    ids[size++] = pairs.get(i)[0];
+                }
+            }
+            if (size < limit && product.getCategoryId() != null) {
+                List<ProductSummary> candidates = popularInCategory.computeIfAbsent(product.getCategoryId(), id -> {
+                    List<ProductSummary> sorted = new ArrayList<>(snapshot.getProductsByCategoryId(id));
+                    sorted.sort(byPopularity);
+                    return sorted;
+                });
+                for (int i = 0; i < candidates.size() && size < limit; i++) {
+                    long candidate = candidates.get(i).getId();
+                    if (candidate != product.getId() && !contains(ids, size, candidate)) {
+                        ids[size++] = candidate;
+                    }
+                }
+            }
+            related.put(product.getId(), size == limit ? ids : Arrays.copyOf(ids, size));
+        }
+        return new RelatedIndex(snapshot.getVersion(), related);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return related product ids, best first, empty for unknown products
+     */
+    public long[] get(Long id) {
+        return related.getOrDefault(id, NONE);
+    }
+
+    private static boolean contains(long[] ids, int size, long id) {
+        for (int i = 0; i < size; i++) {
+            if (ids[i] == id) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,105 @@
+package com.ecommerce.library.catalog;
+
+import com.ecommerce.library.dto.ProductSummary;
+import com.ecommerce.library.event.CatalogReloadedEvent;
+import com.ecommerce.library.repository.OrderDetailRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Related products for the product detail page, precomputed for the whole catalog snapshot
+ * The RelatedIndex is rebuilt in the background when the catalog version moves, the old one keeps answering;
+ * until the first one is ready the list is the start of the product's category
+ */
+@Component
+public class RelatedProducts {
+    private final CatalogCache catalogCache;
+
+    private final OrderDetailRepository orderDetailRepository;
+
+    private final int limit;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "related-build");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicBoolean building = new AtomicBoolean();
+
+    private volatile RelatedIndex index;
+
+    public RelatedProducts(CatalogCache catalogCache, OrderDetailRepository orderDetailRepository,
+                           @Value("${catalog.related-limit:8}") int limit) {
+        this.catalogCache = catalogCache;
+        this.orderDetailRepository = orderDetailRepository;
+        this.limit = limit;
+    }
+
+    /**
+     * @return active products related to the product, best first, never the product itself
+     */
+    public List<ProductSummary> related(Long id) {
+        CatalogSnapshot snapshot = catalogCache.load();
+        RelatedIndex current = index;
+        if (current == null || current.getVersion() != snapshot.getVersion()) {
+            buildAsync();
+        }
+        if (current != null) {
+            return snapshot.getProducts(current.get(id));
+        }
+        ProductSummary product = snapshot.getProduct(id);
+        if (product == null || product.getCategoryId() == null) {
+            return List.of();
+        }
+        List<ProductSummary> related = new ArrayList<>(limit);
+        for (ProductSummary candidate : snapshot.getProductsByCategoryId(product.getCategoryId())) {
+            if (related.size() == limit) {
+                break;
+            }
+            if (!candidate.getId().equals(id)) {
+                related.add(candidate);
+            }
+        }
+        return related;
+    }
+
+    @EventListener(CatalogReloadedEvent.class)
+    public void buildAsync() {
+        if (!building.compareAndSet(false, true)) {
+            return;
+        }
+        executor.execute(() -> {
+            try {
+                build(catalogCache.load());
+            } catch (Exception e) {
+                e.printStackTrace();
+            } finally {
+                building.set(false);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void build(CatalogSnapshot snapshot) {
+        Map<Long, Long> popularity = new HashMap<>();
+        for (Object[] row : orderDetailRepository.countOrderLinesByProduct()) {
+            popularity.put((Long) row[0], (Long) row[1]);
+        }
+        index = RelatedIndex.of(snapshot, orderDetailRepository.countCoPurchases(), popularity, limit);
+    }
+}
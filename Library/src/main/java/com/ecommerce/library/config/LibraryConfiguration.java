@@ -0,0 +1,13 @@
+package com.ecommerce.library.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Shared configuration picked up by both Admin and Customer
+ * Enables the scheduled catalog version check that keeps the in-memory catalog and indexes fresh
+ */
+@Configuration
+@EnableScheduling
+public class LibraryConfiguration {
+}
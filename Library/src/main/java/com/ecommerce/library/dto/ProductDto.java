@@ -15,9 +15,14 @@ public class ProductDto {
     private String name;
     private String description;
     private int currentQuantity;
+    /**
+     * Quantity when the edit form was loaded, the update applies only the difference to it
+     */
+    private int loadedQuantity;
     private double costPrice;
     private double salePrice;
     private String image;
+    private String imageKey;
     private Category category;
     private boolean activated;
     private boolean deleted;
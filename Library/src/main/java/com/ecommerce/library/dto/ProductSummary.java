@@ -0,0 +1,24 @@
+package com.ecommerce.library.dto;
+
+import lombok.Value;
+
+/**
+ * Read-only product row for list pages
+ * Loaded with a constructor projection, so list queries read neither the Category entity nor the image blob;
+ * image only carries the legacy Base64 image of products whose image is not in the image store yet
+ */
+@Value
+public class ProductSummary {
+    Long id;
+    String name;
+    String description;
+    double costPrice;
+    double salePrice;
+    int currentQuantity;
+    Long categoryId;
+    String categoryName;
+    String imageKey;
+    String image;
+    boolean activated;
+    boolean deleted;
+}
@@ -1,15 +1,21 @@
 package com.ecommerce.library.dto;
 
 import com.ecommerce.library.model.Customer;
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 
-import java.util.Set;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * Data Transfer Object for a customer's shopping cart
+ *
+ * Lines are kept by product id in the order they were added and the totals move by the difference of each change,
+ * so change lines through findItem, addItem, setItemQuantity and removeItem
  */
 @Getter
 @Setter
@@ -24,6 +30,55 @@ public class ShoppingCartDto {
 
     private int totalItems;
 
-    private Set<CartItemDto> cartItems;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private Map<Long, CartItemDto> items = new LinkedHashMap<>();
 
+    public Collection<CartItemDto> getCartItems() {
+        return items.values();
+    }
+
+    /**
+     * @return the line of the product, null when the product is not in the cart
+     */
+    public CartItemDto findItem(long productId) {
+        return items.get(productId);
+    }
+
+    /**
+     * Adds the line of a product that is not in the cart yet
+     */
+    public void addItem(CartItemDto item) {
+        items.put(item.getProduct().getId(), item);
+        totalItems += item.getQuantity();
+        totalPrice += item.getUnitPrice() * item.getQuantity();
+    }
+
+    /**
+     * Sets the quantity of a line of this cart
+     */
+    public void setItemQuantity(CartItemDto item, int quantity) {
+        int delta = quantity - item.getQuantity();
+        item.setQuantity(quantity);
+        totalItems += delta;
+        totalPrice += item.getUnitPrice() * delta;
+    }
+
+    /**
+     * @return the removed line, null when the product is not in the cart
+     */
+    public CartItemDto removeItem(long productId) {
+        CartItemDto item = items.remove(productId);
+        if (item == null) {
+            return null;
+        }
+        if (items.isEmpty()) {
+            totalItems = 0;
+            totalPrice = 0;
+        } else {
+            totalItems -= item.getQuantity();
+            totalPrice -= item.getUnitPrice() * item.getQuantity();
+        }
+        return item;
+    }
 }
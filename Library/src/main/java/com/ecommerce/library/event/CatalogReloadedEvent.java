@@ -0,0 +1,15 @@
+package com.ecommerce.library.event;
+
+import com.ecommerce.library.catalog.CatalogSnapshot;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Published when the catalog was reloaded from the database, at startup or because the other app changed it
+ * Indexes that are only updated incrementally rebuild themselves on this event
+ */
+@Getter
+@AllArgsConstructor
+public class CatalogReloadedEvent {
+    private final CatalogSnapshot snapshot;
+}
@@ -0,0 +1,14 @@
+package com.ecommerce.library.event;
+
+import com.ecommerce.library.model.Category;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Published by the category service after a category is saved, updated, enabled or deleted
+ */
+@Getter
+@AllArgsConstructor
+public class CategoryChangedEvent {
+    private final Category category;
+}
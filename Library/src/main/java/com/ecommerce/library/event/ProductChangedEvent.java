@@ -0,0 +1,15 @@
+package com.ecommerce.library.event;
+
+import com.ecommerce.library.model.Product;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Published by the product service after a product is saved, updated, enabled or deleted,
+ * so in-memory indexes can update themselves without reloading the catalog
+ */
+@Getter
+@AllArgsConstructor
+public class ProductChangedEvent {
+    private final Product product;
+}
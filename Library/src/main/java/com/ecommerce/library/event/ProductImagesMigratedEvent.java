@@ -0,0 +1,19 @@
+package com.ecommerce.library.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Map;
+
+/**
+ * Published after a chunk of the image migration committed, the products of the chunk have their image in the
+ * image store now
+ */
+@Getter
+@AllArgsConstructor
+public class ProductImagesMigratedEvent {
+    /**
+     * Image key by product id
+     */
+    private final Map<Long, String> imageKeys;
+}
@@ -0,0 +1,13 @@
+package com.ecommerce.library.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Published after a bulk import inserted products behind the back of JPA
+ */
+@Getter
+@AllArgsConstructor
+public class ProductsImportedEvent {
+    private final long imported;
+}
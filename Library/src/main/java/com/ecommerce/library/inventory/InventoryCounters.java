@@ -0,0 +1,272 @@
+package com.ecommerce.library.inventory;
+
+import com.ecommerce.library.event.CatalogReloadedEvent;
+import com.ecommerce.library.model.StockJournalEntry;
+import com.ecommerce.library.repository.ProductRepository;
+import com.ecommerce.library.repository.StockJournalRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Optional write-behind stock for a few hot products (inventory.write-behind.products, off when empty)
+ * The available quantity of each hot product lives in a StripedCounter, orders take from it without touching
+ * the products row. Every reservation writes a stock_journal row in the transaction of the order, so the row is
+ * committed exactly when the order is; every inventory.write-behind.flush-ms the committed rows are read, their
+ * quantities subtracted from products.current_quantity and the rows deleted by id in one transaction. Rows are
+ * matched by id, not by a cutoff, so an order that commits late is applied by a later flush instead of skipped
+ * On startup the counters are rebuilt as current_quantity minus the journal, so nothing is lost in a crash;
+ * a clean shutdown flushes the journal
+ * Reservations share a read lock and rebuilding the counters takes the write lock, so no reservation is taken
+ * from a counter that is being replaced or is missing from both the old counter and the journal
+ * Counters are per JVM, only one Customer instance may run in this mode
+ */
+@Component
+public class InventoryCounters {
+    private static final int FLUSH_CHUNK = 1000;
+
+    private final ProductRepository productRepository;
+
+    private final StockJournalRepository journalRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final Set<Long> products = new LinkedHashSet<>();
+
+    private final int stripes;
+
+    private final Map<Long, AtomicLong> inFlight = new HashMap<>();
+
+    private final ReadWriteLock rebuild = new ReentrantReadWriteLock();
+
+    private volatile Map<Long, StripedCounter> counters = Map.of();
+
+    private volatile boolean started;
+
+    public InventoryCounters(ProductRepository productRepository,
+                             StockJournalRepository journalRepository,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${inventory.write-behind.products:}") long[] products,
+                             @Value("${inventory.write-behind.stripes:16}") int stripes) {
+        this.productRepository = productRepository;
+        this.journalRepository = journalRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        for (long product : products) {
+            this.products.add(product);
+            this.inFlight.put(product, new AtomicLong());
+        }
+        this.stripes = stripes;
+    }
+
+    public boolean isEnabled() {
+        return !products.isEmpty();
+    }
+
+    /**
+     * @return true when the stock of the product is kept here, false before the counters were loaded
+     */
+    public boolean isHot(Long id) {
+        return counters.containsKey(id);
+    }
+
+    /**
+     * Lock-free apart from the shared read lock, when called inside a transaction the journal row is written
+     * just before it commits and the reservation is cancelled if it rolls back
+     * The quantity counts as in flight from before it is taken until its journal row is committed, so a rebuild
+     * never misses it
+     * @return null when not enough is left
+     */
+    public Reservation tryReserve(Long id, int quantity) {
+        AtomicLong pending = inFlight.get(id);
+        rebuild.readLock().lock();
+        try {
+            pending.addAndGet(quantity);
+            if (!counters.get(id).tryTake(quantity)) {
+                pending.addAndGet(-quantity);
+                return null;
+            }
+        } finally {
+            rebuild.readLock().unlock();
+        }
+        Reservation reservation = new Reservation(id, quantity);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            try {
+                journalRepository.save(new StockJournalEntry(null, id, quantity));
+            } catch (RuntimeException e) {
+                reservation.cancel();
+                throw e;
+            } finally {
+                pending.addAndGet(-quantity);
+            }
+            return reservation;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                if (!reservation.cancelled.get()) {
+                    journalRepository.save(new StockJournalEntry(null, id, quantity));
+                }
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    reservation.cancel();
+                }
+                pending.addAndGet(-quantity);
+            }
+        });
+        return reservation;
+    }
+
+    /**
+     * Puts committed stock back, e.g. of a cancelled order: the journal row goes into the current transaction and
+     * the quantity into the counter of this moment once that commits; a rebuild in between already counts the
+     * row, and the replaced counter getting the quantity as well does no harm
+     */
+    public void release(Long id, int quantity) {
+        StripedCounter counter = counters.get(id);
+        journalRepository.save(new StockJournalEntry(null, id, -quantity));
+        if (counter == null) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            counter.add(quantity);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                counter.add(quantity);
+            }
+        });
+    }
+
+    public long available(Long id) {
+        StripedCounter counter = counters.get(id);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        if (!isEnabled()) {
+            return;
+        }
+        started = true;
+        reconcile();
+    }
+
+    /**
+     * Rebuilds the counters from the database, also picks up stock changed by the admin
+     * The quantities in flight are read before the journal: an order that commits in between is counted twice
+     * (the counter comes out too low until the next rebuild), never left out
+     */
+    @EventListener(CatalogReloadedEvent.class)
+    public synchronized void reconcile() {
+        if (!started) {
+            return;
+        }
+        flushJournal();
+        rebuild.writeLock().lock();
+        try {
+            Map<Long, Long> pending = new HashMap<>();
+            for (Long id : products) {
+                pending.put(id, inFlight.get(id).get());
+            }
+            Map<Long, Long> unflushed = new HashMap<>();
+            for (Object[] row : journalRepository.sumQuantities(products)) {
+                unflushed.put((Long) row[0], ((Number) row[1]).longValue());
+            }
+            Map<Long, StripedCounter> fresh = new HashMap<>();
+            for (Long id : products) {
+                Integer quantity = productRepository.findCurrentQuantity(id);
+                if (quantity != null) {
+                    long available = quantity - unflushed.getOrDefault(id, 0L) - pending.get(id);
+                    fresh.put(id, new StripedCounter(stripes, Math.max(0, available)));
+                }
+            }
+            counters = fresh;
+        } finally {
+            rebuild.writeLock().unlock();
+        }
+    }
+
+    @Scheduled(initialDelayString = "${inventory.write-behind.flush-ms:1000}",
+            fixedDelayString = "${inventory.write-behind.flush-ms:1000}")
+    public synchronized void flush() {
+        if (started) {
+            flushJournal();
+        }
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (started) {
+            flushJournal();
+        }
+    }
+
+    /**
+     * Applies the committed journal rows in chunks, rows of products that are no longer hot included
+     * Only committed rows can be read, and exactly the rows read are deleted, so every row is applied once
+     */
+    private void flushJournal() {
+        Integer applied;
+        do {
+            applied = transactionTemplate.execute(status -> {
+                List<StockJournalEntry> entries = journalRepository.findOldest(PageRequest.of(0, FLUSH_CHUNK));
+                Map<Long, Integer> taken = new TreeMap<>();
+                List<Long> ids = new ArrayList<>(entries.size());
+                for (StockJournalEntry entry : entries) {
+                    taken.merge(entry.getProductId(), entry.getQuantity(), Integer::sum);
+                    ids.add(entry.getId());
+                }
+                taken.forEach(productRepository::takeStock);
+                journalRepository.deleteAllByIdInBatch(ids);
+                return entries.size();
+            });
+        } while (applied != null && applied == FLUSH_CHUNK);
+    }
+
+    /**
+     * Quantity taken from a counter, cancelling gives it back once however often it is called
+     * Cancelling only makes sense before the transaction commits, committed stock goes back through release
+     */
+    public final class Reservation {
+        private final Long id;
+        private final int quantity;
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+
+        private Reservation(Long id, int quantity) {
+            this.id = id;
+            this.quantity = quantity;
+        }
+
+        public void cancel() {
+            StripedCounter counter = counters.get(id);
+            if (cancelled.compareAndSet(false, true) && counter != null) {
+                counter.add(quantity);
+            }
+        }
+    }
+}
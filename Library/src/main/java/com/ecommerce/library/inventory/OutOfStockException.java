@@ -0,0 +1,17 @@
+package com.ecommerce.library.inventory;
+
+/**
+ * Thrown when an order asks for more of a product than is left, nothing of the order is reserved
+ */
+public class OutOfStockException extends RuntimeException {
+    private final Long productId;
+
+    public OutOfStockException(Long productId) {
+        super("Not enough stock for product " + productId);
+        this.productId = productId;
+    }
+
+    public Long getProductId() {
+        return productId;
+    }
+}
@@ -0,0 +1,146 @@
+package com.ecommerce.library.inventory;
+
+import com.ecommerce.library.event.CatalogReloadedEvent;
+import com.ecommerce.library.event.ProductChangedEvent;
+import com.ecommerce.library.model.OrderDetail;
+import com.ecommerce.library.repository.ProductRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reserves stock for an order straight in products.current_quantity
+ * Every line is one conditional UPDATE that only decrements when enough is left, so the row lock is held for a
+ * single statement and concurrent orders can never oversell; lines are updated in product id order so two orders
+ * sharing products lock their rows in the same order and cannot deadlock
+ * Products seen sold out are remembered for inventory.sold-out-ttl-ms, orders for them fail without a query
+ * Hot products in write-behind mode are taken from InventoryCounters instead, before any row is locked
+ */
+@Component
+public class StockReservations {
+    private final ProductRepository productRepository;
+
+    private final InventoryCounters inventoryCounters;
+
+    private final long soldOutTtlMillis;
+
+    private final Map<Long, Long> soldOutSince = new ConcurrentHashMap<>();
+
+    public StockReservations(ProductRepository productRepository,
+                             InventoryCounters inventoryCounters,
+                             @Value("${inventory.sold-out-ttl-ms:5000}") long soldOutTtlMillis) {
+        this.productRepository = productRepository;
+        this.inventoryCounters = inventoryCounters;
+        this.soldOutTtlMillis = soldOutTtlMillis;
+    }
+
+    /**
+     * Takes the quantities out of stock, all or nothing: when a line fails the lines already taken are given back
+     * (inside a transaction the rollback does the same)
+     * @param quantities quantity per product id
+     * @throws OutOfStockException for the first product without enough stock
+     */
+    public void reserve(Map<Long, Integer> quantities) {
+        Map<Long, Integer> sorted = new TreeMap<>(quantities);
+        for (Long id : sorted.keySet()) {
+            if (isSoldOut(id)) {
+                throw new OutOfStockException(id);
+            }
+        }
+        List<InventoryCounters.Reservation> hot = new ArrayList<>();
+        for (Map.Entry<Long, Integer> line : sorted.entrySet()) {
+            if (line.getValue() > 0 && inventoryCounters.isHot(line.getKey())) {
+                InventoryCounters.Reservation reservation = inventoryCounters.tryReserve(line.getKey(), line.getValue());
+                if (reservation == null) {
+                    hot.forEach(InventoryCounters.Reservation::cancel);
+                    throw new OutOfStockException(line.getKey());
+                }
+                hot.add(reservation);
+            }
+        }
+        List<Map.Entry<Long, Integer>> reserved = new ArrayList<>(sorted.size());
+        for (Map.Entry<Long, Integer> line : sorted.entrySet()) {
+            if (line.getValue() <= 0 || inventoryCounters.isHot(line.getKey())) {
+                continue;
+            }
+            if (productRepository.reserveStock(line.getKey(), line.getValue()) == 0) {
+                hot.forEach(InventoryCounters.Reservation::cancel);
+                giveBack(reserved);
+                Integer left = productRepository.findCurrentQuantity(line.getKey());
+                if (left == null || left <= 0) {
+                    soldOutSince.put(line.getKey(), System.currentTimeMillis());
+                }
+                throw new OutOfStockException(line.getKey());
+            }
+            reserved.add(line);
+        }
+    }
+
+    /**
+     * Puts the quantities back into stock
+     */
+    public void release(Map<Long, Integer> quantities) {
+        giveBack(new ArrayList<>(new TreeMap<>(quantities).entrySet()));
+    }
+
+    /**
+     * Puts the quantities of a cancelled order back into stock, hot products through the stock journal
+     */
+    public void release(List<OrderDetail> details) {
+        Map<Long, Integer> quantities = new TreeMap<>();
+        for (OrderDetail detail : details) {
+            if (detail.getProduct() == null || detail.getQuantity() <= 0) {
+                continue;
+            }
+            Long id = detail.getProduct().getId();
+            if (inventoryCounters.isHot(id)) {
+                inventoryCounters.release(id, detail.getQuantity());
+            } else {
+                quantities.merge(id, detail.getQuantity(), Integer::sum);
+            }
+        }
+        release(quantities);
+    }
+
+    public boolean isSoldOut(Long id) {
+        Long since = soldOutSince.get(id);
+        if (since == null) {
+            return false;
+        }
+        if (System.currentTimeMillis() - since < soldOutTtlMillis) {
+            return true;
+        }
+        soldOutSince.remove(id, since);
+        return false;
+    }
+
+    @EventListener
+    public void onProductChanged(ProductChangedEvent event) {
+        soldOutSince.remove(event.getProduct().getId());
+    }
+
+    @EventListener(CatalogReloadedEvent.class)
+    public void onCatalogReloaded() {
+        soldOutSince.clear();
+    }
+
+    private void giveBack(List<Map.Entry<Long, Integer>> lines) {
+        for (Map.Entry<Long, Integer> line : lines) {
+            if (line.getValue() <= 0) {
+                continue;
+            }
+            if (inventoryCounters.isHot(line.getKey())) {
+                inventoryCounters.release(line.getKey(), line.getValue());
+            } else {
+                productRepository.releaseStock(line.getKey(), line.getValue());
+                soldOutSince.remove(line.getKey());
+            }
+        }
+    }
+}
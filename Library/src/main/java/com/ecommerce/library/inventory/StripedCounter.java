@@ -0,0 +1,79 @@
+package com.ecommerce.library.inventory;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A non-negative quantity split over several cells so concurrent takes rarely touch the same cache line
+ * Taking is lock-free while a single cell holds enough: a thread first tries its own cell, then any other cell.
+ * Only when no cell is big enough it gathers from several cells, under a lock: two unlocked gatherers could each
+ * hold part of the stock, both come up short and give back, so both fail although one (or both) would fit
+ */
+final class StripedCounter {
+    private static final int PADDING = 8;
+
+    private final AtomicLongArray cells;
+
+    private final int stripes;
+
+    StripedCounter(int stripes, long initial) {
+        this.stripes = stripes;
+        this.cells = new AtomicLongArray(stripes * PADDING);
+        for (int i = 0; i < stripes; i++) {
+            cells.set(i * PADDING, initial / stripes + (i < initial % stripes ? 1 : 0));
+        }
+    }
+
+    boolean tryTake(long quantity) {
+        int home = home();
+        for (int i = 0; i < stripes; i++) {
+            int slot = ((home + i) % stripes) * PADDING;
+            long current = cells.get(slot);
+            while (current >= quantity) {
+                if (cells.compareAndSet(slot, current, current - quantity)) {
+                    return true;
+                }
+                current = cells.get(slot);
+            }
+        }
+        return gather(home, quantity);
+    }
+
+    private synchronized boolean gather(int home, long quantity) {
+        long taken = 0;
+        for (int i = 0; i < stripes && taken < quantity; i++) {
+            int slot = ((home + i) % stripes) * PADDING;
+            long current = cells.get(slot);
+            while (current > 0 && taken < quantity) {
+                long part = Math.min(current, quantity - taken);
+                if (cells.compareAndSet(slot, current, current - part)) {
+                    taken += part;
+                }
+                current = cells.get(slot);
+            }
+        }
+        if (taken == quantity) {
+            return true;
+        }
+        add(taken);
+        return false;
+    }
+
+    void add(long quantity) {
+        if (quantity != 0) {
+            cells.getAndAdd(home() * PADDING, quantity);
+        }
+    }
+
+    long sum() {
+        long sum = 0;
+        for (int i = 0; i < stripes; i++) {
+            sum += cells.get(i * PADDING);
+        }
+        return sum;
+    }
+
+    private int home() {
+        long id = Thread.currentThread().getId();
+        return (int) ((id * 0x9E3779B97F4A7C15L) >>> 33) % stripes;
+    }
+}
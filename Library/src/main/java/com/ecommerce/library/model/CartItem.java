@@ -30,6 +30,9 @@ public class CartItem {
     private int quantity;
     private double unitPrice;
 
+    @Version
+    @Column(nullable = false, columnDefinition = "bigint default 0")
+    private long version;
 
 
     @Override
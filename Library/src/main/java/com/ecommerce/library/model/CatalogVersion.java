@@ -0,0 +1,23 @@
+package com.ecommerce.library.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Model/Entity with a single row counting catalog changes
+ * Every product or category write bumps it, so the Admin and Customer apps can tell their cached catalog is stale
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "catalog_version")
+public class CatalogVersion {
+    public static final Long ID = 1L;
+
+    @Id
+    private Long id;
+    private long version;
+}
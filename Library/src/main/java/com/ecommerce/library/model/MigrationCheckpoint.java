@@ -0,0 +1,26 @@
+package com.ecommerce.library.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+
+/**
+ * Model/Entity for the progress of a background migration, so a restarted job resumes after the last committed id
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "migration_checkpoints")
+public class MigrationCheckpoint {
+    @Id
+    @Column(name = "job_name")
+    private String name;
+    private Long lastId;
+    private long processed;
+    private long failed;
+    private Date updatedAt;
+}
@@ -20,6 +20,11 @@ public class Product {
     private Long id;
     private String name;
     private String description;
+    /**
+     * Changed only by the stock statements of ProductRepository, so saving a product never overwrites stock
+     * taken by orders in the meantime
+     */
+    @Column(updatable = false)
     private int currentQuantity;
     private double costPrice;
     private double salePrice;
@@ -30,6 +35,8 @@ public class Product {
     @Lob
     @Column(columnDefinition = "MEDIUMBLOB")
     private String image;
+    @Column(name = "image_key", length = 64)
+    private String imageKey;
     @ManyToOne(cascade = CascadeType.ALL, fetch = FetchType.EAGER)
     @JoinColumn(name = "category_id", referencedColumnName = "category_id")
     private Category category;
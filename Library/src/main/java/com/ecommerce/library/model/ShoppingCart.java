@@ -1,15 +1,23 @@
 package com.ecommerce.library.model;
 
 import jakarta.persistence.*;
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.Setter;
 
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 /**
  * Model/Entity implementation for ShoppingCart
+ *
+ * Lines are found by product id through an index built on first use, and the totals move by the difference of
+ * each change, so change lines through findItem, addItem, setItemQuantity and removeItem rather than cartItems
+ * The version guards the totals against changes made at the same time on another node (see CartConcurrency),
+ * SQL that changes the cart or its lines directly has to increase it as well, and set touchedAt (see CartExpiry)
  */
 @Getter
 @Setter
@@ -32,12 +40,107 @@ public class ShoppingCart {
     @OneToMany(cascade = CascadeType.DETACH, mappedBy = "cart")
     private Set<CartItem> cartItems;
 
+    @Version
+    @Column(nullable = false, columnDefinition = "bigint default 0")
+    private long version;
+
+    @Column(name = "touched_at", nullable = false, columnDefinition = "bigint default 0")
+    private long touchedAt;
+
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private Map<Long, CartItem> itemsByProduct;
+
     public ShoppingCart() {
         this.cartItems = new HashSet<>();
         this.totalItems = 0;
         this.totalPrice = 0.0;
     }
 
+    /**
+     * Replaces the lines and recomputes the totals from them
+     */
+    public void setCartItems(Set<CartItem> cartItems) {
+        this.cartItems = cartItems;
+        this.itemsByProduct = null;
+        this.totalItems = 0;
+        this.totalPrice = 0.0;
+        for (CartItem item : items()) {
+            totalItems += item.getQuantity();
+            totalPrice += item.getUnitPrice() * item.getQuantity();
+        }
+    }
+
+    /**
+     * @return the line of the product, null when the product is not in the cart
+     */
+    public CartItem findItem(long productId) {
+        return index().get(productId);
+    }
+
+    /**
+     * Adds the line of a product that is not in the cart yet
+     */
+    public void addItem(CartItem item) {
+        items().add(item);
+        index().put(item.getProduct().getId(), item);
+        totalItems += item.getQuantity();
+        totalPrice += item.getUnitPrice() * item.getQuantity();
+    }
+
+    /**
+     * Sets the quantity of a line of this cart
+     */
+    public void setItemQuantity(CartItem item, int quantity) {
+        int delta = quantity - item.getQuantity();
+        item.setQuantity(quantity);
+        totalItems += delta;
+        totalPrice += item.getUnitPrice() * delta;
+    }
+
+    /**
+     * @return the removed line, null when the product is not in the cart
+     */
+    public CartItem removeItem(long productId) {
+        CartItem item = index().remove(productId);
+        if (item == null) {
+            return null;
+        }
+        cartItems.remove(item);
+        if (cartItems.isEmpty()) {
+            totalItems = 0;
+            totalPrice = 0.0;
+        } else {
+            totalItems -= item.getQuantity();
+            totalPrice -= item.getUnitPrice() * item.getQuantity();
+        }
+        return item;
+    }
+
+    @PrePersist
+    @PreUpdate
+    void touch() {
+        touchedAt = System.currentTimeMillis();
+    }
+
+    private Set<CartItem> items() {
+        if (cartItems == null) {
+            cartItems = new HashSet<>();
+        }
+        return cartItems;
+    }
+
+    private Map<Long, CartItem> index() {
+        if (itemsByProduct == null) {
+            itemsByProduct = new HashMap<>();
+            for (CartItem item : items()) {
+                itemsByProduct.put(item.getProduct().getId(), item);
+            }
+        }
+        return itemsByProduct;
+    }
+
     @Override
     public String toString() {
         return "ShoppingCart{" +
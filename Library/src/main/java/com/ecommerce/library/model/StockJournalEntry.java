@@ -0,0 +1,26 @@
+package com.ecommerce.library.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Model/Entity for a stock change of a write-behind product that is not in products.current_quantity yet
+ * Written in the transaction of the order (or the cancellation), so it exists exactly when that commits
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Entity
+@Table(name = "stock_journal")
+public class StockJournalEntry {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "entry_id")
+    private Long id;
+    @Column(name = "product_id")
+    private Long productId;
+    /** taken from stock, negative when given back */
+    private int quantity;
+}
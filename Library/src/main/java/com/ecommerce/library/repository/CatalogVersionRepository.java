@@ -0,0 +1,22 @@
+package com.ecommerce.library.repository;
+
+import com.ecommerce.library.model.CatalogVersion;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Repository for the catalog version counter
+ */
+@Repository
+public interface CatalogVersionRepository extends JpaRepository<CatalogVersion, Long> {
+    @Modifying
+    @Transactional
+    @Query("update CatalogVersion v set v.version = v.version + 1 where v.id = 1")
+    int increment();
+
+    @Query("select v.version from CatalogVersion v where v.id = 1")
+    Long currentVersion();
+}
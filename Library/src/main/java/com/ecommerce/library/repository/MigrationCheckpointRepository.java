@@ -0,0 +1,12 @@
+package com.ecommerce.library.repository;
+
+import com.ecommerce.library.model.MigrationCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Repository for the progress of background jobs, keyed by job name
+ */
+@Repository
+public interface MigrationCheckpointRepository extends JpaRepository<MigrationCheckpoint, String> {
+}
@@ -15,4 +15,23 @@ import java.util.List;
 public interface OrderDetailRepository extends JpaRepository<OrderDetail, Long> {
     @Query("select o from Order o where o.customer.id = ?1")
     List<Order> findAllByCustomerId(Long id);
+
+    /**
+     * @return rows of product id and number of order lines with that product
+     */
+    @Query("select d.product.id, count(d) from OrderDetail d where d.product is not null group by d.product.id")
+    List<Object[]> countOrderLinesByProduct();
+
+    /**
+     * @return rows of product id, other product id and number of orders that contain both
+     */
+    @Query("select a.product.id, b.product.id, count(distinct a.order.id) from OrderDetail a, OrderDetail b " +
+            "where a.order = b.order and a.product.id <> b.product.id group by a.product.id, b.product.id")
+    List<Object[]> countCoPurchases();
+
+    /**
+     * @return lines of the order with their products
+     */
+    @Query("select d from OrderDetail d left join fetch d.product where d.order.id = ?1")
+    List<OrderDetail> findAllByOrderId(Long orderId);
 }
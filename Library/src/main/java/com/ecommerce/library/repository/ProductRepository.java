@@ -1,10 +1,17 @@
 package com.ecommerce.library.repository;
 
+import com.ecommerce.library.dto.ProductSummary;
 import com.ecommerce.library.model.Product;
+import com.ecommerce.library.search.SearchDocument;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -13,41 +20,74 @@ import java.util.List;
 
 @Repository
 public interface ProductRepository extends JpaRepository<Product, Long> {
-    @Query("select p from Product p where p.is_deleted = false and p.is_activated = true")
-    List<Product> getAllProduct();
-
-    @Query("select p from Product p where p.name like %?1% or p.description like %?1%")
-    List<Product> findAllByNameOrDescription(String keyword);
-
-
-    @Query("select p from Product p inner join Category c ON c.id = p.category.id" +
-            " where p.category.name = ?1 and p.is_activated = true and p.is_deleted = false")
-    List<Product> findAllByCategory(String category);
-
-    @Query(value = "select " +
-            "p.product_id, p.name, p.description, p.current_quantity, p.cost_price, p.category_id, p.sale_price, p.image, p.is_activated, p.is_deleted " +
-            "from products p where p.is_activated = true and p.is_deleted = false order by rand() limit 9", nativeQuery = true)
-    List<Product> randomProduct();
-
-    @Query(value = "select " +
-            "p.product_id, p.name, p.description, p.current_quantity, p.cost_price, p.category_id, p.sale_price, p.image, p.is_activated, p.is_deleted " +
-            "from products p where p.is_deleted = false and p.is_activated = true order by p.cost_price desc limit 9", nativeQuery = true)
-    List<Product> filterHighProducts();
-
-    @Query(value = "select " +
-            "p.product_id, p.name, p.description, p.current_quantity, p.cost_price, p.category_id, p.sale_price, p.image, p.is_activated, p.is_deleted " +
-            "from products p where p.is_deleted = false and p.is_activated = true order by p.cost_price asc limit 9", nativeQuery = true)
-    List<Product> filterLowerProducts();
-
-
-    @Query(value = "select p.product_id, p.name, p.description, p.current_quantity, p.cost_price, p.category_id, p.sale_price, p.image, p.is_activated, p.is_deleted from products p where p.is_deleted = false and p.is_activated = true limit 4", nativeQuery = true)
-    List<Product> listViewProduct();
-
-
-    @Query(value = "select p from Product p inner join Category c on c.id = ?1 and p.category.id = ?1 where p.is_activated = true and p.is_deleted = false")
-    List<Product> getProductByCategoryId(Long id);
-
-
-    @Query("select p from Product p where p.name like %?1% or p.description like %?1%")
-    List<Product> searchProducts(String keyword);
+    /**
+     * Projection for list pages, the image blob is only read for products that were not moved to the image store
+     */
+    String SUMMARY = "select new com.ecommerce.library.dto.ProductSummary(p.id, p.name, p.description, " +
+            "p.costPrice, p.salePrice, p.currentQuantity, c.id, c.name, p.imageKey, " +
+            "case when p.imageKey is null then p.image else null end, p.is_activated, p.is_deleted) " +
+            "from Product p left join p.category c ";
+
+    @Query(SUMMARY + "where p.is_deleted = false and p.is_activated = true")
+    List<ProductSummary> findActiveSummaries();
+
+    @Query(SUMMARY + "order by p.id")
+    List<ProductSummary> findAllSummaries();
+
+    @Query(value = SUMMARY, countQuery = "select count(p) from Product p")
+    Page<ProductSummary> findAllSummaries(Pageable pageable);
+
+    @Query(SUMMARY + "where p.id in ?1")
+    List<ProductSummary> findSummariesByIdIn(Collection<Long> ids);
+
+    /**
+     * Keyset (seek) page over all products: the next products after the given id
+     * The pageable is only used for its size, so deep pages cost the same as the first one
+     */
+    @Query(SUMMARY + "where p.id > ?1 order by p.id asc")
+    List<ProductSummary> findSummariesAfterId(Long lastId, Pageable pageable);
+
+    @Query(value = SUMMARY + "where p.name like %?1% or p.description like %?1%",
+            countQuery = "select count(p) from Product p where p.name like %?1% or p.description like %?1%")
+    Page<ProductSummary> findSummariesByNameOrDescription(String keyword, Pageable pageable);
+
+    @Query(SUMMARY + "where p.is_deleted = false and p.is_activated = true " +
+            "and (p.name like %?1% or p.description like %?1%)")
+    List<ProductSummary> searchActiveSummaries(String keyword);
+
+    @Query("select new com.ecommerce.library.search.SearchDocument(p.id, p.name, p.description, p.is_activated, p.is_deleted) from Product p")
+    List<SearchDocument> findAllSearchDocuments();
+
+    /**
+     * Takes quantity out of stock only when at least that much is left
+     * @return 1 when reserved, 0 when there was not enough stock
+     */
+    @Modifying
+    @Transactional
+    @Query("update Product p set p.currentQuantity = p.currentQuantity - ?2 where p.id = ?1 and p.currentQuantity >= ?2")
+    int reserveStock(Long id, int quantity);
+
+    @Modifying
+    @Transactional
+    @Query("update Product p set p.currentQuantity = p.currentQuantity + ?2 where p.id = ?1")
+    int releaseStock(Long id, int quantity);
+
+    /**
+     * Adds delta (negative takes away) to the stock, never going below zero
+     */
+    @Modifying
+    @Transactional
+    @Query("update Product p set p.currentQuantity = case when p.currentQuantity + ?2 < 0 then 0 " +
+            "else p.currentQuantity + ?2 end where p.id = ?1")
+    int adjustStock(Long id, int delta);
+
+    @Query("select p.currentQuantity from Product p where p.id = ?1")
+    Integer findCurrentQuantity(Long id);
+
+    /**
+     * Takes the quantity out of stock unconditionally, for quantities already reserved elsewhere
+     */
+    @Modifying
+    @Query("update Product p set p.currentQuantity = p.currentQuantity - ?2 where p.id = ?1")
+    int takeStock(Long id, int quantity);
 }
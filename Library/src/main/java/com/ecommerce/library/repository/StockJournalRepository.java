@@ -0,0 +1,25 @@
+package com.ecommerce.library.repository;
+
+import com.ecommerce.library.model.StockJournalEntry;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Repository for the stock journal of the write-behind products
+ */
+@Repository
+public interface StockJournalRepository extends JpaRepository<StockJournalEntry, Long> {
+    @Query("select e from StockJournalEntry e order by e.id")
+    List<StockJournalEntry> findOldest(Pageable pageable);
+
+    /**
+     * @return rows of product id and quantity not yet applied to the products row
+     */
+    @Query("select e.productId, sum(e.quantity) from StockJournalEntry e where e.productId in ?1 group by e.productId")
+    List<Object[]> sumQuantities(Collection<Long> productIds);
+}
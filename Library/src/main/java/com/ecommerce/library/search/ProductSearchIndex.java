@@ -0,0 +1,273 @@
+package com.ecommerce.library.search;
+
+import com.ecommerce.library.event.CatalogReloadedEvent;
+import com.ecommerce.library.event.ProductChangedEvent;
+import com.ecommerce.library.model.Product;
+import com.ecommerce.library.repository.ProductRepository;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory inverted index over product name and description
+ * Rebuilt from the database whenever the catalog is reloaded (at startup and after changes made by the other app),
+ * updated incrementally on every product change in the same app
+ * Results are ranked with BM25, name terms count twice, the last query term also matches as a prefix
+ * Terms are transliterated to Latin on both sides, the fuzzy mode also matches dictionary terms
+ * within 1 or 2 edits (found by walking a trie of the dictionary) at a lower weight,
+ * the first letter has to be right, as in most spell checkers, which keeps the walk small
+ */
+@Component
+public class ProductSearchIndex {
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final int NAME_WEIGHT = 2;
+    private static final int MAX_PREFIX_EXPANSIONS = 64;
+    private static final int FUZZY_FIXED_PREFIX = 1;
+
+    private final ProductRepository productRepository;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private Segment segment = new Segment();
+
+    private volatile boolean ready;
+
+    public ProductSearchIndex(ProductRepository productRepository) {
+        this.productRepository = productRepository;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return segment.documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Reloads the whole index from the database, the old index keeps serving until the new one is swapped in
+     */
+    @EventListener(CatalogReloadedEvent.class)
+    public void rebuild() {
+        List<SearchDocument> documents = productRepository.findAllSearchDocuments();
+        Segment fresh = new Segment();
+        for (SearchDocument document : documents) {
+            fresh.add(document.getId(), document.getName(), document.getDescription(),
+                    document.isActivated() && !document.isDeleted());
+        }
+        lock.writeLock().lock();
+        try {
+            segment = fresh;
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @EventListener
+    public void onProductChanged(ProductChangedEvent event) {
+        Product product = event.getProduct();
+        index(product.getId(), product.getName(), product.getDescription(),
+                product.is_activated() && !product.is_deleted());
+    }
+
+    public void index(Long id, String name, String description, boolean active) {
+        lock.writeLock().lock();
+        try {
+            segment.add(id, name, description, active);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long id) {
+        lock.writeLock().lock();
+        try {
+            segment.remove(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public Page<Long> search(String query, boolean activeOnly, Pageable pageable) {
+        return search(query, activeOnly, false, pageable);
+    }
+
+    /**
+     * @param query free text, terms are OR-ed and ranked
+     * @param activeOnly skip disabled and deleted products
+     * @param fuzzy also match misspelled terms
+     * @param pageable page number and size, unpaged returns every match
+     * @return product ids, best match first
+     */
+    public Page<Long> search(String query, boolean activeOnly, boolean fuzzy, Pageable pageable) {
+        List<String> terms = new ArrayList<>(new LinkedHashSet<>(terms(query)));
+        if (terms.isEmpty()) {
+            return new PageImpl<>(Collections.emptyList(), pageable, 0);
+        }
+        Map<Long, Double> scores = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            Segment current = segment;
+            int documentCount = current.documents.size();
+            if (documentCount == 0) {
+                return new PageImpl<>(Collections.emptyList(), pageable, 0);
+            }
+            double averageLength = (double) current.totalLength / documentCount;
+            for (int i = 0; i < terms.size(); i++) {
+                Map<String, Double> expansions = expand(current, terms.get(i), i == terms.size() - 1, fuzzy);
+                for (Map.Entry<String, Double> expansion : expansions.entrySet()) {
+                    Map<Long, Integer> postings = current.postings.get(expansion.getKey());
+                    if (postings == null) {
+                        continue;
+                    }
+                    double weight = expansion.getValue();
+                    double idf = Math.log(1 + (documentCount - postings.size() + 0.5) / (postings.size() + 0.5));
+                    for (Map.Entry<Long, Integer> posting : postings.entrySet()) {
+                        Document document = current.documents.get(posting.getKey());
+                        if (activeOnly && !document.active()) {
+                            continue;
+                        }
+                        double tf = posting.getValue();
+                        double norm = K1 * (1 - B + B * document.length() / averageLength);
+                        scores.merge(posting.getKey(), weight * idf * tf * (K1 + 1) / (tf + norm), Double::sum);
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return rank(scores, pageable);
+    }
+
+    /**
+     * The dictionary never forgets a term, terms without products are skipped by the caller
+     * @return the dictionary terms a query term stands for, with their weight
+     */
+    private static Map<String, Double> expand(Segment segment, String term, boolean prefix, boolean fuzzy) {
+        Map<String, Double> expansions = new LinkedHashMap<>();
+        if (prefix) {
+            for (String match : segment.postings.subMap(term, true, term + Character.MAX_VALUE, false).keySet()) {
+                if (expansions.size() == MAX_PREFIX_EXPANSIONS) {
+                    break;
+                }
+                expansions.put(match, 1.0);
+            }
+        } else if (segment.postings.containsKey(term)) {
+            expansions.put(term, 1.0);
+        }
+        if (fuzzy && maxEdits(term) > 0) {
+            for (TermTrie.Match match : segment.dictionary.search(term, maxEdits(term), FUZZY_FIXED_PREFIX)) {
+                expansions.putIfAbsent(match.term(), 1.0 / (1 + match.distance()));
+            }
+        }
+        return expansions;
+    }
+
+    /**
+     * Short terms must match exactly, otherwise every three letter word would match half of the dictionary
+     */
+    static int maxEdits(String term) {
+        return term.length() <= 3 ? 0 : term.length() <= 6 ? 1 : 2;
+    }
+
+    static List<String> terms(String text) {
+        List<String> terms = Tokenizer.tokenize(text);
+        terms.replaceAll(Transliterator::toLatin);
+        return terms;
+    }
+
+    private Page<Long> rank(Map<Long, Double> scores, Pageable pageable) {
+        int total = scores.size();
+        int from = pageable.isPaged() ? (int) pageable.getOffset() : 0;
+        int to = pageable.isPaged() ? (int) Math.min(total, pageable.getOffset() + pageable.getPageSize()) : total;
+        if (from >= to) {
+            return new PageImpl<>(Collections.emptyList(), pageable, total);
+        }
+        Comparator<Map.Entry<Long, Double>> better = Map.Entry.<Long, Double>comparingByValue()
+                .thenComparing(Map.Entry.<Long, Double>comparingByKey().reversed());
+        PriorityQueue<Map.Entry<Long, Double>> top = new PriorityQueue<>(to + 1, better);
+        for (Map.Entry<Long, Double> entry : scores.entrySet()) {
+            top.offer(entry);
+            if (top.size() > to) {
+                top.poll();
+            }
+        }
+        List<Long> ids = new ArrayList<>(top.size());
+        while (!top.isEmpty()) {
+            ids.add(top.poll().getKey());
+        }
+        Collections.reverse(ids);
+        return new PageImpl<>(ids.subList(from, to), pageable, total);
+    }
+
+    private record Document(Map<String, Integer> terms, int length, boolean active) {
+    }
+
+    private static final class Segment {
+        private final NavigableMap<String, Map<Long, Integer>> postings = new TreeMap<>();
+        private final Map<Long, Document> documents = new HashMap<>();
+        private final TermTrie dictionary = new TermTrie();
+        private long totalLength;
+
+        private void add(Long id, String name, String description, boolean active) {
+            remove(id);
+            Map<String, Integer> terms = new HashMap<>();
+            for (String term : terms(name)) {
+                terms.merge(term, NAME_WEIGHT, Integer::sum);
+            }
+            for (String term : terms(description)) {
+                terms.merge(term, 1, Integer::sum);
+            }
+            int length = 0;
+            for (Map.Entry<String, Integer> term : terms.entrySet()) {
+                postings.computeIfAbsent(term.getKey(), key -> {
+                    dictionary.add(key);
+                    return new HashMap<>();
+                }).put(id, term.getValue());
+                length += term.getValue();
+            }
+            documents.put(id, new Document(terms, length, active));
+            totalLength += length;
+        }
+
+        private void remove(Long id) {
+            Document document = documents.remove(id);
+            if (document == null) {
+                return;
+            }
+            Set<String> terms = document.terms().keySet();
+            for (String term : terms) {
+                Map<Long, Integer> ids = postings.get(term);
+                ids.remove(id);
+                if (ids.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+            totalLength -= document.length();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.ecommerce.library.search;
+
+import com.ecommerce.library.catalog.CatalogCache;
+import com.ecommerce.library.catalog.CatalogSnapshot;
+import com.ecommerce.library.dto.CategoryDto;
+import com.ecommerce.library.dto.ProductSummary;
+import com.ecommerce.library.event.CatalogReloadedEvent;
+import com.ecommerce.library.repository.OrderDetailRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Typeahead over the names of active products and categories of the current catalog snapshot
+ * Products are ranked by how many order lines they appear in, categories by the sum of their products
+ * Tries are built in the background: when the catalog version moves the old one keeps answering,
+ * before the first one is ready there are no completions
+ */
+@Component
+public class ProductTypeahead {
+    private final CatalogCache catalogCache;
+
+    private final OrderDetailRepository orderDetailRepository;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "typeahead-build");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicBoolean building = new AtomicBoolean();
+
+    private volatile Built built;
+
+    public ProductTypeahead(CatalogCache catalogCache, OrderDetailRepository orderDetailRepository) {
+        this.catalogCache = catalogCache;
+        this.orderDetailRepository = orderDetailRepository;
+    }
+
+    public List<Suggestion> complete(String prefix, int limit) {
+        CatalogSnapshot snapshot = catalogCache.current();
+        if (snapshot == null) {
+            return List.of();
+        }
+        Built current = built;
+        if (current == null || current.version() != snapshot.getVersion()) {
+            buildAsync();
+        }
+        if (current == null) {
+            return List.of();
+        }
+        return current.typeahead().complete(prefix, Math.min(limit, Typeahead.MAX_COMPLETIONS));
+    }
+
+    @EventListener(CatalogReloadedEvent.class)
+    public void buildAsync() {
+        if (!building.compareAndSet(false, true)) {
+            return;
+        }
+        executor.execute(() -> {
+            try {
+                build(catalogCache.current());
+            } catch (Exception e) {
+                e.printStackTrace();
+            } finally {
+                building.set(false);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void build(CatalogSnapshot snapshot) {
+        Map<Long, Long> orders = new HashMap<>();
+        for (Object[] row : orderDetailRepository.countOrderLinesByProduct()) {
+            orders.put((Long) row[0], (Long) row[1]);
+        }
+        Typeahead.Builder builder = Typeahead.builder();
+        Map<Long, Long> categoryPopularity = new HashMap<>();
+        for (ProductSummary product : snapshot.getProducts()) {
+            long popularity = orders.getOrDefault(product.getId(), 0L);
+            builder.add(new Suggestion(Suggestion.Type.PRODUCT, product.getId(), product.getName()), popularity);
+            if (product.getCategoryId() != null) {
+                categoryPopularity.merge(product.getCategoryId(), popularity, Long::sum);
+            }
+        }
+        for (CategoryDto category : snapshot.getCategorySizes()) {
+            builder.add(new Suggestion(Suggestion.Type.CATEGORY, category.getId(), category.getName()),
+                    categoryPopularity.getOrDefault(category.getId(), 0L));
+        }
+        built = new Built(snapshot.getVersion(), builder.build());
+    }
+
+    private record Built(long version, Typeahead typeahead) {
+    }
+}
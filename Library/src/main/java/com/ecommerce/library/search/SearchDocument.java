@@ -0,0 +1,19 @@
+package com.ecommerce.library.search;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The searchable text of a product, loaded without the image and category
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SearchDocument {
+    private Long id;
+    private String name;
+    private String description;
+    private boolean activated;
+    private boolean deleted;
+}
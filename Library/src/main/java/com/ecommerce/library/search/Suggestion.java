@@ -0,0 +1,10 @@
+package com.ecommerce.library.search;
+
+/**
+ * One typeahead completion, a product or a category
+ */
+public record Suggestion(Type type, Long id, String name) {
+    public enum Type {
+        PRODUCT, CATEGORY
+    }
+}
@@ -0,0 +1,162 @@
+package com.ecommerce.library.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Trie of dictionary terms that finds every term within a small Levenshtein distance of a word
+ * The lookup walks the trie carrying one row of the edit distance table per level, which is the Levenshtein automaton
+ * of the word run over the trie, and leaves a branch as soon as no cell of the row is within the distance
+ * Not thread safe, terms can be added but not removed
+ */
+public final class TermTrie {
+    private final Node root = new Node();
+    private int size;
+
+    public void add(String term) {
+        Node node = root;
+        for (int i = 0; i < term.length(); i++) {
+            node = node.childOrCreate(term.charAt(i));
+        }
+        if (node.term == null) {
+            node.term = term;
+            size++;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public List<Match> search(String word, int maxDistance) {
+        return search(word, maxDistance, 0);
+    }
+
+    /**
+     * @param prefixLength leading characters that must match exactly, each one cuts the part of the trie
+     *                     that is walked by the alphabet size
+     * @return terms within maxDistance of the word, with their distance
+     */
+    public List<Match> search(String word, int maxDistance, int prefixLength) {
+        List<Match> matches = new ArrayList<>();
+        Node start = root;
+        int fixed = Math.min(prefixLength, word.length());
+        for (int i = 0; i < fixed && start != null; i++) {
+            start = start.child(word.charAt(i));
+        }
+        if (start == null) {
+            return matches;
+        }
+        String rest = word.substring(fixed);
+        int[][] rows = new int[rest.length() + maxDistance + 2][];
+        int[] first = new int[rest.length() + 1];
+        for (int i = 0; i < first.length; i++) {
+            first[i] = i;
+        }
+        rows[0] = first;
+        if (start.term != null && first[rest.length()] <= maxDistance) {
+            matches.add(new Match(start.term, first[rest.length()]));
+        }
+        for (int i = 0; i < start.labels.length; i++) {
+            walk(start.children[i], start.labels[i], rest, maxDistance, rows, 1, matches);
+        }
+        return matches;
+    }
+
+    /**
+     * Only the cells within maxDistance of the diagonal can stay within the distance, the others hold maxDistance + 1
+     */
+    private static void walk(Node node, char label, String word, int maxDistance, int[][] rows, int depth,
+                             List<Match> matches) {
+        int length = word.length();
+        int[] previous = rows[depth - 1];
+        int[] row = rows[depth];
+        if (row == null) {
+            row = new int[length + 1];
+            rows[depth] = row;
+        }
+        int outside = maxDistance + 1;
+        int from = Math.max(1, depth - maxDistance);
+        int to = Math.min(length, depth + maxDistance);
+        row[0] = Math.min(depth, outside);
+        if (from > 1) {
+            row[from - 1] = outside;
+        }
+        int best = from == 1 ? row[0] : outside;
+        for (int i = from; i <= to; i++) {
+            int substitute = previous[i - 1] + (word.charAt(i - 1) == label ? 0 : 1);
+            int cell = Math.min(outside, Math.min(substitute, Math.min(previous[i], row[i - 1]) + 1));
+            row[i] = cell;
+            best = Math.min(best, cell);
+        }
+        if (to < length) {
+            row[to + 1] = outside;
+        }
+        if (node.term != null && to == length && row[length] <= maxDistance) {
+            matches.add(new Match(node.term, row[length]));
+        }
+        if (best > maxDistance || depth + 1 >= rows.length) {
+            return;
+        }
+        for (int i = 0; i < node.labels.length; i++) {
+            walk(node.children[i], node.labels[i], word, maxDistance, rows, depth + 1, matches);
+        }
+    }
+
+    static int distance(String left, String right) {
+        int[] previous = new int[left.length() + 1];
+        int[] current = new int[left.length() + 1];
+        for (int i = 0; i <= left.length(); i++) {
+            previous[i] = i;
+        }
+        for (int j = 1; j <= right.length(); j++) {
+            current[0] = j;
+            for (int i = 1; i <= left.length(); i++) {
+                int substitute = previous[i - 1] + (left.charAt(i - 1) == right.charAt(j - 1) ? 0 : 1);
+                current[i] = Math.min(substitute, Math.min(previous[i], current[i - 1]) + 1);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[left.length()];
+    }
+
+    public record Match(String term, int distance) {
+    }
+
+    private static final class Node {
+        private static final char[] NO_LABELS = new char[0];
+        private static final Node[] NO_CHILDREN = new Node[0];
+
+        private char[] labels = NO_LABELS;
+        private Node[] children = NO_CHILDREN;
+        private String term;
+
+        private Node child(char label) {
+            int at = Arrays.binarySearch(labels, label);
+            return at < 0 ? null : children[at];
+        }
+
+        private Node childOrCreate(char label) {
+            int at = Arrays.binarySearch(labels, label);
+            if (at >= 0) {
+                return children[at];
+            }
+            int insert = -at - 1;
+            Node child = new Node();
+            char[] newLabels = new char[labels.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(labels, 0, newLabels, 0, insert);
+            System.arraycopy(children, 0, newChildren, 0, insert);
+            newLabels[insert] = label;
+            newChildren[insert] = child;
+            System.arraycopy(labels, insert, newLabels, insert + 1, labels.length - insert);
+            System.arraycopy(children, insert, newChildren, insert + 1, children.length - insert);
+            labels = newLabels;
+            children = newChildren;
+            return child;
+        }
+    }
+}
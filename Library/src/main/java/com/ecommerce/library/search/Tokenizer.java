@@ -0,0 +1,36 @@
+package com.ecommerce.library.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Splits product text into lower case terms
+ * Letters of every script (latin, cyrillic) and digits form terms, everything else separates them
+ */
+public final class Tokenizer {
+    private Tokenizer() {
+    }
+
+    public static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null) {
+            return terms;
+        }
+        int start = -1;
+        for (int i = 0; i < text.length(); i++) {
+            if (Character.isLetterOrDigit(text.charAt(i))) {
+                if (start < 0) {
+                    start = i;
+                }
+            } else if (start >= 0) {
+                terms.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        if (start >= 0) {
+            terms.add(text.substring(start).toLowerCase(Locale.ROOT));
+        }
+        return terms;
+    }
+}
@@ -0,0 +1,36 @@
+package com.ecommerce.library.search;
+
+/**
+ * Bulgarian Cyrillic to Latin (streamlined system), so "кофте" and "kofte" index to the same term
+ * Other characters are kept as they are
+ */
+public final class Transliterator {
+    private static final char FIRST = 'а';
+    private static final String[] LATIN = {
+            "a", "b", "v", "g", "d", "e", "zh", "z", "i", "y", "k", "l", "m", "n", "o", "p",
+            "r", "s", "t", "u", "f", "h", "ts", "ch", "sh", "sht", "a", "y", "y", "e", "yu", "ya"
+    };
+
+    private Transliterator() {
+    }
+
+    /**
+     * @param term a lower case term
+     */
+    public static String toLatin(String term) {
+        StringBuilder latin = null;
+        for (int i = 0; i < term.length(); i++) {
+            char c = term.charAt(i);
+            int at = c - FIRST;
+            if (at >= 0 && at < LATIN.length) {
+                if (latin == null) {
+                    latin = new StringBuilder(term.length() + 4).append(term, 0, i);
+                }
+                latin.append(LATIN[at]);
+            } else if (latin != null) {
+                latin.append(c);
+            }
+        }
+        return latin == null ? term : latin.toString();
+    }
+}
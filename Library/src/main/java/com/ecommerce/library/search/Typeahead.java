@@ -0,0 +1,124 @@
+package com.ecommerce.library.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * Immutable prefix trie over names, every node keeps its best completions so a lookup is a walk down the prefix
+ * A name is reachable from the start of each of its words ("adana kebab" from "ad" and from "ke")
+ * Children are kept in sorted char arrays and found with a binary search
+ */
+public final class Typeahead {
+    public static final int MAX_COMPLETIONS = 10;
+    static final int MAX_DEPTH = 40;
+
+    private final Node root;
+
+    private Typeahead(Node root) {
+        this.root = root;
+    }
+
+    /**
+     * @return up to limit completions of the prefix, most popular first, none for a limit below one
+     */
+    public List<Suggestion> complete(String prefix, int limit) {
+        String key = normalize(prefix);
+        if (key.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        Node node = root;
+        for (int i = 0; i < Math.min(key.length(), MAX_DEPTH) && node != null; i++) {
+            node = node.child(key.charAt(i));
+        }
+        if (node == null) {
+            return List.of();
+        }
+        return Arrays.asList(node.top).subList(0, Math.min(limit, node.top.length));
+    }
+
+    static String normalize(String text) {
+        return String.join(" ", Tokenizer.tokenize(text));
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private static final class Node {
+        private final char[] labels;
+        private final Node[] children;
+        private final Suggestion[] top;
+
+        private Node(char[] labels, Node[] children, Suggestion[] top) {
+            this.labels = labels;
+            this.children = children;
+            this.top = top;
+        }
+
+        private Node child(char label) {
+            int at = Arrays.binarySearch(labels, label);
+            return at < 0 ? null : children[at];
+        }
+    }
+
+    public static final class Builder {
+        private final List<Entry> entries = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        public Builder add(Suggestion suggestion, long popularity) {
+            entries.add(new Entry(suggestion, popularity));
+            return this;
+        }
+
+        public Typeahead build() {
+            entries.sort(Comparator.comparingLong(Entry::popularity).reversed()
+                    .thenComparing(entry -> entry.suggestion().name(), Comparator.nullsLast(Comparator.naturalOrder())));
+            MutableNode root = new MutableNode();
+            for (Entry entry : entries) {
+                List<String> words = Tokenizer.tokenize(entry.suggestion().name());
+                for (int start = 0; start < words.size(); start++) {
+                    String key = String.join(" ", words.subList(start, words.size()));
+                    MutableNode node = root;
+                    for (int i = 0; i < Math.min(key.length(), MAX_DEPTH); i++) {
+                        node = node.children.computeIfAbsent(key.charAt(i), label -> new MutableNode());
+                        node.offer(entry.suggestion());
+                    }
+                }
+            }
+            return new Typeahead(root.freeze());
+        }
+    }
+
+    private record Entry(Suggestion suggestion, long popularity) {
+    }
+
+    private static final class MutableNode {
+        private final TreeMap<Character, MutableNode> children = new TreeMap<>();
+        private final List<Suggestion> top = new ArrayList<>(1);
+
+        /**
+         * Entries arrive most popular first, so the first ones to reach a node are its best completions
+         */
+        private void offer(Suggestion suggestion) {
+            if (top.size() < MAX_COMPLETIONS && !top.contains(suggestion)) {
+                top.add(suggestion);
+            }
+        }
+
+        private Node freeze() {
+            char[] labels = new char[children.size()];
+            Node[] frozen = new Node[children.size()];
+            int i = 0;
+            for (var child : children.entrySet()) {
+                labels[i] = child.getKey();
+                frozen[i++] = child.getValue().freeze();
+            }
+            return new Node(labels, frozen, top.toArray(new Suggestion[0]));
+        }
+    }
+}
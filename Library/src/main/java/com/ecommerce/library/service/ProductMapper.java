@@ -0,0 +1,23 @@
+package com.ecommerce.library.service;
+
+import com.ecommerce.library.dto.ProductSummary;
+import com.ecommerce.library.model.Category;
+import com.ecommerce.library.model.Product;
+
+/**
+ * Maps a product that was just saved to the summary used by list pages
+ * The Base64 image is only copied for products that have no image in the image store yet
+ */
+public final class ProductMapper {
+    private ProductMapper() {
+    }
+
+    public static ProductSummary toSummary(Product product) {
+        Category category = product.getCategory();
+        return new ProductSummary(product.getId(), product.getName(), product.getDescription(),
+                product.getCostPrice(), product.getSalePrice(), product.getCurrentQuantity(),
+                category == null ? null : category.getId(), category == null ? null : category.getName(),
+                product.getImageKey(), product.getImageKey() == null ? product.getImage() : null,
+                product.is_activated(), product.is_deleted());
+    }
+}
@@ -1,7 +1,11 @@
 package com.ecommerce.library.service;
 
+import com.ecommerce.library.catalog.FacetQuery;
+import com.ecommerce.library.catalog.FacetResult;
 import com.ecommerce.library.dto.ProductDto;
+import com.ecommerce.library.dto.ProductSummary;
 import com.ecommerce.library.model.Product;
+import com.ecommerce.library.search.Suggestion;
 import org.springframework.data.domain.Page;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -17,9 +21,9 @@ import java.util.List;
 public interface ProductService {
     List<Product> findAll();
 
-    List<ProductDto> products();
+    List<ProductSummary> products();
 
-    List<ProductDto> allProduct();
+    List<ProductSummary> allProduct();
 
     Product save(MultipartFile imageProduct, ProductDto product);
 
@@ -34,27 +38,46 @@ public interface ProductService {
     Product findById(Long id);
 
 
-    List<ProductDto> randomProduct();
+    List<ProductSummary> randomProduct();
 
-    Page<ProductDto> searchProducts(int pageNo, String keyword);
+    Page<ProductSummary> searchProducts(int pageNo, String keyword);
 
-    Page<ProductDto> getAllProducts(int pageNo);
+    /**
+     * @param afterId id of the last product on the page before, when known deep pages seek past it instead of
+     *                skipping pageNo * size rows
+     */
+    Page<ProductSummary> getAllProducts(int pageNo, Long afterId);
 
     Page<ProductDto> getAllProductsForCustomer(int pageNo);
 
 
-    List<ProductDto> findAllByCategory(String category);
+    List<ProductSummary> findAllByCategory(String category);
 
+    /**
+     * @return a bounded list of products to show next to the product, from the precomputed related lists
+     */
+    List<ProductSummary> relatedProducts(Long id);
 
-    List<ProductDto> filterHighProducts();
 
-    List<ProductDto> filterLowerProducts();
+    List<ProductSummary> filterHighProducts();
 
-    List<ProductDto> listViewProducts();
+    List<ProductSummary> filterLowerProducts();
 
-    List<ProductDto> findByCategoryId(Long id);
+    Page<ProductSummary> filterByPrice(double minPrice, double maxPrice, int pageNo);
 
-    List<ProductDto> searchProducts(String keyword);
+    FacetResult filterProducts(FacetQuery query, int pageNo);
+
+    List<Suggestion> typeahead(String prefix, int limit);
+
+    /**
+     * @param ids product ids, e.g. from RecentlyViewed
+     * @return the active products among them, in the same order
+     */
+    List<ProductSummary> listViewProducts(long[] ids);
+
+    List<ProductSummary> findByCategoryId(Long id);
+
+    List<ProductSummary> searchProducts(String keyword);
 
 
 }
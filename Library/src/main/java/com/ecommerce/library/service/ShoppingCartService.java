@@ -1,14 +1,20 @@
 package com.ecommerce.library.service;
 
+import com.ecommerce.library.cart.CartLineChange;
+import com.ecommerce.library.cart.GuestCart;
 import com.ecommerce.library.dto.ProductDto;
 import com.ecommerce.library.dto.ShoppingCartDto;
 import com.ecommerce.library.model.ShoppingCart;
 
+import java.util.List;
+
 /**
  *  Service for Shopping cart
  *  add/update/remove item from cart
+ *  update many lines at once
  *  add/update/delete cart session
  *  combine cart
+ *  show a guest cart, merge it into the customer's cart at login
  *  show cart by username
  *  delete cart by id
  */
@@ -20,6 +26,8 @@ public interface ShoppingCartService {
 
     ShoppingCart removeItemFromCart(ProductDto productDto, String username);
 
+    ShoppingCart updateCartLines(List<CartLineChange> changes, String username);
+
     ShoppingCartDto addItemToCartSession(ShoppingCartDto cartDto, ProductDto productDto, int quantity);
 
     ShoppingCartDto updateCartSession(ShoppingCartDto cartDto, ProductDto productDto, int quantity);
@@ -28,8 +36,9 @@ public interface ShoppingCartService {
 
     ShoppingCart combineCart(ShoppingCartDto cartDto, ShoppingCart cart);
 
+    ShoppingCartDto guestCart(GuestCart guestCart);
 
-    void deleteCartById(Long id);
+    void mergeGuestCart(GuestCart guestCart, String username);
 
     ShoppingCart getCart(String username);
 }
@@ -1,10 +1,14 @@
 package com.ecommerce.library.service.impl;
 
+import com.ecommerce.library.catalog.CatalogCache;
+import com.ecommerce.library.catalog.CatalogSnapshot;
 import com.ecommerce.library.dto.CategoryDto;
+import com.ecommerce.library.event.CategoryChangedEvent;
 import com.ecommerce.library.model.Category;
 import com.ecommerce.library.repository.CategoryRepository;
 import com.ecommerce.library.service.CategoryService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
@@ -21,13 +25,17 @@ import java.util.Optional;
 public class CategoryServiceImpl implements CategoryService {
     private final CategoryRepository categoryRepository;
 
+    private final CatalogCache catalogCache;
+
+    private final ApplicationEventPublisher eventPublisher;
+
     @Override
     public Category save(Category category) {
         Category categorySave = new Category();
         categorySave.setName(category.getName());
         categorySave.setActivated(true);
         categorySave.setDeleted(false);
-        return categoryRepository.save(categorySave);
+        return published(categoryRepository.save(categorySave));
 
     }
 
@@ -35,7 +43,7 @@ public class CategoryServiceImpl implements CategoryService {
     public Category update(Category category) {
         Category categoryUpdate = categoryRepository.getReferenceById(category.getId());
         categoryUpdate.setName(category.getName());
-        return categoryRepository.save(categoryUpdate);
+        return published(categoryRepository.save(categoryUpdate));
     }
 
     @Override
@@ -58,7 +66,7 @@ public class CategoryServiceImpl implements CategoryService {
         Category category = categoryRepository.getById(id);
         category.setActivated(false);
         category.setDeleted(true);
-        categoryRepository.save(category);
+        published(categoryRepository.save(category));
     }
 
     @Override
@@ -66,13 +74,21 @@ public class CategoryServiceImpl implements CategoryService {
         Category category = categoryRepository.getById(id);
         category.setActivated(true);
         category.setDeleted(false);
-        categoryRepository.save(category);
+        published(categoryRepository.save(category));
     }
 
     @Override
     public List<CategoryDto> getCategoriesAndSize() {
-        List<CategoryDto> categories = categoryRepository.getCategoriesAndSize();
-        return categories;
+        CatalogSnapshot snapshot = catalogCache.current();
+        if (snapshot == null) {
+            return categoryRepository.getCategoriesAndSize();
+        }
+        return snapshot.getCategorySizes();
+    }
+
+    private Category published(Category category) {
+        eventPublisher.publishEvent(new CategoryChangedEvent(category));
+        return category;
     }
 
 }
@@ -1,54 +1,91 @@
 package com.ecommerce.library.service.impl;
 
+import com.ecommerce.library.cart.CartStore;
+import com.ecommerce.library.inventory.StockReservations;
 import com.ecommerce.library.model.*;
 import com.ecommerce.library.repository.CustomerRepository;
 import com.ecommerce.library.repository.OrderDetailRepository;
 import com.ecommerce.library.repository.OrderRepository;
 import com.ecommerce.library.service.OrderService;
-import com.ecommerce.library.service.ShoppingCartService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Implementation of  Order Service
  * Implementation save, cancel, accept, get order by id and show every order by urername or every
+ * Saving an order reserves its stock and cancelling gives it back (see StockReservations)
+ * With the write-behind cart store on, the cart is flushed before the order is saved
+ * Checkout is set based: the cart lines are copied into order_detail with one INSERT ... SELECT and removed with
+ * one DELETE, the number of statements does not depend on the size of the cart (apart from the stock, one
+ * UPDATE per product in StockReservations)
  */
 @Service
 @RequiredArgsConstructor
 public class OrderServiceImpl implements OrderService {
+    static final String LOCK_CART = "select total_items, total_price from shopping_cart " +
+            "where shopping_cart_id = ? for update";
+
+    static final String CART_QUANTITIES = "select product_id, sum(quantity) as quantity from cart_items " +
+            "where shopping_cart_id = ? group by product_id";
+
+    static final String COPY_LINES = "insert into order_detail (order_id, product_id, quantity, price) " +
+            "select ?, product_id, quantity, unit_price from cart_items where shopping_cart_id = ?";
+
+    static final String DELETE_LINES = "delete from cart_items where shopping_cart_id = ?";
+
+    static final String EMPTY_CART = "update shopping_cart set total_items = 0, total_price = 0, touched_at = ?, " +
+            "version = version + 1 where shopping_cart_id = ?";
+
     private final OrderRepository orderRepository;
     private final OrderDetailRepository detailRepository;
     private final CustomerRepository customerRepository;
-    private final ShoppingCartService cartService;
+    private final StockReservations stockReservations;
+    private final CartStore cartStore;
+    private final JdbcTemplate jdbcTemplate;
 
+    /**
+     * The cart row is locked first, so the order gets the lines and totals of one moment even while another tab
+     * changes the cart; quantity and price of every line are copied into the order
+     */
     @Override
     @Transactional
     public Order save(ShoppingCart shoppingCart) {
+        String username = shoppingCart.getCustomer().getUsername();
+        if (cartStore.isEnabled()) {
+            cartStore.flush(username);
+        }
+        Long cartId = shoppingCart.getId();
+        Map<String, Object> totals = jdbcTemplate.queryForMap(LOCK_CART, cartId);
+        Map<Long, Integer> quantities = new HashMap<>();
+        for (Map<String, Object> line : jdbcTemplate.queryForList(CART_QUANTITIES, cartId)) {
+            quantities.put(((Number) line.get("product_id")).longValue(), ((Number) line.get("quantity")).intValue());
+        }
+        stockReservations.reserve(quantities);
         Order order = new Order();
         order.setOrderDate(new Date());
         order.setCustomer(shoppingCart.getCustomer());
         order.setTax(2);
-        order.setTotalPrice(shoppingCart.getTotalPrice());
+        order.setTotalPrice(((Number) totals.get("total_price")).doubleValue());
         order.setAccept(false);
         order.setPaymentMethod("Cash");
         order.setOrderStatus("Pending");
-        order.setQuantity(shoppingCart.getTotalItems());
-        List<OrderDetail> orderDetailList = new ArrayList<>();
-        for (CartItem item : shoppingCart.getCartItems()) {
-            OrderDetail orderDetail = new OrderDetail();
-            orderDetail.setOrder(order);
-            orderDetail.setProduct(item.getProduct());
-            detailRepository.save(orderDetail);
-            orderDetailList.add(orderDetail);
+        order.setQuantity(((Number) totals.get("total_items")).intValue());
+        order = orderRepository.save(order);
+        jdbcTemplate.update(COPY_LINES, order.getId(), cartId);
+        jdbcTemplate.update(DELETE_LINES, cartId);
+        jdbcTemplate.update(EMPTY_CART, System.currentTimeMillis(), cartId);
+        order.setOrderDetailList(detailRepository.findAllByOrderId(order.getId()));
+        if (cartStore.isEnabled()) {
+            cartStore.evictAfterCommit(username);
         }
-        order.setOrderDetailList(orderDetailList);
-        cartService.deleteCartById(shoppingCart.getId());
-        return orderRepository.save(order);
+        return order;
     }
 
     @Override
@@ -73,8 +110,14 @@ public class OrderServiceImpl implements OrderService {
     }
 
     @Override
+    @Transactional
     public void cancelOrder(Long id) {
-        orderRepository.deleteById(id);
+        Order order = orderRepository.findById(id).orElse(null);
+        if (order == null) {
+            return;
+        }
+        stockReservations.release(order.getOrderDetailList());
+        orderRepository.delete(order);
     }
 
     @Override
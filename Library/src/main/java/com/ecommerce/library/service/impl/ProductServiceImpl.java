@@ -1,21 +1,38 @@
 package com.ecommerce.library.service.impl;
 
+import com.ecommerce.library.catalog.CatalogCache;
+import com.ecommerce.library.catalog.CatalogSnapshot;
+import com.ecommerce.library.catalog.FacetQuery;
+import com.ecommerce.library.catalog.FacetResult;
+import com.ecommerce.library.catalog.PriceIndex;
+import com.ecommerce.library.catalog.ProductFacets;
+import com.ecommerce.library.catalog.RandomProductSampler;
+import com.ecommerce.library.catalog.RelatedProducts;
 import com.ecommerce.library.dto.ProductDto;
+import com.ecommerce.library.dto.ProductSummary;
+import com.ecommerce.library.event.ProductChangedEvent;
 import com.ecommerce.library.model.Product;
 import com.ecommerce.library.repository.ProductRepository;
+import com.ecommerce.library.search.ProductSearchIndex;
+import com.ecommerce.library.search.ProductTypeahead;
+import com.ecommerce.library.search.Suggestion;
 import com.ecommerce.library.service.ProductService;
+import com.ecommerce.library.utils.ImageResizer;
 import com.ecommerce.library.utils.ImageUpload;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.util.ArrayList;
-import java.util.Base64;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Implementation for Product Service
@@ -25,42 +42,55 @@ import java.util.List;
  * random product, search product
  * get all products by customer, by category, by search
  * by asc/desc products
- * transfer data/ to page
  */
 @Service
 @RequiredArgsConstructor
 public class ProductServiceImpl implements ProductService {
+    static final int KEYSET_FROM_PAGE = 10;
+
     private final ProductRepository productRepository;
 
 
     private final ImageUpload imageUpload;
 
+    private final ImageResizer imageResizer;
+
+    private final ProductSearchIndex searchIndex;
+
+    private final CatalogCache catalogCache;
+
+    private final RandomProductSampler randomProductSampler;
+
+    private final ProductFacets productFacets;
+
+    private final ProductTypeahead productTypeahead;
+
+    private final RelatedProducts relatedProducts;
+
+    private final ApplicationEventPublisher eventPublisher;
+
     @Override
     public List<Product> findAll() {
         return productRepository.findAll();
     }
 
     @Override
-    public List<ProductDto> products() {
-        return transferData(productRepository.getAllProduct());
+    public List<ProductSummary> products() {
+        return catalogCache.load().getProducts();
     }
 
     @Override
-    public List<ProductDto> allProduct() {
-        List<Product> products = productRepository.findAll();
-        List<ProductDto> productDtos = transferData(products);
-        return productDtos;
+    public List<ProductSummary> allProduct() {
+        return productRepository.findAllSummaries();
     }
 
     @Override
     public Product save(MultipartFile imageProduct, ProductDto productDto) {
         Product product = new Product();
         try {
-            if (imageProduct == null) {
-                product.setImage(null);
-            } else {
-                imageUpload.uploadFile(imageProduct);
-                product.setImage(Base64.getEncoder().encodeToString(imageProduct.getBytes()));
+            if (imageProduct != null && !imageProduct.isEmpty()) {
+                product.setImageKey(imageUpload.uploadFile(imageProduct));
+                imageResizer.resizeAsync(product.getImageKey());
             }
             product.setName(productDto.getName());
             product.setDescription(productDto.getDescription());
@@ -69,7 +99,7 @@ public class ProductServiceImpl implements ProductService {
             product.setCategory(productDto.getCategory());
             product.set_deleted(false);
             product.set_activated(true);
-            return productRepository.save(product);
+            return published(productRepository.save(product));
         } catch (Exception e) {
             e.printStackTrace();
             return null;
@@ -80,13 +110,10 @@ public class ProductServiceImpl implements ProductService {
     public Product update(MultipartFile imageProduct, ProductDto productDto) {
         try {
             Product productUpdate = productRepository.getReferenceById(productDto.getId());
-            if (imageProduct.getBytes().length > 0) {
-                if (imageUpload.checkExist(imageProduct)) {
-                    productUpdate.setImage(productUpdate.getImage());
-                } else {
-                    imageUpload.uploadFile(imageProduct);
-                    productUpdate.setImage(Base64.getEncoder().encodeToString(imageProduct.getBytes()));
-                }
+            if (imageProduct != null && !imageProduct.isEmpty()) {
+                productUpdate.setImageKey(imageUpload.uploadFile(imageProduct));
+                imageResizer.resizeAsync(productUpdate.getImageKey());
+                productUpdate.setImage(null);
             }
             productUpdate.setCategory(productDto.getCategory());
             productUpdate.setId(productUpdate.getId());
@@ -94,8 +121,12 @@ public class ProductServiceImpl implements ProductService {
             productUpdate.setDescription(productDto.getDescription());
             productUpdate.setCostPrice(productDto.getCostPrice());
             productUpdate.setSalePrice(productDto.getSalePrice());
-            productUpdate.setCurrentQuantity(productDto.getCurrentQuantity());
-            return productRepository.save(productUpdate);
+            int added = productDto.getCurrentQuantity() - productDto.getLoadedQuantity();
+            if (added != 0) {
+                productRepository.adjustStock(productUpdate.getId(), added);
+                productUpdate.setCurrentQuantity(productRepository.findCurrentQuantity(productUpdate.getId()));
+            }
+            return published(productRepository.save(productUpdate));
         } catch (Exception e) {
             e.printStackTrace();
             return null;
@@ -107,7 +138,7 @@ public class ProductServiceImpl implements ProductService {
         Product product = productRepository.getById(id);
         product.set_activated(true);
         product.set_deleted(false);
-        productRepository.save(product);
+        published(productRepository.save(product));
     }
 
     @Override
@@ -115,7 +146,7 @@ public class ProductServiceImpl implements ProductService {
         Product product = productRepository.getById(id);
         product.set_deleted(true);
         product.set_activated(false);
-        productRepository.save(product);
+        published(productRepository.save(product));
     }
 
     @Override
@@ -128,8 +159,12 @@ public class ProductServiceImpl implements ProductService {
         productDto.setCostPrice(product.getCostPrice());
         productDto.setSalePrice(product.getSalePrice());
         productDto.setCurrentQuantity(product.getCurrentQuantity());
+        productDto.setLoadedQuantity(product.getCurrentQuantity());
         productDto.setCategory(product.getCategory());
-        productDto.setImage(product.getImage());
+        if (product.getImageKey() == null) {
+            productDto.setImage(product.getImage());
+        }
+        productDto.setImageKey(product.getImageKey());
         return productDto;
     }
 
@@ -139,25 +174,31 @@ public class ProductServiceImpl implements ProductService {
     }
 
     @Override
-    public List<ProductDto> randomProduct() {
-        return transferData(productRepository.randomProduct());
+    public List<ProductSummary> randomProduct() {
+        return randomProductSampler.sample(9);
     }
 
     @Override
-    public Page<ProductDto> searchProducts(int pageNo, String keyword) {
-        List<Product> products = productRepository.findAllByNameOrDescription(keyword);
-        List<ProductDto> productDtoList = transferData(products);
-        Pageable pageable = PageRequest.of(pageNo, 5);
-        Page<ProductDto> dtoPage = toPage(productDtoList, pageable);
-        return dtoPage;
+    public Page<ProductSummary> searchProducts(int pageNo, String keyword) {
+        if (!searchIndex.isReady()) {
+            Pageable pageable = PageRequest.of(pageNo, 5, Sort.by("id"));
+            return productRepository.findSummariesByNameOrDescription(keyword, pageable);
+        }
+        Page<Long> ids = searchIndex.search(keyword, false, PageRequest.of(pageNo, 5));
+        return new PageImpl<>(findAllInOrder(ids.getContent()), ids.getPageable(), ids.getTotalElements());
     }
 
+    /**
+     * Offset paging for the first pages, from KEYSET_FROM_PAGE on the page is read by seeking past afterId
+     */
     @Override
-    public Page<ProductDto> getAllProducts(int pageNo) {
-        Pageable pageable = PageRequest.of(pageNo, 6);
-        List<ProductDto> productDtoLists = this.allProduct();
-        Page<ProductDto> productDtoPage = toPage(productDtoLists, pageable);
-        return productDtoPage;
+    public Page<ProductSummary> getAllProducts(int pageNo, Long afterId) {
+        Pageable pageable = PageRequest.of(pageNo, 6, Sort.by("id"));
+        if (afterId == null || pageNo < KEYSET_FROM_PAGE) {
+            return productRepository.findAllSummaries(pageable);
+        }
+        List<ProductSummary> products = productRepository.findSummariesAfterId(afterId, PageRequest.of(0, 6));
+        return new PageImpl<>(products, pageable, productRepository.count());
     }
 
     @Override
@@ -166,63 +207,82 @@ public class ProductServiceImpl implements ProductService {
     }
 
     @Override
-    public List<ProductDto> findAllByCategory(String category) {
-        return transferData(productRepository.findAllByCategory(category));
+    public List<ProductSummary> findAllByCategory(String category) {
+        return catalogCache.load().getProductsByCategoryName(category);
     }
 
     @Override
-    public List<ProductDto> filterHighProducts() {
-        return transferData(productRepository.filterHighProducts());
+    public List<ProductSummary> relatedProducts(Long id) {
+        return relatedProducts.related(id);
     }
 
     @Override
-    public List<ProductDto> filterLowerProducts() {
-        return transferData(productRepository.filterLowerProducts());
+    public List<ProductSummary> filterHighProducts() {
+        CatalogSnapshot snapshot = catalogCache.load();
+        return snapshot.getProducts(snapshot.getPriceIndex().highest(9));
     }
 
     @Override
-    public List<ProductDto> listViewProducts() {
-        return transferData(productRepository.listViewProduct());
+    public List<ProductSummary> filterLowerProducts() {
+        CatalogSnapshot snapshot = catalogCache.load();
+        return snapshot.getProducts(snapshot.getPriceIndex().lowest(9));
     }
 
     @Override
-    public List<ProductDto> findByCategoryId(Long id) {
-        return transferData(productRepository.getProductByCategoryId(id));
+    public Page<ProductSummary> filterByPrice(double minPrice, double maxPrice, int pageNo) {
+        Pageable pageable = PageRequest.of(pageNo, 9);
+        CatalogSnapshot snapshot = catalogCache.load();
+        PriceIndex prices = snapshot.getPriceIndex();
+        long[] ids = prices.range(minPrice, maxPrice, pageable.getOffset(), pageable.getPageSize());
+        return new PageImpl<>(snapshot.getProducts(ids), pageable, prices.count(minPrice, maxPrice));
     }
 
     @Override
-    public List<ProductDto> searchProducts(String keyword) {
-        return transferData(productRepository.searchProducts(keyword));
+    public FacetResult filterProducts(FacetQuery query, int pageNo) {
+        return productFacets.filter(query, PageRequest.of(pageNo, 9));
     }
 
-    private Page toPage(List list, Pageable pageable) {
-        if (pageable.getOffset() >= list.size()) {
-            return Page.empty();
+    @Override
+    public List<Suggestion> typeahead(String prefix, int limit) {
+        return productTypeahead.complete(prefix, limit);
+    }
+
+    @Override
+    public List<ProductSummary> listViewProducts(long[] ids) {
+        return catalogCache.load().getProducts(ids);
+    }
+
+    @Override
+    public List<ProductSummary> findByCategoryId(Long id) {
+        return catalogCache.load().getProductsByCategoryId(id);
+    }
+
+    @Override
+    public List<ProductSummary> searchProducts(String keyword) {
+        if (!searchIndex.isReady()) {
+            return productRepository.searchActiveSummaries(keyword);
         }
-        int startIndex = (int) pageable.getOffset();
-        int endIndex = ((pageable.getOffset() + pageable.getPageSize()) > list.size())
-                ? list.size()
-                : (int) (pageable.getOffset() + pageable.getPageSize());
-        List subList = list.subList(startIndex, endIndex);
-        return new PageImpl(subList, pageable, list.size());
-    }
-
-    private List<ProductDto> transferData(List<Product> products) {
-        List<ProductDto> productDtos = new ArrayList<>();
-        for (Product product : products) {
-            ProductDto productDto = new ProductDto();
-            productDto.setId(product.getId());
-            productDto.setName(product.getName());
-            productDto.setCurrentQuantity(product.getCurrentQuantity());
-            productDto.setCostPrice(product.getCostPrice());
-            productDto.setSalePrice(product.getSalePrice());
-            productDto.setDescription(product.getDescription());
-            productDto.setImage(product.getImage());
-            productDto.setCategory(product.getCategory());
-            productDto.setActivated(product.is_activated());
-            productDto.setDeleted(product.is_deleted());
-            productDtos.add(productDto);
+        List<Long> ids = searchIndex.search(keyword, true, true, Pageable.unpaged()).getContent();
+        return catalogCache.load().getProducts(ids.stream().mapToLong(Long::longValue).toArray());
+    }
+
+    private Product published(Product product) {
+        eventPublisher.publishEvent(new ProductChangedEvent(product));
+        return product;
+    }
+
+    private List<ProductSummary> findAllInOrder(List<Long> ids) {
+        Map<Long, ProductSummary> byId = new HashMap<>();
+        for (ProductSummary product : productRepository.findSummariesByIdIn(ids)) {
+            byId.put(product.getId(), product);
+        }
+        List<ProductSummary> products = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            ProductSummary product = byId.get(id);
+            if (product != null) {
+                products.add(product);
+            }
         }
-        return productDtos;
+        return products;
     }
 }
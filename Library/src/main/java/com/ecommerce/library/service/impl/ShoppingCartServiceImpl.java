@@ -1,7 +1,15 @@
 package com.ecommerce.library.service.impl;
 
+import com.ecommerce.library.cart.CartConcurrency;
+import com.ecommerce.library.cart.CartExpiry;
+import com.ecommerce.library.cart.CartLineChange;
+import com.ecommerce.library.cart.CartStore;
+import com.ecommerce.library.cart.GuestCart;
+import com.ecommerce.library.catalog.CatalogCache;
+import com.ecommerce.library.catalog.CatalogSnapshot;
 import com.ecommerce.library.dto.CartItemDto;
 import com.ecommerce.library.dto.ProductDto;
+import com.ecommerce.library.dto.ProductSummary;
 import com.ecommerce.library.dto.ShoppingCartDto;
 import com.ecommerce.library.model.CartItem;
 import com.ecommerce.library.model.Customer;
@@ -12,13 +20,16 @@ import com.ecommerce.library.repository.ShoppingCartRepository;
 import com.ecommerce.library.service.CustomerService;
 import com.ecommerce.library.service.ShoppingCartService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Propagation;
-import org.springframework.transaction.annotation.Transactional;
-import org.springframework.util.ObjectUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Implementation for Shopping Cart Service
@@ -26,293 +37,335 @@ import java.util.Set;
  * add item to cart, update cart, remove from cart
  * add item to cart, update cart, remove from cart, but in session
  * combine cart, delete cart by id, get cart by username
- * find or dinf in dto
- * total items in cart and total price in cart
- * total items in cart and total price in cart but in dto
+ * lines are found by product id and the carts keep their own totals
  * transfer and convert cart item
+ * guest carts (see GuestCart) are shown through the session methods and merged into the customer's cart at login
+ * with the write-behind cart store on, carts are read and changed in memory (see CartStore)
+ * changes to the cart of one customer run one at a time and are retried when another node changed it first
+ * (see CartConcurrency)
+ * every change starts the time to live of the cart again (see CartExpiry)
  */
 @Service
 @RequiredArgsConstructor
 public class ShoppingCartServiceImpl implements ShoppingCartService {
+    static final String MERGE_ITEM = "update cart_items set quantity = quantity + ?, version = version + 1 " +
+            "where shopping_cart_id = ? and product_id = ?";
+
+    static final String INSERT_ITEM = "insert into cart_items (shopping_cart_id, product_id, quantity, unit_price) " +
+            "values (?, ?, ?, ?)";
+
+    static final String RECOUNT_CART = "update shopping_cart set version = version + 1, touched_at = ?, " +
+            "total_items = (select coalesce(sum(quantity), 0) from cart_items where shopping_cart_id = ?), " +
+            "total_price = (select coalesce(sum(quantity * unit_price), 0) from cart_items where shopping_cart_id = ?) " +
+            "where shopping_cart_id = ?";
+
     private final ShoppingCartRepository cartRepository;
 
     private final CartItemRepository itemRepository;
 
     private final CustomerService customerService;
 
+    private final CartStore cartStore;
+
+    private final PlatformTransactionManager transactionManager;
+
+    private final CatalogCache catalogCache;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final CartConcurrency cartConcurrency;
+
+    private final CartExpiry cartExpiry;
+
     @Override
-    @Transactional
     public ShoppingCart addItemToCart(ProductDto productDto, int quantity, String username) {
-        Customer customer = customerService.findByUsername(username);
-        ShoppingCart shoppingCart = customer.getCart();
-
-        if (shoppingCart == null) {
-            shoppingCart = new ShoppingCart();
+        if (cartStore.isEnabled()) {
+            return touched(cartStore.update(username, productDto.getId(),
+                    cart -> addQuantity(cart, productDto, quantity)));
         }
-        Set<CartItem> cartItemList = shoppingCart.getCartItems();
-        CartItem cartItem = find(cartItemList, productDto.getId());
-        Product product = transfer(productDto);
-
-        double unitPrice = productDto.getCostPrice();
-
-        int itemQuantity = 0;
-        if (cartItemList == null) {
-            cartItemList = new HashSet<>();
-            if (cartItem == null) {
-                cartItem = new CartItem();
-                cartItem.setProduct(product);
-                cartItem.setCart(shoppingCart);
-                cartItem.setQuantity(quantity);
-                cartItem.setUnitPrice(unitPrice);
-                cartItem.setCart(shoppingCart);
-                cartItemList.add(cartItem);
-                itemRepository.save(cartItem);
-            } else {
-                itemQuantity = cartItem.getQuantity() + quantity;
-                cartItem.setQuantity(itemQuantity);
-                itemRepository.save(cartItem);
-            }
-        } else {
-            if (cartItem == null) {
-                cartItem = new CartItem();
-                cartItem.setProduct(product);
-                cartItem.setCart(shoppingCart);
-                cartItem.setQuantity(quantity);
-                cartItem.setUnitPrice(unitPrice);
-                cartItem.setCart(shoppingCart);
-                cartItemList.add(cartItem);
-                itemRepository.save(cartItem);
-            } else {
-                itemQuantity = cartItem.getQuantity() + quantity;
-                cartItem.setQuantity(itemQuantity);
-                itemRepository.save(cartItem);
-            }
-        }
-        shoppingCart.setCartItems(cartItemList);
+        return mutate(username, status -> {
+            Customer customer = customerService.findByUsername(username);
+            ShoppingCart shoppingCart = customer.getCart();
 
-        double totalPrice = totalPrice(shoppingCart.getCartItems());
-        int totalItem = totalItem(shoppingCart.getCartItems());
-
-        shoppingCart.setTotalPrice(totalPrice);
-        shoppingCart.setTotalItems(totalItem);
-        shoppingCart.setCustomer(customer);
+            if (shoppingCart == null) {
+                shoppingCart = new ShoppingCart();
+            }
+            CartItem cartItem = addQuantity(shoppingCart, productDto, quantity);
+            itemRepository.save(cartItem);
+            shoppingCart.setCustomer(customer);
 
-        return cartRepository.save(shoppingCart);
+            return cartRepository.save(shoppingCart);
+        });
     }
 
     @Override
-    @Transactional
     public ShoppingCart updateCart(ProductDto productDto, int quantity, String username) {
-        Customer customer = customerService.findByUsername(username);
-        ShoppingCart shoppingCart = customer.getCart();
-        Set<CartItem> cartItemList = shoppingCart.getCartItems();
-        CartItem item = find(cartItemList, productDto.getId());
-        int itemQuantity = quantity;
-
-
-        item.setQuantity(itemQuantity);
-        itemRepository.save(item);
-        shoppingCart.setCartItems(cartItemList);
-        int totalItem = totalItem(cartItemList);
-        double totalPrice = totalPrice(cartItemList);
-        shoppingCart.setTotalPrice(totalPrice);
-        shoppingCart.setTotalItems(totalItem);
-        return cartRepository.save(shoppingCart);
+        if (cartStore.isEnabled()) {
+            return touched(cartStore.update(username, productDto.getId(), cart -> {
+                CartItem item = cart.findItem(productDto.getId());
+                if (item != null) {
+                    cart.setItemQuantity(item, quantity);
+                }
+            }));
+        }
+        return mutate(username, status -> {
+            Customer customer = customerService.findByUsername(username);
+            ShoppingCart shoppingCart = customer.getCart();
+            CartItem item = shoppingCart.findItem(productDto.getId());
+            if (item == null) {
+                return shoppingCart;
+            }
+            shoppingCart.setItemQuantity(item, quantity);
+            itemRepository.save(item);
+            return cartRepository.save(shoppingCart);
+        });
     }
 
     @Override
-    @Transactional(propagation = Propagation.REQUIRES_NEW)
     public ShoppingCart removeItemFromCart(ProductDto productDto, String username) {
-        Customer customer = customerService.findByUsername(username);
-        ShoppingCart shoppingCart = customer.getCart();
-        Set<CartItem> cartItemList = shoppingCart.getCartItems();
-        CartItem item = find(cartItemList, productDto.getId());
-        cartItemList.remove(item);
-        itemRepository.delete(item);
-        double totalPrice = totalPrice(cartItemList);
-        int totalItem = totalItem(cartItemList);
-        shoppingCart.setCartItems(cartItemList);
-        shoppingCart.setTotalPrice(totalPrice);
-        shoppingCart.setTotalItems(totalItem);
-        return cartRepository.save(shoppingCart);
+        if (cartStore.isEnabled()) {
+            return touched(cartStore.update(username, productDto.getId(), cart -> cart.removeItem(productDto.getId())));
+        }
+        return mutate(username, status -> {
+            Customer customer = customerService.findByUsername(username);
+            ShoppingCart shoppingCart = customer.getCart();
+            CartItem item = shoppingCart.removeItem(productDto.getId());
+            if (item == null) {
+                return shoppingCart;
+            }
+            itemRepository.delete(item);
+            return cartRepository.save(shoppingCart);
+        });
+    }
+
+    /**
+     * All changes in one transaction: the changed lines are written as one JDBC batch of UPDATEs
+     * (hibernate.jdbc.batch_size), removed lines with one DELETE and the totals with one UPDATE of the cart
+     * Products that are not in the cart are ignored, a customer without a cart gets an empty one
+     */
+    @Override
+    public ShoppingCart updateCartLines(List<CartLineChange> changes, String username) {
+        if (cartStore.isEnabled()) {
+            List<Long> productIds = changes.stream().map(CartLineChange::productId).toList();
+            return touched(cartStore.update(username, productIds, cart -> applyChanges(cart, changes)));
+        }
+        return mutate(username, status -> {
+            Customer customer = customerService.findByUsername(username);
+            ShoppingCart shoppingCart = customer.getCart();
+            if (shoppingCart == null) {
+                shoppingCart = new ShoppingCart();
+                shoppingCart.setCustomer(customer);
+            }
+            List<CartItem> removed = applyChanges(shoppingCart, changes);
+            if (!removed.isEmpty()) {
+                itemRepository.deleteAllInBatch(removed);
+            }
+            return cartRepository.save(shoppingCart);
+        });
     }
 
     @Override
     public ShoppingCartDto addItemToCartSession(ShoppingCartDto cartDto, ProductDto productDto, int quantity) {
-        CartItemDto cartItem = findInDTO(cartDto, productDto.getId());
         if (cartDto == null) {
             cartDto = new ShoppingCartDto();
         }
-        Set<CartItemDto> cartItemList = cartDto.getCartItems();
-        double unitPrice = productDto.getCostPrice();
-        int itemQuantity = 0;
-        if (cartItemList == null) {
-            cartItemList = new HashSet<>();
-            if (cartItem == null) {
-                cartItem = new CartItemDto();
-                cartItem.setProduct(productDto);
-                cartItem.setCart(cartDto);
-                cartItem.setQuantity(quantity);
-                cartItem.setUnitPrice(unitPrice);
-                cartItemList.add(cartItem);
-                System.out.println("add");
-            } else {
-                itemQuantity = cartItem.getQuantity() + quantity;
-                cartItem.setQuantity(itemQuantity);
-            }
+        CartItemDto cartItem = cartDto.findItem(productDto.getId());
+        if (cartItem == null) {
+            cartItem = new CartItemDto();
+            cartItem.setProduct(productDto);
+            cartItem.setCart(cartDto);
+            cartItem.setQuantity(quantity);
+            cartItem.setUnitPrice(productDto.getCostPrice());
+            cartDto.addItem(cartItem);
         } else {
-            if (cartItem == null) {
-                cartItem = new CartItemDto();
-                cartItem.setProduct(productDto);
-                cartItem.setCart(cartDto);
-                cartItem.setQuantity(quantity);
-                cartItem.setUnitPrice(unitPrice);
-                cartItemList.add(cartItem);
-                System.out.println("add");
-            } else {
-                itemQuantity = cartItem.getQuantity() + quantity;
-                cartItem.setQuantity(itemQuantity);
-            }
+            cartDto.setItemQuantity(cartItem, cartItem.getQuantity() + quantity);
         }
-        System.out.println("here");
-        cartDto.setCartItems(cartItemList);
-        double totalPrice = totalPriceDto(cartItemList);
-        int totalItem = totalItemDto(cartItemList);
-        cartDto.setTotalPrice(totalPrice);
-        cartDto.setTotalItems(totalItem);
-        System.out.println(cartDto.getTotalItems());
-        System.out.println(cartDto.getTotalPrice());
-        System.out.println("success");
         return cartDto;
     }
 
     @Override
     public ShoppingCartDto updateCartSession(ShoppingCartDto cartDto, ProductDto productDto, int quantity) {
-        Set<CartItemDto> cartItemList = cartDto.getCartItems();
-        CartItemDto item = findInDTO(cartDto, productDto.getId());
-        int itemQuantity = item.getQuantity() + quantity;
-        int totalItem = totalItemDto(cartItemList);
-        double totalPrice = totalPriceDto(cartItemList);
-        item.setQuantity(itemQuantity);
-        cartDto.setCartItems(cartItemList);
-        cartDto.setTotalPrice(totalPrice);
-        cartDto.setTotalItems(totalItem);
-        System.out.println(cartDto.getTotalItems());
+        CartItemDto item = cartDto.findItem(productDto.getId());
+        cartDto.setItemQuantity(item, item.getQuantity() + quantity);
         return cartDto;
     }
 
     @Override
     public ShoppingCartDto removeItemFromCartSession(ShoppingCartDto cartDto, ProductDto productDto, int quantity) {
-        Set<CartItemDto> cartItemList = cartDto.getCartItems();
-        CartItemDto item = findInDTO(cartDto, productDto.getId());
-        cartItemList.remove(item);
-        double totalPrice = totalPriceDto(cartItemList);
-        int totalItem = totalItemDto(cartItemList);
-        cartDto.setCartItems(cartItemList);
-        cartDto.setTotalPrice(totalPrice);
-        cartDto.setTotalItems(totalItem);
-        System.out.println(cartDto.getTotalItems());
+        cartDto.removeItem(productDto.getId());
         return cartDto;
     }
 
+    /**
+     * Lines of products already in the cart get the session quantity added, the others are added as they are
+     */
     @Override
     public ShoppingCart combineCart(ShoppingCartDto cartDto, ShoppingCart cart) {
         if (cart == null) {
             cart = new ShoppingCart();
         }
-        Set<CartItem> cartItems = cart.getCartItems();
-        if (cartItems == null) {
-            cartItems = new HashSet<>();
-        }
-        Set<CartItem> cartItemsDto = convertCartItem(cartDto.getCartItems(), cart);
-        for (CartItem cartItem : cartItemsDto) {
-            cartItems.add(cartItem);
+        for (CartItemDto itemDto : cartDto.getCartItems()) {
+            CartItem item = cart.findItem(itemDto.getProduct().getId());
+            if (item == null) {
+                cart.addItem(convertCartItem(itemDto, cart));
+            } else {
+                cart.setItemQuantity(item, item.getQuantity() + itemDto.getQuantity());
+            }
         }
-        double totalPrice = totalPrice(cartItems);
-        int totalItems = totalItem(cartItems);
-        cart.setTotalItems(totalItems);
-        cart.setCartItems(cartItems);
-        cart.setTotalPrice(totalPrice);
         return cart;
     }
 
+    /**
+     * Session methods over a cart built for this request only, nothing is kept in the session
+     */
     @Override
-    @Transactional
-    public void deleteCartById(Long id) {
-        ShoppingCart shoppingCart = cartRepository.getById(id);
-        if (!ObjectUtils.isEmpty(shoppingCart) && !ObjectUtils.isEmpty(shoppingCart.getCartItems())) {
-            itemRepository.deleteAll(shoppingCart.getCartItems());
+    public ShoppingCartDto guestCart(GuestCart guestCart) {
+        ShoppingCartDto cartDto = new ShoppingCartDto();
+        CatalogSnapshot snapshot = catalogCache.load();
+        for (Map.Entry<Long, Integer> line : guestCart.getLines().entrySet()) {
+            ProductSummary product = snapshot.getProduct(line.getKey());
+            if (product != null) {
+                addItemToCartSession(cartDto, toProductDto(product), line.getValue());
+            }
+        }
+        return cartDto;
+    }
+
+    /**
+     * Without the cart store, lines already in the cart get the guest quantity added with one batched UPDATE,
+     * the others are added with one batched INSERT and the totals are recounted by the database
+     * Products that are no longer sold are left out
+     */
+    @Override
+    public void mergeGuestCart(GuestCart guestCart, String username) {
+        CatalogSnapshot snapshot = catalogCache.load();
+        Map<Long, ProductSummary> products = new LinkedHashMap<>();
+        for (Long id : guestCart.getLines().keySet()) {
+            ProductSummary product = snapshot.getProduct(id);
+            if (product != null) {
+                products.put(id, product);
+            }
+        }
+        if (products.isEmpty()) {
+            return;
         }
-        shoppingCart.getCartItems().clear();
-        shoppingCart.setTotalPrice(0);
-        shoppingCart.setTotalItems(0);
-        cartRepository.save(shoppingCart);
+        if (cartStore.isEnabled()) {
+            ShoppingCart cart = null;
+            for (ProductSummary product : products.values()) {
+                int quantity = guestCart.getLines().get(product.getId());
+                cart = cartStore.update(username, product.getId(),
+                        shoppingCart -> addQuantity(shoppingCart, toProductDto(product), quantity));
+            }
+            touched(cart);
+            return;
+        }
+        mutate(username, status -> {
+            Customer customer = customerService.findByUsername(username);
+            ShoppingCart shoppingCart = customer.getCart();
+            if (shoppingCart == null || shoppingCart.getId() == null) {
+                shoppingCart = new ShoppingCart();
+                shoppingCart.setCustomer(customer);
+                shoppingCart = cartRepository.save(shoppingCart);
+            }
+            Long cartId = shoppingCart.getId();
+            List<Object[]> updates = new ArrayList<>();
+            List<Object[]> inserts = new ArrayList<>();
+            for (ProductSummary product : products.values()) {
+                int quantity = guestCart.getLines().get(product.getId());
+                if (shoppingCart.findItem(product.getId()) != null) {
+                    updates.add(new Object[]{quantity, cartId, product.getId()});
+                } else {
+                    inserts.add(new Object[]{cartId, product.getId(), quantity, product.getCostPrice()});
+                }
+            }
+            if (!updates.isEmpty()) {
+                jdbcTemplate.batchUpdate(MERGE_ITEM, updates);
+            }
+            if (!inserts.isEmpty()) {
+                jdbcTemplate.batchUpdate(INSERT_ITEM, inserts);
+            }
+            jdbcTemplate.update(RECOUNT_CART, System.currentTimeMillis(), cartId, cartId, cartId);
+            return shoppingCart;
+        });
     }
 
     @Override
     public ShoppingCart getCart(String username) {
+        if (cartStore.isEnabled()) {
+            return cartStore.get(username);
+        }
         Customer customer = customerService.findByUsername(username);
         ShoppingCart cart = customer.getCart();
         return cart;
     }
 
 
-    private CartItem find(Set<CartItem> cartItems, long productId) {
-        if (cartItems == null) {
-            return null;
-        }
-        CartItem cartItem = null;
-        for (CartItem item : cartItems) {
-            if (item.getProduct().getId() == productId) {
-                cartItem = item;
-            }
-        }
-        return cartItem;
-    }
-
-    private CartItemDto findInDTO(ShoppingCartDto shoppingCart, long productId) {
-        if (shoppingCart == null) {
-            return null;
-        }
-        CartItemDto cartItem = null;
-        for (CartItemDto item : shoppingCart.getCartItems()) {
-            if (item.getProduct().getId() == productId) {
-                cartItem = item;
-            }
-        }
-        return cartItem;
+    /**
+     * The database path runs in a transaction, a new one for each attempt; the cart store path does not need one
+     * (and skips its round trips)
+     */
+    private ShoppingCart mutate(String username, TransactionCallback<ShoppingCart> work) {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        return touched(cartConcurrency.mutate(username, () -> template.execute(work)));
     }
 
-    private int totalItem(Set<CartItem> cartItemList) {
-        int totalItem = 0;
-        for (CartItem item : cartItemList) {
-            totalItem += item.getQuantity();
-        }
-        return totalItem;
+    /**
+     * Starts the time to live of a changed cart again (see CartExpiry)
+     */
+    private ShoppingCart touched(ShoppingCart cart) {
+        cartExpiry.touch(cart);
+        return cart;
     }
 
-    private double totalPrice(Set<CartItem> cartItemList) {
-        double totalPrice = 0.0;
-        for (CartItem item : cartItemList) {
-            totalPrice += item.getUnitPrice() * item.getQuantity();
+    /**
+     * @return the line of the product, new when the product was not in the cart
+     */
+    private CartItem addQuantity(ShoppingCart shoppingCart, ProductDto productDto, int quantity) {
+        CartItem cartItem = shoppingCart.findItem(productDto.getId());
+        if (cartItem == null) {
+            cartItem = new CartItem();
+            cartItem.setProduct(transfer(productDto));
+            cartItem.setCart(shoppingCart);
+            cartItem.setQuantity(quantity);
+            cartItem.setUnitPrice(productDto.getCostPrice());
+            shoppingCart.addItem(cartItem);
+        } else {
+            shoppingCart.setItemQuantity(cartItem, cartItem.getQuantity() + quantity);
         }
-        return totalPrice;
+        return cartItem;
     }
 
-    private int totalItemDto(Set<CartItemDto> cartItemList) {
-        int totalItem = 0;
-        for (CartItemDto item : cartItemList) {
-            totalItem += item.getQuantity();
+    /**
+     * @return the removed lines
+     */
+    private static List<CartItem> applyChanges(ShoppingCart shoppingCart, List<CartLineChange> changes) {
+        List<CartItem> removed = new ArrayList<>();
+        for (CartLineChange change : changes) {
+            CartItem item = shoppingCart.findItem(change.productId());
+            if (item == null) {
+                continue;
+            }
+            if (change.quantity() <= 0) {
+                removed.add(shoppingCart.removeItem(change.productId()));
+            } else {
+                shoppingCart.setItemQuantity(item, change.quantity());
+            }
         }
-        return totalItem;
+        return removed;
     }
 
-    private double totalPriceDto(Set<CartItemDto> cartItemList) {
-        double totalPrice = 0;
-        for (CartItemDto item : cartItemList) {
-            totalPrice += item.getUnitPrice() * item.getQuantity();
-        }
-        return totalPrice;
+    private static ProductDto toProductDto(ProductSummary summary) {
+        ProductDto productDto = new ProductDto();
+        productDto.setId(summary.getId());
+        productDto.setName(summary.getName());
+        productDto.setDescription(summary.getDescription());
+        productDto.setCostPrice(summary.getCostPrice());
+        productDto.setSalePrice(summary.getSalePrice());
+        productDto.setCurrentQuantity(summary.getCurrentQuantity());
+        productDto.setImageKey(summary.getImageKey());
+        productDto.setImage(summary.getImage());
+        productDto.setActivated(summary.isActivated());
+        return productDto;
     }
 
     private Product transfer(ProductDto productDto) {
@@ -324,23 +377,20 @@ public class ShoppingCartServiceImpl implements ShoppingCartService {
         product.setSalePrice(productDto.getSalePrice());
         product.setDescription(productDto.getDescription());
         product.setImage(productDto.getImage());
+        product.setImageKey(productDto.getImageKey());
         product.set_activated(productDto.isActivated());
         product.set_deleted(productDto.isDeleted());
         product.setCategory(productDto.getCategory());
         return product;
     }
 
-    private Set<CartItem> convertCartItem(Set<CartItemDto> cartItemDtos, ShoppingCart cart) {
-        Set<CartItem> cartItems = new HashSet<>();
-        for (CartItemDto cartItemDto : cartItemDtos) {
-            CartItem cartItem = new CartItem();
-            cartItem.setQuantity(cartItemDto.getQuantity());
-            cartItem.setProduct(transfer(cartItemDto.getProduct()));
-            cartItem.setUnitPrice(cartItemDto.getUnitPrice());
-            cartItem.setId(cartItemDto.getId());
-            cartItem.setCart(cart);
-            cartItems.add(cartItem);
-        }
-        return cartItems;
+    private CartItem convertCartItem(CartItemDto cartItemDto, ShoppingCart cart) {
+        CartItem cartItem = new CartItem();
+        cartItem.setQuantity(cartItemDto.getQuantity());
+        cartItem.setProduct(transfer(cartItemDto.getProduct()));
+        cartItem.setUnitPrice(cartItemDto.getUnitPrice());
+        cartItem.setId(cartItemDto.getId());
+        cartItem.setCart(cart);
+        return cartItem;
     }
 }
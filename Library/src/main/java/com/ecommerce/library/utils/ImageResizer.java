@@ -0,0 +1,139 @@
+package com.ecommerce.library.utils;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generates the thumbnail, card and detail JPEGs of a stored image with plain javax.imageio
+ * Work runs on a small bounded pool off the request thread, when the queue is full the request is dropped
+ * and the variant is generated the next time somebody asks for it (see ImageStreamer)
+ */
+@Component
+public class ImageResizer {
+    private static final float JPEG_QUALITY = 0.85f;
+
+    private final ImageUpload imageUpload;
+
+    private final ThreadPoolExecutor executor;
+
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+    public ImageResizer(ImageUpload imageUpload,
+                        @Value("${image.resize.threads:2}") int threads,
+                        @Value("${image.resize.queue:256}") int queueSize) {
+        this.imageUpload = imageUpload;
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), runnable -> {
+            Thread thread = new Thread(runnable, "image-resize-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Queues generation of every missing variant of the image, a key that is already queued is ignored
+     */
+    public void resizeAsync(String key) {
+        if (!imageUpload.isKey(key) || !pending.add(key)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    resize(key);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                } finally {
+                    pending.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pending.remove(key);
+        }
+    }
+
+    public void resize(String key) throws IOException {
+        BufferedImage original = null;
+        for (ImageVariant variant : ImageVariant.values()) {
+            if (imageUpload.checkExist(key, variant)) {
+                continue;
+            }
+            if (original == null) {
+                original = ImageIO.read(imageUpload.resolve(key).toFile());
+                if (original == null) {
+                    return;
+                }
+            }
+            imageUpload.storeVariant(key, variant, encode(scale(original, variant.getMaxSize())));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Fits the image in a size x size box, halving step by step first so large photos keep their detail
+     * Transparent pixels become white because the result is a JPEG
+     */
+    static BufferedImage scale(BufferedImage source, int size) {
+        double ratio = Math.min(1.0, (double) size / Math.max(source.getWidth(), source.getHeight()));
+        int targetWidth = Math.max(1, (int) Math.round(source.getWidth() * ratio));
+        int targetHeight = Math.max(1, (int) Math.round(source.getHeight() * ratio));
+        BufferedImage current = source;
+        int width = source.getWidth();
+        int height = source.getHeight();
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+            BufferedImage step = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = step.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                graphics.drawImage(current, 0, 0, width, height, Color.WHITE, null);
+            } finally {
+                graphics.dispose();
+            }
+            current = step;
+        } while (width != targetWidth || height != targetHeight);
+        return current;
+    }
+
+    static byte[] encode(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(bytes)) {
+            writer.setOutput(output);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(JPEG_QUALITY);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return bytes.toByteArray();
+    }
+}
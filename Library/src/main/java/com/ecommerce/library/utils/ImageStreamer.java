@@ -0,0 +1,86 @@
+package com.ecommerce.library.utils;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLConnection;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Streams stored product images to the browser
+ * The key is the content hash, so it doubles as a strong ETag and the response can be cached forever
+ * Uses Tomcat sendfile when the connector supports it, otherwise FileChannel.transferTo into the response
+ * A variant that is not generated yet is queued and the original is served uncached meanwhile
+ */
+@Component
+@RequiredArgsConstructor
+public class ImageStreamer {
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+    private static final String CACHE_CONTROL = "public, max-age=31536000, immutable";
+
+    private final ImageUpload imageUpload;
+
+    private final ImageResizer imageResizer;
+
+    /**
+     * @param variant null for the original image
+     */
+    public void stream(String key, ImageVariant variant, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (!imageUpload.checkExist(key)) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        Path file = imageUpload.resolve(key, variant);
+        if (variant != null && !Files.exists(file)) {
+            imageResizer.resizeAsync(key);
+            file = imageUpload.resolve(key);
+            response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+        } else {
+            String etag = "\"" + file.getFileName() + "\"";
+            response.setHeader(HttpHeaders.ETAG, etag);
+            response.setHeader(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL);
+            String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+            if (ifNoneMatch != null && (ifNoneMatch.contains(etag) || ifNoneMatch.trim().equals("*"))) {
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return;
+            }
+        }
+        long size = Files.size(file);
+        response.setContentType(contentType(file));
+        response.setContentLengthLong(size);
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, file.toString());
+            request.setAttribute(SENDFILE_START, 0L);
+            request.setAttribute(SENDFILE_END, size);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = 0;
+            while (position < size) {
+                position += channel.transferTo(position, size - position, out);
+            }
+        }
+    }
+
+    private String contentType(Path file) throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+            String type = URLConnection.guessContentTypeFromStream(in);
+            return type != null ? type : "image/jpeg";
+        }
+    }
+}
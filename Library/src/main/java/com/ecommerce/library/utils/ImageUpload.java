@@ -1,36 +1,104 @@
 package com.ecommerce.library.utils;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.File;
+import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.regex.Pattern;
 
+/**
+ * Content-addressed store for product images
+ * Every image is saved once under the SHA-256 of its bytes (root/ab/abcdef...), the hash is the key kept on the product
+ * Derivatives live next to the original as root/ab/abcdef..._card
+ * Admin and Customer must point image.store.path to the same directory
+ */
 @Component
 public class ImageUpload {
-    private final String UPLOAD_FOLDER = "your path here";
+    private static final Pattern KEY = Pattern.compile("[0-9a-f]{64}");
 
-    public boolean uploadFile(MultipartFile file) {
-        boolean isUpload = false;
+    private final Path root;
+
+    public ImageUpload(@Value("${image.store.path:product-images}") String root) {
+        this.root = Paths.get(root).toAbsolutePath();
+    }
+
+    /**
+     * @return the key of the stored image
+     */
+    public String uploadFile(MultipartFile file) throws IOException {
+        return store(file.getBytes());
+    }
+
+    /**
+     * Writes the bytes unless an identical image is already stored
+     * The file is written next to its final place and moved in atomically, so readers never see half an image
+     * @return the key of the stored image
+     */
+    public String store(byte[] bytes) throws IOException {
+        String key = hash(bytes);
+        Path target = resolve(key);
+        if (Files.exists(target)) {
+            return key;
+        }
+        write(target, bytes);
+        return key;
+    }
+
+    public void storeVariant(String key, ImageVariant variant, byte[] bytes) throws IOException {
+        write(resolve(key, variant), bytes);
+    }
+
+    public boolean checkExist(String key) {
+        return isKey(key) && Files.exists(resolve(key));
+    }
+
+    public boolean checkExist(String key, ImageVariant variant) {
+        return isKey(key) && Files.exists(resolve(key, variant));
+    }
+
+    public boolean isKey(String key) {
+        return key != null && KEY.matcher(key).matches();
+    }
+
+    public Path resolve(String key) {
+        if (!isKey(key)) {
+            throw new IllegalArgumentException("Invalid image key: " + key);
+        }
+        return root.resolve(key.substring(0, 2)).resolve(key);
+    }
+
+    /**
+     * @param variant null for the original image
+     */
+    public Path resolve(String key, ImageVariant variant) {
+        Path original = resolve(key);
+        return variant == null ? original : original.resolveSibling(key + "_" + variant.suffix());
+    }
+
+    private void write(Path target, byte[] bytes) throws IOException {
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
         try {
-            Files.copy(file.getInputStream(), Paths.get(UPLOAD_FOLDER + File.separator + file.getOriginalFilename()), StandardCopyOption.REPLACE_EXISTING);
-            isUpload = true;
-        } catch (Exception e) {
-            e.printStackTrace();
+            Files.write(temp, bytes);
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
         }
-        return isUpload;
     }
 
-    public boolean checkExist(MultipartFile multipartFile) {
-        boolean isExist = false;
+    private String hash(byte[] bytes) {
         try {
-            File file = new File(UPLOAD_FOLDER + "\\" + multipartFile.getOriginalFilename());
-            isExist = file.exists();
-        } catch (Exception e) {
-            e.printStackTrace();
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
         }
-        return isExist;
     }
 }
@@ -0,0 +1,42 @@
+package com.ecommerce.library.utils;
+
+import java.util.Locale;
+
+/**
+ * Fixed-size derivatives generated for every product image, each fits in a square box of the given size
+ * thumbnail for the cart and orders, card for product grids, detail for the product page
+ */
+public enum ImageVariant {
+    THUMBNAIL(120),
+    CARD(400),
+    DETAIL(1000);
+
+    private final int maxSize;
+
+    ImageVariant(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public String suffix() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @return the variant for a request parameter such as "card", null for the original image
+     */
+    public static ImageVariant fromParameter(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        for (ImageVariant variant : values()) {
+            if (variant.suffix().equalsIgnoreCase(value)) {
+                return variant;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,165 @@
+package com.ecommerce.library.bulk;
+
+import com.ecommerce.library.event.ProductsImportedEvent;
+import com.ecommerce.library.model.Category;
+import com.ecommerce.library.repository.CategoryRepository;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ProductImporterTest {
+    /**
+     * Rows of ProductExporter.SELECT, the category is the name
+     */
+    private static final Object[][] EXPORTED = {
+            {7L, "Phone, 5G", "Says \"hi\"", 300.0, 350.0, 4, "Tech", true, false, "abc123"},
+            {8L, "Old phone", null, 10.0, 0.0, 0, "Tech", false, true, null}};
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+
+    private final CategoryRepository categoryRepository = mock(CategoryRepository.class);
+
+    private final ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+
+    private final ProductImporter importer = new ProductImporter(jdbcTemplate, categoryRepository,
+            mock(PlatformTransactionManager.class), eventPublisher, 2);
+
+    @Test
+    void insertsValidRowsInChunksAndReportsTheRest() {
+        when(categoryRepository.findAll()).thenReturn(List.of(tech()));
+
+        ImportResult result = importer.importProducts(ProductRowReader.csv(new StringReader(
+                "name,category,costPrice\n" +
+                "a,tech,1\n" +
+                "b,TECH,2\n" +
+                "c,Toys,3\n" +
+                "d,Tech,x\n" +
+                "e,Tech,5\n")));
+
+        assertEquals(3, result.imported());
+        assertEquals(2, result.rejected());
+        assertEquals(List.of(new RowError(4, "unknown category Toys"), new RowError(5, "costPrice is not a number: x")),
+                result.errors());
+        verify(jdbcTemplate, times(2)).batchUpdate(eq(ProductImporter.INSERT), anyList());
+        verify(eventPublisher).publishEvent(any(ProductsImportedEvent.class));
+    }
+
+    @Test
+    void retriesARefusedChunkRowByRow() {
+        when(categoryRepository.findAll()).thenReturn(List.of(tech()));
+        when(jdbcTemplate.batchUpdate(eq(ProductImporter.INSERT), anyList()))
+                .thenThrow(new DataIntegrityViolationException("duplicate"));
+        when(jdbcTemplate.update(eq(ProductImporter.INSERT), any(Object[].class)))
+                .thenReturn(1)
+                .thenThrow(new DataIntegrityViolationException("duplicate b"));
+
+        ImportResult result = importer.importProducts(ProductRowReader.csv(new StringReader(
+                "name,category,costPrice\na,Tech,1\nb,Tech,2\n")));
+
+        assertEquals(1, result.imported());
+        assertEquals(List.of(new RowError(3, "duplicate b")), result.errors());
+    }
+
+    @Test
+    void publishesNothingWhenNothingWasImported() {
+        ImportResult result = importer.importProducts(ProductRowReader.csv(new StringReader("name\n\"open\n")));
+
+        assertEquals(0, result.imported());
+        assertEquals(1, result.rejected());
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    void importsACsvExportAgain() throws Exception {
+        StringWriter file = new StringWriter();
+        exporter().exportCsv(file);
+
+        assertRestoresTheExport(ProductRowReader.csv(new StringReader(file.toString())));
+    }
+
+    @Test
+    void importsAJsonExportAgain() throws Exception {
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        exporter().exportJson(file);
+
+        assertRestoresTheExport(ProductRowReader.json(new ByteArrayInputStream(file.toByteArray())));
+    }
+
+    private void assertRestoresTheExport(ProductRowReader reader) {
+        when(categoryRepository.findAll()).thenReturn(List.of(tech()));
+
+        ImportResult result = importer.importProducts(reader);
+
+        assertEquals(2, result.imported(), () -> result.errors().toString());
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Object[]>> upserts = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(eq(ProductImporter.UPSERT), upserts.capture());
+        verify(jdbcTemplate, never()).batchUpdate(eq(ProductImporter.INSERT), anyList());
+        for (int i = 0; i < EXPORTED.length; i++) {
+            Object[] expected = EXPORTED[i].clone();
+            expected[6] = 4L;
+            assertArrayEquals(expected, upserts.getValue().get(i));
+        }
+    }
+
+    private static ProductExporter exporter() {
+        JdbcTemplate database = mock(JdbcTemplate.class);
+        doAnswer(call -> {
+            RowCallbackHandler handler = call.getArgument(1);
+            for (Object[] row : EXPORTED) {
+                handler.processRow(exported(row));
+            }
+            return null;
+        }).when(database).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+        return new ProductExporter(database, Integer.MIN_VALUE);
+    }
+
+    /**
+     * Result set row of ProductExporter.SELECT
+     */
+    private static ResultSet exported(Object[] row) throws SQLException {
+        ResultSet result = mock(ResultSet.class);
+        when(result.getString(anyInt())).thenAnswer(call -> {
+            Object value = row[call.<Integer>getArgument(0) - 1];
+            return value == null ? null : String.valueOf(value);
+        });
+        when(result.getLong(anyInt())).thenAnswer(call -> ((Number) row[call.<Integer>getArgument(0) - 1]).longValue());
+        when(result.getDouble(anyInt())).thenAnswer(call -> ((Number) row[call.<Integer>getArgument(0) - 1]).doubleValue());
+        when(result.getInt(anyInt())).thenAnswer(call -> ((Number) row[call.<Integer>getArgument(0) - 1]).intValue());
+        when(result.getBoolean(anyInt())).thenAnswer(call -> row[call.<Integer>getArgument(0) - 1]);
+        return result;
+    }
+
+    private static Category tech() {
+        Category category = new Category();
+        category.setId(4L);
+        category.setName("Tech");
+        return category;
+    }
+}
@@ -0,0 +1,85 @@
+package com.ecommerce.library.bulk;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProductRowReaderTest {
+
+    @Test
+    void readsQuotedCsvFieldsAndTracksLines() throws IOException {
+        ProductRowReader reader = ProductRowReader.csv(new StringReader(
+                "\uFEFFName,Description,CostPrice\r\n" +
+                "Phone,\"Big, \"\"fast\"\"\nand new\",10\r\n" +
+                "\n" +
+                "Laptop,,20\n"));
+
+        ProductRowReader.Record phone = reader.next();
+        ProductRowReader.Record laptop = reader.next();
+
+        assertEquals(2, phone.line());
+        assertEquals(Map.of("name", "Phone", "description", "Big, \"fast\"\nand new", "costprice", "10"),
+                phone.fields());
+        assertEquals(5, laptop.line());
+        assertEquals("", laptop.fields().get("description"));
+        assertNull(reader.next());
+    }
+
+    @Test
+    void reportsARowWithTooManyFieldsAndCarriesOn() throws IOException {
+        ProductRowReader reader = ProductRowReader.csv(new StringReader("name,costPrice\na,1,extra\nb,2\n"));
+
+        ProductRowReader.Record broken = reader.next();
+
+        assertEquals(2, broken.line());
+        assertTrue(broken.error().contains("3 fields"));
+        assertEquals("b", reader.next().fields().get("name"));
+    }
+
+    @Test
+    void stopsOnAnUnterminatedQuote() throws IOException {
+        ProductRowReader reader = ProductRowReader.csv(new StringReader("name\n\"open\n"));
+
+        assertThrows(IOException.class, reader::next);
+    }
+
+    @Test
+    void readsJsonObjectsAndSkipsNestedValues() throws IOException {
+        String json = "[{\"name\":\"Phone\",\"costPrice\":10.5,\"tags\":[\"a\"],\"activated\":false},\n 7]";
+        ProductRowReader reader = ProductRowReader.of("products.JSON",
+                new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+
+        ProductRowReader.Record phone = reader.next();
+        ProductRowReader.Record number = reader.next();
+
+        assertEquals(Map.of("name", "Phone", "costprice", "10.5", "activated", "false"), phone.fields());
+        assertEquals(2, number.line());
+        assertEquals("not a JSON object", number.error());
+        assertNull(reader.next());
+    }
+
+    @Test
+    void validatesRows() {
+        ProductRow row = ProductRow.parse(3, Map.of("name", " Phone ", "category", "Tech", "costprice", "10"));
+
+        assertEquals("Phone", row.name());
+        assertEquals(0, row.currentQuantity());
+        assertTrue(row.activated());
+        assertThrows(IllegalArgumentException.class,
+                () -> ProductRow.parse(1, Map.of("name", "a", "category", "b", "costprice", "-1")));
+        assertThrows(IllegalArgumentException.class,
+                () -> ProductRow.parse(1, Map.of("name", "a", "category", "b", "costprice", "1",
+                        "currentquantity", "1.5")));
+        assertThrows(IllegalArgumentException.class,
+                () -> ProductRow.parse(1, Map.of("category", "b", "costprice", "1")));
+    }
+}
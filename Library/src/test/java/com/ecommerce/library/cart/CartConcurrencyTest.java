@@ -0,0 +1,276 @@
+package com.ecommerce.library.cart;
+
+import com.ecommerce.library.dto.ProductDto;
+import com.ecommerce.library.model.CartItem;
+import com.ecommerce.library.model.Customer;
+import com.ecommerce.library.model.ShoppingCart;
+import com.ecommerce.library.repository.CartItemRepository;
+import com.ecommerce.library.repository.ShoppingCartRepository;
+import com.ecommerce.library.service.CustomerService;
+import com.ecommerce.library.service.impl.ShoppingCartServiceImpl;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+class CartConcurrencyTest {
+    private static final int THREADS = 16;
+
+    private static final int PRODUCTS = 20;
+
+    @Test
+    void retriesWhenAnotherNodeChangedTheCart() {
+        ShoppingCartRepository cartRepository = mock(ShoppingCartRepository.class);
+        when(cartRepository.save(any(ShoppingCart.class)))
+                .thenThrow(new ObjectOptimisticLockingFailureException(ShoppingCart.class, 1L))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+        CustomerService customerService = mock(CustomerService.class);
+        when(customerService.findByUsername("ann")).thenAnswer(invocation -> customer());
+
+        ShoppingCart cart = service(cartRepository, customerService, new CartConcurrency(4, 3))
+                .addItemToCart(product(1), 2, "ann");
+
+        assertEquals(2, cart.getTotalItems());
+        verify(cartRepository, times(2)).save(any(ShoppingCart.class));
+    }
+
+    @Test
+    void givesUpAfterMaxAttempts() {
+        ShoppingCartRepository cartRepository = mock(ShoppingCartRepository.class);
+        when(cartRepository.save(any(ShoppingCart.class)))
+                .thenThrow(new ObjectOptimisticLockingFailureException(ShoppingCart.class, 1L));
+        CustomerService customerService = mock(CustomerService.class);
+        when(customerService.findByUsername("ann")).thenAnswer(invocation -> customer());
+        ShoppingCartServiceImpl service = service(cartRepository, customerService, new CartConcurrency(4, 3));
+
+        assertThrows(OptimisticLockingFailureException.class, () -> service.addItemToCart(product(1), 1, "ann"));
+        verify(cartRepository, times(3)).save(any(ShoppingCart.class));
+    }
+
+    @Test
+    void runsOnceInsideAnOpenTransaction() {
+        CartConcurrency concurrency = new CartConcurrency(4, 3);
+        AtomicInteger attempts = new AtomicInteger();
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        try {
+            assertThrows(OptimisticLockingFailureException.class, () -> concurrency.mutate("ann", () -> {
+                attempts.incrementAndGet();
+                throw new OptimisticLockingFailureException("changed");
+            }));
+        } finally {
+            TransactionSynchronizationManager.setActualTransactionActive(false);
+        }
+        assertEquals(1, attempts.get());
+    }
+
+    @Test
+    void roundsStripesUpToAPowerOfTwo() {
+        CartConcurrency concurrency = new CartConcurrency(5, 1);
+        for (int i = 0; i < 100; i++) {
+            int stripe = concurrency.stripe("user" + i);
+            assertTrue(stripe >= 0 && stripe < 8);
+        }
+        assertEquals(0, new CartConcurrency(1, 1).stripe("ann"));
+    }
+
+    /**
+     * Many threads click on the same carts through the database path; the repositories hand out one shared cart
+     * per customer, so without the lock the read-modify-write of lines and totals would lose clicks or corrupt
+     * the index
+     */
+    @Test
+    void stressSameCustomerAndManyCustomers() throws Exception {
+        for (int customers : new int[]{1, 64}) {
+            Map<String, Customer> byName = customers(customers);
+            int clicks = 2_000;
+
+            click(clickService(byName), customers, clicks);
+
+            assertCarts(byName, THREADS * clicks);
+        }
+    }
+
+    /**
+     * Cart mutations per second through the service and the striped lock, for one customer that every thread
+     * queues on and for 64 customers spread over the stripes; the repositories are in-memory, so this is the
+     * cost of the concurrency layer and the cart bookkeeping without the database round trips
+     */
+    @Test
+    @Tag("benchmark")
+    void benchmarkClickThroughput() throws Exception {
+        int clicks = 5_000;
+        for (int customers : new int[]{1, 64}) {
+            click(clickService(customers(customers)), customers, 1_000);
+            Map<String, Customer> byName = customers(customers);
+            ShoppingCartServiceImpl service = clickService(byName);
+
+            long begin = System.nanoTime();
+            click(service, customers, clicks);
+            long nanos = System.nanoTime() - begin;
+
+            assertCarts(byName, THREADS * clicks);
+            long perSecond = (long) THREADS * clicks * 1_000_000_000L / nanos;
+            assertTrue(perSecond > 10_000, customers + " customers: " + perSecond + " clicks/s");
+        }
+    }
+
+    /**
+     * Two nodes with a lock each change one row guarded by a version; every change that is not rejected after
+     * its attempts lands exactly once
+     */
+    @Test
+    void stressTwoNodesSharingOneCart() throws Exception {
+        AtomicReference<long[]> row = new AtomicReference<>(new long[]{0, 0});
+        CartConcurrency[] nodes = {new CartConcurrency(64, 5), new CartConcurrency(64, 5)};
+        AtomicInteger applied = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        AtomicInteger conflicts = new AtomicInteger();
+        int clicks = 100;
+
+        run(8, thread -> {
+            CartConcurrency node = nodes[thread % nodes.length];
+            for (int i = 0; i < clicks; i++) {
+                try {
+                    node.mutate("ann", () -> {
+                        long[] read = row.get();
+                        Thread.yield();
+                        if (!row.compareAndSet(read, new long[]{read[0] + 1, read[1] + 1})) {
+                            conflicts.incrementAndGet();
+                            throw new OptimisticLockingFailureException("cart changed by the other node");
+                        }
+                        return null;
+                    });
+                    applied.incrementAndGet();
+                } catch (OptimisticLockingFailureException e) {
+                    rejected.incrementAndGet();
+                }
+            }
+        });
+
+        assertEquals(8 * clicks, applied.get() + rejected.get());
+        assertEquals(applied.get(), row.get()[0]);
+        assertEquals(row.get()[0], row.get()[1]);
+        assertTrue(conflicts.get() >= rejected.get());
+    }
+
+    private static Map<String, Customer> customers(int count) {
+        Map<String, Customer> byName = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            Customer customer = customer();
+            customer.setUsername("user" + i);
+            byName.put(customer.getUsername(), customer);
+        }
+        return byName;
+    }
+
+    /**
+     * The repositories hand out one shared cart per customer
+     */
+    private static ShoppingCartServiceImpl clickService(Map<String, Customer> byName) {
+        ShoppingCartRepository cartRepository = mock(ShoppingCartRepository.class, withSettings().stubOnly());
+        when(cartRepository.save(any(ShoppingCart.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        CustomerService customerService = mock(CustomerService.class, withSettings().stubOnly());
+        when(customerService.findByUsername(any())).thenAnswer(invocation -> byName.get(invocation.getArgument(0)));
+        return service(cartRepository, customerService, new CartConcurrency(64, 3));
+    }
+
+    private static void click(ShoppingCartServiceImpl service, int customers, int clicks) throws Exception {
+        run(THREADS, thread -> {
+            for (int i = 0; i < clicks; i++) {
+                String username = "user" + ((thread + i) % customers);
+                service.addItemToCart(product(1 + (i % PRODUCTS)), 1, username);
+            }
+        });
+    }
+
+    /**
+     * Every cart adds up and together they hold every click
+     */
+    private static void assertCarts(Map<String, Customer> byName, int expected) {
+        int totalItems = 0;
+        for (Customer customer : byName.values()) {
+            ShoppingCart cart = customer.getCart();
+            int lines = 0;
+            for (CartItem item : cart.getCartItems()) {
+                lines += item.getQuantity();
+            }
+            assertEquals(lines, cart.getTotalItems());
+            assertEquals(lines * 10.0, cart.getTotalPrice(), 1e-6);
+            assertTrue(cart.getCartItems().size() <= PRODUCTS);
+            totalItems += cart.getTotalItems();
+        }
+        assertEquals(expected, totalItems);
+    }
+
+    private static void run(int threads, ThreadWork work) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                futures.add(executor.submit((Callable<Void>) () -> {
+                    work.run(thread);
+                    return null;
+                }));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static ShoppingCartServiceImpl service(ShoppingCartRepository cartRepository,
+                                                   CustomerService customerService,
+                                                   CartConcurrency concurrency) {
+        CartItemRepository itemRepository = mock(CartItemRepository.class, withSettings().stubOnly());
+        return new ShoppingCartServiceImpl(cartRepository, itemRepository, customerService,
+                new CartStore(null, null, null, null, false, 0, 0), mock(PlatformTransactionManager.class),
+                null, null, concurrency, new CartExpiry(null, null, null, false, 30, 60_000, 500));
+    }
+
+    private static Customer customer() {
+        Customer customer = new Customer();
+        customer.setUsername("ann");
+        ShoppingCart cart = new ShoppingCart();
+        cart.setCustomer(customer);
+        customer.setCart(cart);
+        return customer;
+    }
+
+    private static ProductDto product(long id) {
+        ProductDto product = new ProductDto();
+        product.setId(id);
+        product.setName("Product " + id);
+        product.setCostPrice(10.0);
+        return product;
+    }
+
+    private interface ThreadWork {
+        void run(int thread);
+    }
+}
@@ -0,0 +1,220 @@
+package com.ecommerce.library.cart;
+
+import com.ecommerce.library.model.ShoppingCart;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class CartExpiryTest {
+    private static final long TICK = 60_000;
+
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+
+    @Test
+    void expiresEveryKeyAtItsTick() {
+        Random random = new Random(7);
+        TimingWheel wheel = new TimingWheel(TICK, 0);
+        Map<Long, Long> deadlines = new HashMap<>();
+        for (long key = 1; key <= 20_000; key++) {
+            long ticks = switch ((int) (key % 4)) {
+                case 0 -> random.nextInt(64);
+                case 1 -> random.nextInt(64 * 64);
+                case 2 -> random.nextInt(64 * 64 * 64);
+                default -> random.nextInt(64 * 64 * 64 * 64 * 4);
+            };
+            long deadline = ticks * TICK + random.nextInt((int) TICK);
+            wheel.schedule(key, deadline);
+            deadlines.put(key, Math.max(1, (deadline + TICK - 1) / TICK));
+        }
+
+        long now = 0;
+        int expiredCount = 0;
+        while (wheel.size() > 0) {
+            long previousTick = now / TICK;
+            now += (1 + random.nextInt(5_000)) * TICK;
+            for (Long key : wheel.advance(now)) {
+                long due = deadlines.get(key);
+                assertTrue(due > previousTick && due <= now / TICK, "key " + key + " due at " + due);
+                expiredCount++;
+            }
+        }
+        assertEquals(20_000, expiredCount);
+    }
+
+    @Test
+    void rescheduleAndCancelMoveTheDeadline() {
+        TimingWheel wheel = new TimingWheel(TICK, 0);
+        wheel.schedule(1, 10 * TICK);
+        wheel.schedule(2, 10 * TICK);
+        wheel.schedule(1, 100 * TICK);
+        assertTrue(wheel.cancel(2));
+        assertFalse(wheel.cancel(3));
+
+        assertEquals(List.of(), wheel.advance(99 * TICK));
+        assertEquals(List.of(1L), wheel.advance(100 * TICK));
+
+        wheel.schedule(4, 0);
+        assertEquals(List.of(4L), wheel.advance(101 * TICK));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void sweepEmptiesOnlyCartsUntouchedForTheTimeToLive() {
+        FakeCarts database = new FakeCarts();
+        CartStore cartStore = mock(CartStore.class);
+        CartExpiry expiry = new CartExpiry(database, cartStore, mock(PlatformTransactionManager.class), true, 1,
+                TICK, 2);
+        long start = System.currentTimeMillis();
+        database.put(1L, 0, 3);
+        database.put(2L, start - DAY / 2, 2);
+        database.put(3L, start, 4);
+        database.put(4L, start, 0);
+        expiry.touch(cart(3L));
+
+        assertEquals(0, expiry.sweep(start));
+        assertEquals(3, expiry.getTrackedCarts());
+
+        database.put(2L, start + DAY / 4, 2);
+        assertEquals(2, expiry.sweep(start + DAY + 2 * TICK));
+        assertEquals(2, expiry.getReclaimedCarts());
+        assertEquals(7, expiry.getReclaimedItems());
+        assertEquals(0, database.items(1L));
+        assertEquals(2, database.items(2L));
+        assertEquals(0, database.items(3L));
+        assertEquals(1, expiry.getTrackedCarts());
+        verify(cartStore).linesDeleted(List.of(1L));
+        verify(cartStore).linesDeleted(List.of(3L));
+
+        assertEquals(1, expiry.sweep(start + DAY + DAY / 4 + 2 * TICK));
+        assertEquals(3, expiry.getReclaimedCarts());
+        assertEquals(0, expiry.getTrackedCarts());
+        verify(cartStore).linesDeleted(List.of(2L));
+    }
+
+    @Test
+    void keepsTheCachedCartsOfAFailedChunk() {
+        FakeCarts database = new FakeCarts();
+        CartStore cartStore = mock(CartStore.class);
+        CartExpiry expiry = new CartExpiry(database, cartStore, mock(PlatformTransactionManager.class), true, 1,
+                TICK, 2);
+        database.put(1L, 1, 3);
+        database.failing = true;
+
+        assertEquals(0, expiry.sweep(System.currentTimeMillis() + DAY + 2 * TICK));
+        assertEquals(1, expiry.getFailedChunks());
+        assertEquals(1, expiry.getTrackedCarts());
+        verify(cartStore, never()).linesDeleted(anyCollection());
+    }
+
+    @Test
+    void disabledExpiryTracksNothing() {
+        CartExpiry expiry = new CartExpiry(null, null, null, false, 30, TICK, 500);
+        expiry.touch(cart(1L));
+        expiry.sweep();
+        assertEquals(0, expiry.getTrackedCarts());
+    }
+
+    /**
+     * A touch is a map lookup and a relink, the same work for any number of carts (only cache misses grow), so it
+     * stays around a microsecond even for a million carts
+     */
+    @Test
+    @Tag("benchmark")
+    void benchmarkTouch() {
+        for (int carts : new int[]{1_000, 100_000, 1_000_000}) {
+            TimingWheel wheel = new TimingWheel(TICK, 0);
+            Random random = new Random(1);
+            for (long key = 0; key < carts; key++) {
+                wheel.schedule(key, 30 * DAY);
+            }
+            int touches = 2_000_000;
+            long started = System.nanoTime();
+            for (int i = 0; i < touches; i++) {
+                wheel.schedule(random.nextInt(carts), 30 * DAY + i);
+            }
+            long elapsed = System.nanoTime() - started;
+            assertEquals(carts, wheel.size());
+            assertTrue(elapsed / touches < 2_000, carts + " carts: " + elapsed / touches + " ns/touch");
+        }
+    }
+
+    private static ShoppingCart cart(long id) {
+        ShoppingCart cart = new ShoppingCart();
+        cart.setId(id);
+        return cart;
+    }
+
+    /**
+     * The statements of CartExpiry over carts held in a map
+     */
+    private static final class FakeCarts extends JdbcTemplate {
+        private final TreeMap<Long, long[]> carts = new TreeMap<>();
+
+        private boolean failing;
+
+        void put(long id, long touchedAt, int items) {
+            carts.put(id, new long[]{touchedAt, items});
+        }
+
+        long items(long id) {
+            return carts.get(id)[1];
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> List<T> query(String sql, RowMapper<T> rowMapper, Object... args) {
+            List<T> rows = new ArrayList<>();
+            if (sql.equals(CartExpiry.SEED)) {
+                for (Map.Entry<Long, long[]> cart : carts.tailMap((Long) args[0], false).entrySet()) {
+                    if (cart.getValue()[1] > 0 && rows.size() < (Integer) args[1]) {
+                        rows.add((T) new long[]{cart.getKey(), cart.getValue()[0]});
+                    }
+                }
+            } else {
+                for (Object id : args) {
+                    long[] cart = carts.get((Long) id);
+                    if (cart != null && cart[1] > 0) {
+                        rows.add((T) new long[]{(Long) id, cart[0]});
+                    }
+                }
+            }
+            return rows;
+        }
+
+        @Override
+        public int update(String sql, Object... args) {
+            if (failing) {
+                throw new QueryTimeoutException("down");
+            }
+            int count = 0;
+            for (Object id : args) {
+                long[] cart = carts.get((Long) id);
+                if (sql.startsWith("delete")) {
+                    count += (int) cart[1];
+                    cart[1] = 0;
+                } else {
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+}
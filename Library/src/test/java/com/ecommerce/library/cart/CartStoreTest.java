@@ -0,0 +1,270 @@
+package com.ecommerce.library.cart;
+
+import com.ecommerce.library.model.CartItem;
+import com.ecommerce.library.model.Customer;
+import com.ecommerce.library.model.Product;
+import com.ecommerce.library.model.ShoppingCart;
+import com.ecommerce.library.repository.ShoppingCartRepository;
+import com.ecommerce.library.service.CustomerService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CartStoreTest {
+    private final CustomerService customerService = mock(CustomerService.class);
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+
+    @Test
+    void coalescesClicksIntoOneRowPerChangedLine() {
+        customer("ann", 5L, 1L);
+        CartStore store = store(100, 60_000);
+
+        for (int i = 0; i < 50; i++) {
+            store.update("ann", 1L, cart -> cart.setItemQuantity(cart.findItem(1L), cart.findItem(1L).getQuantity() + 1));
+            store.update("ann", 2L, cart -> add(cart, 2L, 1));
+        }
+        store.flush();
+        store.flush();
+
+        assertArrayEquals(new Object[]{51, 2.0, 5L, 1L}, rows(CartStore.UPDATE_ITEM).get(0));
+        assertArrayEquals(new Object[]{5L, 2L, 50, 2.0}, rows(CartStore.INSERT_ITEM).get(0));
+        Object[] cartRow = rows(CartStore.UPDATE_CART).get(0);
+        assertArrayEquals(new Object[]{202.0, 101, 5L}, new Object[]{cartRow[0], cartRow[1], cartRow[3]});
+        verify(jdbcTemplate, never()).batchUpdate(eq(CartStore.DELETE_ITEM), anyList());
+    }
+
+    @Test
+    void deletesOnlyLinesThatHaveARow() {
+        customer("ann", 5L, 1L);
+        CartStore store = store(100, 60_000);
+
+        store.update("ann", 2L, cart -> add(cart, 2L, 1));
+        store.update("ann", 2L, cart -> cart.removeItem(2L));
+        store.update("ann", 1L, cart -> cart.removeItem(1L));
+        store.flush();
+
+        assertArrayEquals(new Object[]{5L, 1L}, rows(CartStore.DELETE_ITEM).get(0));
+        verify(jdbcTemplate, never()).batchUpdate(eq(CartStore.INSERT_ITEM), anyList());
+    }
+
+    @Test
+    void keepsTheChangesWhenTheWriteFails() {
+        customer("ann", 5L, 1L);
+        CartStore store = store(100, 0);
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenThrow(new QueryTimeoutException("down"));
+
+        store.update("ann", 2L, cart -> add(cart, 2L, 1));
+        assertThrows(QueryTimeoutException.class, () -> store.flush("ann"));
+        store.flush();
+
+        assertEquals(1, store.size());
+        assertEquals(1, store.getFailedFlushes());
+        assertTrue(store.getLastFailure().contains("down"));
+        verify(jdbcTemplate, times(2)).batchUpdate(eq(CartStore.INSERT_ITEM), anyList());
+    }
+
+    @Test
+    void dropsIdleCartsOnceFlushed() {
+        customer("ann", 5L, 1L);
+        CartStore store = store(100, -1);
+
+        ShoppingCart cart = store.update("ann", 2L, changed -> add(changed, 2L, 1));
+        store.flush();
+
+        assertEquals(0, store.size());
+        assertSame(cart.findItem(2L).getCart(), cart);
+    }
+
+    @Test
+    void handsOutCopies() {
+        customer("ann", 5L, 1L);
+        CartStore store = store(100, 60_000);
+
+        ShoppingCart before = store.get("ann");
+        ShoppingCart after = store.update("ann", 2L, cart -> add(cart, 2L, 3));
+        after.removeItem(1L);
+
+        assertEquals(1, before.getTotalItems());
+        assertEquals(null, before.findItem(2L));
+        assertEquals(3, after.getTotalItems());
+        ShoppingCart current = store.get("ann");
+        assertEquals(4, current.getTotalItems());
+        assertEquals(8.0, current.getTotalPrice(), 1e-9);
+        assertSame(current, current.findItem(1L).getCart());
+    }
+
+    @Test
+    void keepsLinesAddedAfterCheckoutFlushed() {
+        customer("ann", 5L, 1L);
+        CartStore store = store(100, 60_000);
+
+        store.update("ann", 2L, cart -> add(cart, 2L, 1));
+        store.evictAfterCommit("ann");
+
+        assertEquals(0, store.size());
+        assertArrayEquals(new Object[]{5L, 2L, 1, 2.0}, rows(CartStore.INSERT_ITEM).get(0));
+        Object[] cartRow = rows(CartStore.UPDATE_CART).get(0);
+        assertArrayEquals(new Object[]{2.0, 1, 5L}, new Object[]{cartRow[0], cartRow[1], cartRow[3]});
+    }
+
+    @Test
+    void keepsTheCartAfterCheckoutWhileItsLinesAreNotWritten() {
+        customer("ann", 5L, 1L);
+        CartStore store = store(100, 60_000);
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenThrow(new QueryTimeoutException("down"));
+
+        store.update("ann", 2L, cart -> add(cart, 2L, 1));
+        store.evictAfterCommit("ann");
+
+        assertEquals(1, store.size());
+        ShoppingCart cart = store.get("ann");
+        assertEquals(null, cart.findItem(1L));
+        assertEquals(1, cart.getTotalItems());
+    }
+
+    @Test
+    void dropsCleanCartsAtCheckout() {
+        customer("ann", 5L, 1L);
+        CartStore store = store(100, 60_000);
+
+        store.get("ann");
+        store.evictAfterCommit("ann");
+
+        assertEquals(0, store.size());
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+    }
+
+    @Test
+    void dropsTheCartsEmptiedByExpiry() {
+        customer("ann", 5L, 1L);
+        customer("bob", 6L, 1L);
+        customer("cid", 7L, 1L);
+        CartStore store = store(100, 60_000);
+
+        store.get("ann");
+        store.get("cid");
+        store.update("bob", 2L, cart -> add(cart, 2L, 1));
+        store.linesDeleted(List.of(5L, 6L));
+
+        assertEquals(1, store.size());
+        assertEquals(1, store.get("cid").getTotalItems());
+        assertArrayEquals(new Object[]{6L, 2L, 1, 2.0}, rows(CartStore.INSERT_ITEM).get(0));
+    }
+
+    @Test
+    void makesRoomForNewCarts() {
+        for (long id = 0; id < 20; id++) {
+            customer("user" + id, id, 1L);
+        }
+        CartStore store = store(10, 60_000);
+
+        for (long id = 0; id < 20; id++) {
+            store.get("user" + id);
+        }
+
+        assertTrue(store.size() <= 10);
+    }
+
+    /**
+     * 32 customers clicking 1 000 times each on 5 products, against the two row writes (cart_items and
+     * shopping_cart) every click cost before: a tenth of the rows at most, and a click in microseconds
+     */
+    @Test
+    @Tag("benchmark")
+    void benchmarkClicks() {
+        int customers = 32;
+        int clicks = 1_000;
+        for (long id = 0; id < customers; id++) {
+            customer("user" + id, id, 1L);
+        }
+        AtomicLong rows = new AtomicLong();
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenAnswer(call -> {
+            rows.addAndGet(call.<List<?>>getArgument(1).size());
+            return new int[0];
+        });
+        CartStore store = store(customers, 60_000);
+        for (int c = 0; c < customers; c++) {
+            store.get("user" + c);
+        }
+
+        long begin = System.nanoTime();
+        for (int i = 0; i < clicks; i++) {
+            for (int c = 0; c < customers; c++) {
+                long product = 1 + (i + c) % 5;
+                store.update("user" + c, product, cart -> add(cart, product, 1));
+            }
+            if (i % 100 == 99) {
+                store.flush();
+            }
+        }
+        long nanos = System.nanoTime() - begin;
+
+        long total = (long) customers * clicks;
+        assertTrue(rows.get() * 10 <= total * 2, rows.get() + " rows for " + total + " clicks");
+        assertTrue(nanos / total < 10_000, nanos / total + " ns/click");
+    }
+
+    private static void add(ShoppingCart cart, long productId, int quantity) {
+        CartItem item = cart.findItem(productId);
+        if (item == null) {
+            cart.addItem(item(cart, productId, quantity));
+        } else {
+            cart.setItemQuantity(item, item.getQuantity() + quantity);
+        }
+    }
+
+    private void customer(String username, Long cartId, long productId) {
+        Customer customer = new Customer();
+        customer.setUsername(username);
+        ShoppingCart cart = new ShoppingCart();
+        cart.setId(cartId);
+        cart.setCustomer(customer);
+        cart.addItem(item(cart, productId, 1));
+        customer.setCart(cart);
+        when(customerService.findByUsername(username)).thenReturn(customer);
+    }
+
+    private static CartItem item(ShoppingCart cart, long productId, int quantity) {
+        Product product = new Product();
+        product.setId(productId);
+        CartItem item = new CartItem();
+        item.setProduct(product);
+        item.setCart(cart);
+        item.setQuantity(quantity);
+        item.setUnitPrice(2.0);
+        return item;
+    }
+
+    private List<Object[]> rows(String sql) {
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Object[]>> rows = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(eq(sql), rows.capture());
+        return rows.getValue();
+    }
+
+    private CartStore store(int maxCarts, long ttlMillis) {
+        return new CartStore(customerService, mock(ShoppingCartRepository.class), jdbcTemplate,
+                mock(PlatformTransactionManager.class), true, maxCarts, ttlMillis);
+    }
+}
@@ -0,0 +1,122 @@
+package com.ecommerce.library.cart;
+
+import com.ecommerce.library.catalog.CatalogCache;
+import com.ecommerce.library.catalog.CatalogSnapshot;
+import com.ecommerce.library.dto.ProductSummary;
+import com.ecommerce.library.dto.ShoppingCartDto;
+import com.ecommerce.library.model.CartItem;
+import com.ecommerce.library.model.Customer;
+import com.ecommerce.library.model.Product;
+import com.ecommerce.library.model.ShoppingCart;
+import com.ecommerce.library.service.CustomerService;
+import com.ecommerce.library.service.impl.ShoppingCartServiceImpl;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class GuestCartTest {
+    private final GuestCartCookie cookie = new GuestCartCookie("secret", 30);
+
+    @Test
+    void roundTripsThroughVarints() {
+        GuestCart cart = new GuestCart();
+        cart.add(3, 1);
+        cart.add(300_000, 2);
+        cart.add(3, 4);
+
+        byte[] bytes = cart.toBytes();
+
+        assertEquals(1 + 2 + 4, bytes.length);
+        assertEquals(Map.of(3L, 5, 300_000L, 2), GuestCart.fromBytes(bytes).getLines());
+    }
+
+    @Test
+    void keepsTheCookieSmall() {
+        GuestCart cart = new GuestCart();
+        for (long id = 1; id <= GuestCart.MAX_LINES + 10; id++) {
+            cart.add(id * 1_000, 5);
+        }
+
+        assertEquals(GuestCart.MAX_LINES, cart.getLines().size());
+        assertTrue(cookie.encode(cart).length() < 300);
+    }
+
+    @Test
+    void rejectsChangedOrForeignCookies() {
+        GuestCart cart = new GuestCart();
+        cart.add(7, 2);
+        String value = cookie.encode(cart);
+        String other = new GuestCartCookie("other", 30).encode(cart);
+        GuestCart forged = new GuestCart();
+        forged.add(7, 900);
+        String forgedValue = new GuestCartCookie("other", 30).encode(forged).split("\\.")[0] + "." + value.split("\\.")[1];
+
+        assertEquals(Map.of(7L, 2), cookie.decode(value).getLines());
+        assertTrue(cookie.decode(other).isEmpty());
+        assertTrue(cookie.decode(forgedValue).isEmpty());
+        assertTrue(cookie.decode("not a cart").isEmpty());
+        assertTrue(cookie.decode("!!.??").isEmpty());
+    }
+
+    @Test
+    void mergesIntoTheCustomerCartWithOneBatchPerStatement() {
+        CustomerService customerService = mock(CustomerService.class);
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        CatalogCache catalogCache = mock(CatalogCache.class);
+        when(catalogCache.load()).thenReturn(CatalogSnapshot.of(1, List.of(product(1), product(2), product(3)), List.of()));
+        Customer customer = new Customer();
+        customer.setUsername("ann");
+        ShoppingCart cart = new ShoppingCart();
+        cart.setId(9L);
+        Product stored = new Product();
+        stored.setId(1L);
+        CartItem item = new CartItem();
+        item.setProduct(stored);
+        item.setQuantity(1);
+        cart.addItem(item);
+        customer.setCart(cart);
+        when(customerService.findByUsername("ann")).thenReturn(customer);
+        ShoppingCartServiceImpl service = new ShoppingCartServiceImpl(null, null, customerService,
+                new CartStore(null, null, null, null, false, 0, 0), mock(PlatformTransactionManager.class),
+                catalogCache, jdbcTemplate, new CartConcurrency(1, 1),
+                new CartExpiry(null, null, null, false, 30, 60_000, 500));
+        GuestCart guest = new GuestCart();
+        guest.add(1, 2);
+        guest.add(2, 1);
+        guest.add(3, 4);
+        guest.add(404, 1);
+
+        service.mergeGuestCart(guest, "ann");
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Object[]>> rows = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, times(2)).batchUpdate(anyString(), rows.capture());
+        assertArrayEquals(new Object[]{2, 9L, 1L}, rows.getAllValues().get(0).get(0));
+        assertEquals(2, rows.getAllValues().get(1).size());
+        verify(jdbcTemplate).update(anyString(), anyLong(), eq(9L), eq(9L), eq(9L));
+
+        ShoppingCartDto view = service.guestCart(guest);
+        assertEquals(3, view.getCartItems().size());
+        assertEquals(7, view.getTotalItems());
+    }
+
+    private static ProductSummary product(long id) {
+        return new ProductSummary(id, "p" + id, null, 2.0, 3.0, 10, 1L, "c", null, null, true, false);
+    }
+}
@@ -0,0 +1,100 @@
+package com.ecommerce.library.catalog;
+
+import com.ecommerce.library.dto.CategoryDto;
+import com.ecommerce.library.dto.ProductSummary;
+import com.ecommerce.library.model.Category;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class CatalogSnapshotTest {
+    private final Category sweets = new Category(1L, "Sweets", true, false);
+    private final Category grill = new Category(2L, "Grill", true, false);
+    private final Category hidden = new Category(3L, "Hidden", false, true);
+
+    @Test
+    void indexesActiveProductsByIdCategoryAndPrice() {
+        CatalogSnapshot snapshot = CatalogSnapshot.of(1, List.of(
+                product(3L, "Doner", 9.5, grill, true),
+                product(1L, "Baklava", 4.0, sweets, true),
+                product(2L, "Lokum", 2.5, sweets, true),
+                product(4L, "Old kebab", 7.0, grill, false)), List.of(grill, sweets, hidden));
+
+        assertEquals(List.of(1L, 2L, 3L), ids(snapshot.getProducts()));
+        assertEquals(List.of(2L, 1L, 3L), ids(snapshot.getProducts(snapshot.getPriceIndex().lowest(10))));
+        assertEquals(List.of(1L, 2L), ids(snapshot.getProductsByCategoryId(1L)));
+        assertEquals(List.of(3L), ids(snapshot.getProductsByCategoryName("Grill")));
+        assertNull(snapshot.getProduct(4L));
+        assertEquals(List.of(new CategoryDto(1L, "Sweets", 2L), new CategoryDto(2L, "Grill", 1L)),
+                snapshot.getCategorySizes());
+    }
+
+    @Test
+    void changesProduceNewSnapshotsAndLeaveOldOnesIntact() {
+        CatalogSnapshot first = CatalogSnapshot.of(1, List.of(product(1L, "Baklava", 4.0, sweets, true)), List.of(sweets, grill));
+
+        CatalogSnapshot second = first.withProduct(2, product(2L, "Adana", 11.0, grill, true));
+        CatalogSnapshot third = second.withProduct(3, product(1L, "Baklava", 4.0, sweets, false));
+
+        assertEquals(List.of(1L), ids(first.getProducts()));
+        assertEquals(List.of(1L, 2L), ids(second.getProducts()));
+        assertEquals(List.of(2L), ids(third.getProducts()));
+        assertEquals(3, third.getVersion());
+        assertEquals(0L, third.getCategorySizes().get(0).getProductSize());
+        assertArrayEquals(new long[]{1L}, first.getPriceIndex().lowest(10));
+        assertArrayEquals(new long[]{2L, 1L}, second.getPriceIndex().highest(10));
+        assertArrayEquals(new long[]{2L}, third.getPriceIndex().lowest(10));
+    }
+
+    @Test
+    void categoryCountsFollowActivationAndRecategorization() {
+        CatalogSnapshot first = CatalogSnapshot.of(1, List.of(
+                product(1L, "Baklava", 4.0, sweets, true),
+                product(2L, "Lokum", 2.5, sweets, true),
+                product(3L, "Doner", 9.5, grill, false)), List.of(sweets, grill));
+
+        CatalogSnapshot moved = first.withProduct(2, product(2L, "Lokum", 2.5, grill, true));
+        CatalogSnapshot enabled = moved.withProduct(3, product(3L, "Doner", 9.5, grill, true));
+        CatalogSnapshot disabled = enabled.withProduct(4, product(1L, "Baklava", 4.0, sweets, false));
+
+        assertEquals(List.of(new CategoryDto(1L, "Sweets", 2L), new CategoryDto(2L, "Grill", 0L)), first.getCategorySizes());
+        assertEquals(List.of(new CategoryDto(1L, "Sweets", 1L), new CategoryDto(2L, "Grill", 1L)), moved.getCategorySizes());
+        assertEquals(List.of(2L, 3L), ids(enabled.getProductsByCategoryId(2L)));
+        assertEquals(List.of(2L, 3L), ids(enabled.getProductsByCategoryName("Grill")));
+        assertEquals(List.of(new CategoryDto(1L, "Sweets", 0L), new CategoryDto(2L, "Grill", 2L)), disabled.getCategorySizes());
+        assertEquals(List.of(), disabled.getProductsByCategoryName("Sweets"));
+    }
+
+    @Test
+    void migratedImagesKeepTheIndexes() {
+        CatalogSnapshot first = CatalogSnapshot.of(1, List.of(
+                product(1L, "Baklava", 4.0, sweets, true),
+                product(2L, "Lokum", 2.5, sweets, true)), List.of(sweets));
+
+        CatalogSnapshot migrated = first.withImageKeys(2, Map.of(2L, "key2", 9L, "key9"));
+
+        assertEquals(2, migrated.getVersion());
+        assertEquals("key2", migrated.getProduct(2L).getImageKey());
+        assertNull(migrated.getProduct(2L).getImage());
+        assertNull(first.getProduct(2L).getImageKey());
+        assertSame(migrated.getProduct(2L), migrated.getProductsByCategoryName("Sweets").get(1));
+        assertSame(migrated.getProduct(2L), migrated.getProductsByCategoryId(1L).get(1));
+        assertEquals(List.of(2L, 1L), ids(migrated.getProducts(migrated.getPriceIndex().lowest(10))));
+        assertEquals(first.getCategorySizes(), migrated.getCategorySizes());
+    }
+
+    private static ProductSummary product(Long id, String name, double price, Category category, boolean active) {
+        return new ProductSummary(id, name, null, price, 0, 0, category.getId(), category.getName(), null, null,
+                active, !active);
+    }
+
+    private static List<Long> ids(List<ProductSummary> products) {
+        return products.stream().map(ProductSummary::getId).toList();
+    }
+}
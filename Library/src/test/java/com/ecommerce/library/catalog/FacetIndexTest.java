@@ -0,0 +1,159 @@
+package com.ecommerce.library.catalog;
+
+import com.ecommerce.library.dto.ProductSummary;
+import com.ecommerce.library.model.Category;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FacetIndexTest {
+    private static final double[] BOUNDS = {10, 25};
+
+    private final Category sweets = new Category(1L, "Sweets", true, false);
+    private final Category grill = new Category(2L, "Grill", true, false);
+
+    @Test
+    void combinesFacetsAndCountsEachAgainstTheOthers() {
+        FacetIndex index = FacetIndex.of(CatalogSnapshot.of(1, List.of(
+                product(1L, sweets, 4.0, 3, 0),
+                product(2L, sweets, 12.0, 0, 10.0),
+                product(3L, grill, 30.0, 5, 25.0),
+                product(4L, grill, 8.0, 1, 0),
+                product(5L, grill, 15.0, 2, 12.0)), List.of(sweets, grill)), BOUNDS);
+
+        FacetResult result = index.filter(new FacetQuery(Set.of(2L), Set.of(0, 1), true, false), PageRequest.of(0, 9));
+
+        assertEquals(List.of(4L, 5L), ids(result));
+        assertEquals(Map.of(1L, 1, 2L, 2), result.categoryCounts());
+        assertEquals(List.of(new PriceBand(0, 0, 10, 1), new PriceBand(1, 10, 25, 1),
+                new PriceBand(2, 25, Double.POSITIVE_INFINITY, 1)), result.priceBands());
+        assertEquals(2, result.inStockCount());
+        assertEquals(1, result.onSaleCount());
+    }
+
+    @Test
+    void emptyQueryMatchesEverythingAndPages() {
+        List<ProductSummary> products = new ArrayList<>();
+        for (long id = 1; id <= 150; id++) {
+            products.add(product(id, id % 2 == 0 ? sweets : grill, id, (int) (id % 3), 0));
+        }
+        FacetIndex index = FacetIndex.of(CatalogSnapshot.of(1, products, List.of(sweets, grill)), BOUNDS);
+
+        FacetResult first = index.filter(new FacetQuery(null, null, false, false), PageRequest.of(0, 9));
+        FacetResult last = index.filter(new FacetQuery(Set.of(1L), null, true, false), PageRequest.of(5, 9));
+
+        assertEquals(150, first.products().getTotalElements());
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L), ids(first));
+        assertEquals(50, last.products().getTotalElements());
+        assertEquals(List.of(136L, 140L, 142L, 146L, 148L), ids(last));
+    }
+
+    @Test
+    void unknownFacetValuesMatchNothing() {
+        FacetIndex index = FacetIndex.of(CatalogSnapshot.of(1, List.of(product(1L, sweets, 4.0, 3, 0)),
+                List.of(sweets)), BOUNDS);
+
+        assertEquals(0, index.filter(new FacetQuery(Set.of(9L), null, false, false), PageRequest.of(0, 9))
+                .products().getTotalElements());
+        assertEquals(0, index.filter(new FacetQuery(null, Set.of(7), false, false), PageRequest.of(0, 9))
+                .products().getTotalElements());
+    }
+
+    /**
+     * One category big enough for a bitmap and many that keep their positions, filtered and counted together
+     */
+    @Test
+    void mixesDenseAndSparseCategories() {
+        Random random = new Random(7);
+        List<Category> categories = new ArrayList<>();
+        for (long id = 1; id <= 41; id++) {
+            categories.add(new Category(id, "Category " + id, true, false));
+        }
+        List<ProductSummary> products = new ArrayList<>();
+        for (long id = 1; id <= 640; id++) {
+            Category category = id % 16 == 0 ? categories.get(1 + random.nextInt(40)) : categories.get(0);
+            products.add(product(id, category, random.nextInt(40), random.nextInt(3), 0));
+        }
+        FacetIndex index = FacetIndex.of(CatalogSnapshot.of(1, products, categories), BOUNDS);
+
+        for (Set<Long> selected : List.of(Set.of(1L), Set.of(2L, 3L, 4L), Set.of(1L, 5L, 41L))) {
+            FacetQuery query = new FacetQuery(selected, Set.of(0, 1, 2), true, false);
+            FacetResult result = index.filter(query, PageRequest.of(0, 1_000));
+
+            assertEquals(products.stream().filter(product -> matches(index, query, product))
+                    .map(ProductSummary::getId).toList(), ids(result));
+            for (Category category : categories) {
+                long inStock = products.stream().filter(product -> product.getCategoryId().equals(category.getId())
+                        && product.getCurrentQuantity() > 0).count();
+                assertEquals(inStock, (long) result.categoryCounts().getOrDefault(category.getId(), 0));
+            }
+        }
+    }
+
+    /**
+     * Multi-facet queries over 1 000 000 products, with every facet count, should stay under a millisecond
+     */
+    @Test
+    @Tag("benchmark")
+    void benchmarkMultiFacetQueries() {
+        Random random = new Random(42);
+        List<Category> categories = new ArrayList<>();
+        for (long id = 1; id <= 20; id++) {
+            categories.add(new Category(id, "Category " + id, true, false));
+        }
+        int size = 1_000_000;
+        List<ProductSummary> products = new ArrayList<>(size);
+        for (long id = 1; id <= size; id++) {
+            products.add(product(id, categories.get(random.nextInt(categories.size())), random.nextInt(200),
+                    random.nextInt(4), random.nextInt(5) == 0 ? 1.0 : 0));
+        }
+        FacetIndex index = FacetIndex.of(CatalogSnapshot.of(1, products, categories), new double[]{10, 25, 50, 100});
+
+        List<FacetQuery> queries = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            queries.add(new FacetQuery(Set.copyOf(List.of(1L + random.nextInt(20), 1L + random.nextInt(20))),
+                    Set.of(random.nextInt(5)), random.nextBoolean(), random.nextBoolean()));
+        }
+        for (FacetQuery query : queries) {
+            index.filter(query, PageRequest.of(0, 9));
+        }
+        long start = System.nanoTime();
+        long matches = 0;
+        for (FacetQuery query : queries) {
+            matches += index.filter(query, PageRequest.of(0, 9)).products().getTotalElements();
+        }
+        long nanos = System.nanoTime() - start;
+
+        long expected = 0;
+        for (FacetQuery query : queries) {
+            expected += products.stream().filter(product -> matches(index, query, product)).count();
+        }
+        assertEquals(expected, matches);
+        assertTrue(nanos / queries.size() < 1_000_000, nanos / queries.size() + " ns/query");
+    }
+
+    private static boolean matches(FacetIndex index, FacetQuery query, ProductSummary product) {
+        return query.categoryIds().contains(product.getCategoryId())
+                && query.priceBands().contains(index.bandOf(product.getCostPrice()))
+                && (!query.inStock() || product.getCurrentQuantity() > 0)
+                && (!query.onSale() || product.getSalePrice() > 0);
+    }
+
+    private static ProductSummary product(Long id, Category category, double price, int quantity, double salePrice) {
+        return new ProductSummary(id, null, null, price, salePrice, quantity, category.getId(), category.getName(),
+                null, null, true, false);
+    }
+
+    private static List<Long> ids(FacetResult result) {
+        return result.products().getContent().stream().map(ProductSummary::getId).toList();
+    }
+}
@@ -0,0 +1,82 @@
+package com.ecommerce.library.catalog;
+
+import com.ecommerce.library.dto.ProductSummary;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class PriceIndexTest {
+
+    @Test
+    void answersTopAndBottomByPriceThenId() {
+        PriceIndex index = PriceIndex.of(List.of(product(1L, 5.0), product(2L, 2.0), product(3L, 5.0), product(4L, 9.0)));
+
+        assertArrayEquals(new long[]{2L, 1L, 3L}, index.lowest(3));
+        assertArrayEquals(new long[]{4L, 3L, 1L}, index.highest(3));
+        assertArrayEquals(new long[]{4L, 3L, 1L, 2L}, index.highest(9));
+    }
+
+    @Test
+    void pagesThroughAnInclusivePriceRange() {
+        PriceIndex index = PriceIndex.of(List.of(product(1L, 1.0), product(2L, 2.0), product(3L, 3.0),
+                product(4L, 3.0), product(5L, 4.0), product(6L, 8.0)));
+
+        assertEquals(4, index.count(2.0, 4.0));
+        assertArrayEquals(new long[]{2L, 3L, 4L}, index.range(2.0, 4.0, 0, 3));
+        assertArrayEquals(new long[]{5L}, index.range(2.0, 4.0, 3, 3));
+        assertArrayEquals(new long[0], index.range(2.0, 4.0, 6, 3));
+        assertEquals(0, index.count(5.0, 7.0));
+        assertEquals(0, index.count(4.0, 2.0));
+    }
+
+    @Test
+    void updatesIncrementallyWithoutTouchingTheOriginal() {
+        PriceIndex first = PriceIndex.of(List.of(product(1L, 5.0), product(2L, 2.0)));
+
+        PriceIndex second = first.with(3L, 3.0);
+        PriceIndex third = second.without(1L, 5.0).with(1L, 1.0);
+
+        assertArrayEquals(new long[]{2L, 1L}, first.lowest(9));
+        assertArrayEquals(new long[]{2L, 3L, 1L}, second.lowest(9));
+        assertArrayEquals(new long[]{1L, 2L, 3L}, third.lowest(9));
+        assertSame(third, third.with(2L, 2.0));
+        assertSame(third, third.without(7L, 2.0));
+    }
+
+    @Test
+    void staysSortedUnderRandomChanges() {
+        Random random = new Random(42);
+        List<ProductSummary> expected = new ArrayList<>();
+        PriceIndex index = PriceIndex.of(List.of());
+        for (long id = 1; id <= 2_000; id++) {
+            ProductSummary product = product(id, random.nextInt(100));
+            expected.add(product);
+            index = index.with(id, product.getCostPrice());
+            if (random.nextInt(4) == 0) {
+                ProductSummary removed = expected.remove(random.nextInt(expected.size()));
+                index = index.without(removed.getId(), removed.getCostPrice());
+            }
+        }
+        expected.sort(Comparator.comparingDouble(ProductSummary::getCostPrice).thenComparing(ProductSummary::getId));
+
+        long[] ids = expected.stream().mapToLong(ProductSummary::getId).toArray();
+        assertArrayEquals(ids, index.lowest(ids.length));
+        long[] between = expected.stream().filter(p -> p.getCostPrice() >= 10 && p.getCostPrice() <= 20)
+                .mapToLong(ProductSummary::getId).toArray();
+        assertArrayEquals(between, index.range(10, 20, 0, ids.length));
+        assertEquals(between.length, index.count(10, 20));
+        assertEquals(Arrays.toString(Arrays.copyOfRange(between, 5, 10)), Arrays.toString(index.range(10, 20, 5, 5)));
+    }
+
+    private static ProductSummary product(Long id, double price) {
+        return new ProductSummary(id, null, null, price, 0, 0, null, null, null, null, true, false);
+    }
+}
@@ -0,0 +1,54 @@
+package com.ecommerce.library.catalog;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RandomProductSamplerTest {
+
+    @Test
+    void drawsDistinctIds() {
+        long[] ids = new long[100];
+        Arrays.setAll(ids, i -> i + 1);
+
+        for (int round = 0; round < 1_000; round++) {
+            long[] drawn = RandomProductSampler.sample(ids, 9);
+            Set<Long> distinct = new HashSet<>();
+            for (long id : drawn) {
+                assertTrue(id >= 1 && id <= 100);
+                distinct.add(id);
+            }
+            assertEquals(9, distinct.size());
+        }
+    }
+
+    @Test
+    void returnsEverythingWhenCatalogIsSmall() {
+        long[] drawn = RandomProductSampler.sample(new long[]{5, 6, 7}, 9);
+
+        Arrays.sort(drawn);
+        assertEquals("[5, 6, 7]", Arrays.toString(drawn));
+    }
+
+    @Test
+    void coversTheCatalogEvenly() {
+        long[] ids = new long[20];
+        Arrays.setAll(ids, i -> i);
+        int[] hits = new int[20];
+        int rounds = 20_000;
+        for (int round = 0; round < rounds; round++) {
+            for (long id : RandomProductSampler.sample(ids, 9)) {
+                hits[(int) id]++;
+            }
+        }
+        double expected = rounds * 9 / 20.0;
+        for (int hit : hits) {
+            assertTrue(Math.abs(hit - expected) < expected * 0.1, "hits " + hit + " expected about " + expected);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.ecommerce.library.catalog;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+class RecentlyViewedTest {
+
+    @Test
+    void keepsTheLastViewsNewestFirst() {
+        RecentlyViewed recentlyViewed = new RecentlyViewed(3);
+        for (long id = 1; id <= 5; id++) {
+            recentlyViewed.add(id);
+        }
+
+        assertArrayEquals(new long[]{5, 4, 3}, recentlyViewed.ids());
+    }
+
+    @Test
+    void movesARepeatedViewToTheFront() {
+        RecentlyViewed recentlyViewed = new RecentlyViewed(4);
+        recentlyViewed.add(1);
+        recentlyViewed.add(2);
+        recentlyViewed.add(3);
+        recentlyViewed.add(1);
+        recentlyViewed.add(1);
+
+        assertArrayEquals(new long[]{1, 3, 2}, recentlyViewed.ids());
+
+        recentlyViewed.add(4);
+        recentlyViewed.add(5);
+        recentlyViewed.add(3);
+
+        assertArrayEquals(new long[]{3, 5, 4, 1}, recentlyViewed.ids());
+    }
+
+    @Test
+    void startsEmpty() {
+        assertArrayEquals(new long[0], new RecentlyViewed(4).ids());
+    }
+}
@@ -0,0 +1,60 @@
+package com.ecommerce.library.catalog;
+
+import com.ecommerce.library.dto.ProductSummary;
+import com.ecommerce.library.model.Category;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+class RelatedIndexTest {
+    private final Category sweets = new Category(1L, "Sweets", true, false);
+    private final Category grill = new Category(2L, "Grill", true, false);
+
+    private final CatalogSnapshot snapshot = CatalogSnapshot.of(1, List.of(
+            product(1L, sweets, true),
+            product(2L, sweets, true),
+            product(3L, sweets, true),
+            product(4L, sweets, true),
+            product(5L, grill, true),
+            product(6L, grill, true),
+            product(7L, grill, false)), List.of(sweets, grill));
+
+    @Test
+    void fillsWithTheMostOrderedProductsOfTheCategory() {
+        RelatedIndex index = RelatedIndex.of(snapshot, List.of(), Map.of(3L, 5L, 4L, 2L), 2);
+
+        assertArrayEquals(new long[]{3, 4}, index.get(1L));
+        assertArrayEquals(new long[]{4, 1}, index.get(3L));
+        assertArrayEquals(new long[]{6}, index.get(5L));
+    }
+
+    @Test
+    void putsProductsBoughtTogetherFirst() {
+        List<Object[]> coPurchases = List.of(
+                new Object[]{1L, 5L, 1L},
+                new Object[]{1L, 6L, 3L},
+                new Object[]{1L, 7L, 9L},
+                new Object[]{5L, 1L, 1L});
+
+        RelatedIndex index = RelatedIndex.of(snapshot, coPurchases, Map.of(3L, 5L), 3);
+
+        assertArrayEquals(new long[]{6, 5, 3}, index.get(1L));
+        assertArrayEquals(new long[]{1, 6}, index.get(5L));
+    }
+
+    @Test
+    void hasNothingForUnknownProducts() {
+        RelatedIndex index = RelatedIndex.of(snapshot, List.of(), Map.of(), 4);
+
+        assertArrayEquals(new long[0], index.get(7L));
+        assertArrayEquals(new long[0], index.get(42L));
+    }
+
+    private ProductSummary product(Long id, Category category, boolean active) {
+        return new ProductSummary(id, "Product " + id, null, 10.0, 0, 0, category.getId(), category.getName(),
+                null, null, active, !active);
+    }
+}
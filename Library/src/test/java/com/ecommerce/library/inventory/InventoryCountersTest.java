@@ -0,0 +1,369 @@
+package com.ecommerce.library.inventory;
+
+import com.ecommerce.library.model.StockJournalEntry;
+import com.ecommerce.library.repository.ProductRepository;
+import com.ecommerce.library.repository.StockJournalRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * The journal is an in-memory table: saved rows get the next id, but are only visible to the flush once the test
+ * commits them
+ */
+class InventoryCountersTest {
+    private final ProductRepository productRepository = mock(ProductRepository.class);
+
+    private final StockJournalRepository journalRepository = mock(StockJournalRepository.class);
+
+    private final Map<Long, AtomicInteger> stock = new ConcurrentHashMap<>();
+
+    private final NavigableMap<Long, StockJournalEntry> journal = new ConcurrentSkipListMap<>();
+
+    private final Map<Long, StockJournalEntry> written = new ConcurrentHashMap<>();
+
+    private final AtomicLong lastJournalId = new AtomicLong();
+
+    private volatile boolean commitOnSave = true;
+
+    @BeforeEach
+    void fakeTables() {
+        when(productRepository.findCurrentQuantity(anyLong())).thenAnswer(call -> {
+            AtomicInteger row = stock.get(call.<Long>getArgument(0));
+            return row == null ? null : row.get();
+        });
+        when(productRepository.takeStock(anyLong(), anyInt())).thenAnswer(call ->
+                stock.get(call.<Long>getArgument(0)).addAndGet(-call.<Integer>getArgument(1)) >= 0 ? 1 : 0);
+        when(journalRepository.save(any())).thenAnswer(call -> {
+            StockJournalEntry entry = call.getArgument(0);
+            entry.setId(lastJournalId.incrementAndGet());
+            written.put(entry.getId(), entry);
+            if (commitOnSave) {
+                journal.put(entry.getId(), entry);
+            }
+            return entry;
+        });
+        when(journalRepository.findOldest(any())).thenAnswer(call ->
+                journal.values().stream().limit(call.<Pageable>getArgument(0).getPageSize()).toList());
+        when(journalRepository.sumQuantities(anyCollection())).thenAnswer(call -> {
+            Collection<Long> products = call.getArgument(0);
+            Map<Long, Long> sums = new HashMap<>();
+            for (StockJournalEntry entry : journal.values()) {
+                if (products.contains(entry.getProductId())) {
+                    sums.merge(entry.getProductId(), (long) entry.getQuantity(), Long::sum);
+                }
+            }
+            List<Object[]> rows = new ArrayList<>();
+            sums.forEach((id, sum) -> rows.add(new Object[]{id, sum}));
+            return rows;
+        });
+        doAnswer(call -> {
+            call.<Iterable<Long>>getArgument(0).forEach(journal::remove);
+            return null;
+        }).when(journalRepository).deleteAllByIdInBatch(any());
+    }
+
+    @Test
+    void startsFromTheStockMinusTheJournal() {
+        stock.put(1L, new AtomicInteger(50));
+        stock.put(2L, new AtomicInteger(3));
+        journalRepository.save(new StockJournalEntry(null, 1L, 7));
+        doReturn(List.of()).when(journalRepository).findOldest(any());
+        InventoryCounters counters = counters(1, 2);
+
+        counters.start();
+
+        assertEquals(43, counters.available(1L));
+        assertEquals(3, counters.available(2L));
+    }
+
+    @Test
+    void flushAppliesTheCommittedRowsAndDeletesThem() {
+        stock.put(1L, new AtomicInteger(50));
+        stock.put(2L, new AtomicInteger(10));
+        InventoryCounters counters = counters(1);
+        counters.start();
+        journalRepository.save(new StockJournalEntry(null, 1L, 2));
+        journalRepository.save(new StockJournalEntry(null, 1L, 1));
+        journalRepository.save(new StockJournalEntry(null, 2L, -4));
+
+        counters.flush();
+
+        verify(productRepository).takeStock(1L, 3);
+        verify(productRepository).takeStock(2L, -4);
+        assertEquals(47, stock.get(1L).get());
+        assertEquals(14, stock.get(2L).get());
+        assertTrue(journal.isEmpty());
+    }
+
+    /**
+     * Order A gets the lower journal id but commits after order B was flushed; a cutoff by id would skip A for good
+     */
+    @Test
+    void appliesARowThatCommitsAfterAHigherOneWasFlushed() {
+        stock.put(1L, new AtomicInteger(50));
+        InventoryCounters counters = counters(1);
+        counters.start();
+        commitOnSave = false;
+
+        List<TransactionSynchronization> orderA = prepare(() -> assertNotNull(counters.tryReserve(1L, 2)));
+        List<TransactionSynchronization> orderB = prepare(() -> assertNotNull(counters.tryReserve(1L, 3)));
+        commit(orderB, 2L);
+        counters.flush();
+        assertEquals(47, stock.get(1L).get());
+
+        commit(orderA, 1L);
+        counters.flush();
+
+        assertEquals(45, stock.get(1L).get());
+        assertTrue(journal.isEmpty());
+        counters.reconcile();
+        assertEquals(45, counters.available(1L));
+    }
+
+    @Test
+    void doesNothingUntilStarted() {
+        InventoryCounters counters = counters(1);
+
+        counters.flush();
+        counters.reconcile();
+
+        assertFalse(counters.isHot(1L));
+        verify(journalRepository, never()).findOldest(any());
+    }
+
+    @Test
+    void cancelsAReservationOnceAndJournalsNothing() {
+        stock.put(1L, new AtomicInteger(5));
+        InventoryCounters counters = counters(1);
+        counters.start();
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            InventoryCounters.Reservation reservation = counters.tryReserve(1L, 4);
+            assertNotNull(reservation);
+            assertNull(counters.tryReserve(1L, 2));
+            reservation.cancel();
+            reservation.cancel();
+            for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+                synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+            }
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertEquals(5, counters.available(1L));
+        assertTrue(journal.isEmpty());
+    }
+
+    @Test
+    void releasesThroughTheJournal() {
+        stock.put(1L, new AtomicInteger(5));
+        InventoryCounters counters = counters(1);
+        counters.start();
+
+        counters.release(1L, 2);
+
+        assertEquals(7, counters.available(1L));
+        counters.flush();
+        assertEquals(7, stock.get(1L).get());
+    }
+
+    @Test
+    void flushesTheJournalAtShutdown() {
+        stock.put(1L, new AtomicInteger(50));
+        InventoryCounters counters = counters(1);
+        counters.start();
+        assertNotNull(counters.tryReserve(1L, 6));
+
+        counters.shutdown();
+
+        assertEquals(44, stock.get(1L).get());
+        assertTrue(journal.isEmpty());
+    }
+
+    /**
+     * Orders commit their journal rows while the counters are flushed and rebuilt over and over; the rebuilt
+     * counter must never hand out more than the stock minus the committed rows
+     */
+    @Test
+    void neverOversellsWhileTheCountersAreRebuilt() throws Exception {
+        int initial = 20_000;
+        AtomicLong committed = new AtomicLong();
+        stock.put(1L, new AtomicInteger(initial));
+        InventoryCounters counters = counters(1);
+        counters.start();
+        AtomicBoolean ordering = new AtomicBoolean(true);
+        ExecutorService rebuilds = Executors.newSingleThreadExecutor();
+        Future<?> rebuilding = rebuilds.submit(() -> {
+            while (ordering.get()) {
+                counters.reconcile();
+            }
+        });
+
+        run(8, 5_000, random -> {
+            int quantity = 1 + random.nextInt(3);
+            TransactionSynchronizationManager.initSynchronization();
+            try {
+                boolean reserved = counters.tryReserve(1L, quantity) != null;
+                List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+                for (TransactionSynchronization synchronization : synchronizations) {
+                    synchronization.beforeCommit(false);
+                }
+                if (reserved) {
+                    committed.addAndGet(quantity);
+                }
+                for (TransactionSynchronization synchronization : synchronizations) {
+                    synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+                }
+            } finally {
+                TransactionSynchronizationManager.clearSynchronization();
+            }
+        });
+        ordering.set(false);
+        rebuilding.get();
+        rebuilds.shutdown();
+
+        assertTrue(committed.get() <= initial, "sold " + committed.get() + " of " + initial);
+        counters.reconcile();
+        assertEquals(initial - committed.get(), counters.available(1L));
+        assertEquals(initial - committed.get(), stock.get(1L).get());
+    }
+
+    @Test
+    void stripedCounterNeverGoesBelowZero() throws Exception {
+        StripedCounter counter = new StripedCounter(16, 10_000);
+        AtomicLong taken = new AtomicLong();
+        run(32, 5_000, random -> {
+            int quantity = 1 + random.nextInt(5);
+            if (counter.tryTake(quantity)) {
+                taken.addAndGet(quantity);
+            }
+        });
+
+        assertEquals(10_000, taken.get() + counter.sum());
+        assertTrue(counter.sum() < 5);
+    }
+
+    /**
+     * Stock for exactly two takes of 5, spread so that no cell holds a whole take and every taker has to gather;
+     * with a third taker racing them, still exactly two are served
+     */
+    @Test
+    void stripedCounterServesEveryTakeTheStockCovers() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            for (int round = 0; round < 2_000; round++) {
+                StripedCounter counter = new StripedCounter(8, 10);
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<Boolean>> takers = new ArrayList<>();
+                for (int t = 0; t < 2 + round % 2; t++) {
+                    takers.add(executor.submit(() -> {
+                        start.await();
+                        return counter.tryTake(5);
+                    }));
+                }
+                start.countDown();
+                int served = 0;
+                for (Future<Boolean> taker : takers) {
+                    served += taker.get() ? 1 : 0;
+                }
+                assertEquals(2, served, "round " + round);
+                assertEquals(0, counter.sum());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private InventoryCounters counters(long... products) {
+        return new InventoryCounters(productRepository, journalRepository, mock(PlatformTransactionManager.class),
+                products, 16);
+    }
+
+    /**
+     * Runs the step in a transaction up to its commit: the journal rows are written but not committed yet
+     */
+    private static List<TransactionSynchronization> prepare(Runnable step) {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            step.run();
+            List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+            for (TransactionSynchronization synchronization : synchronizations) {
+                synchronization.beforeCommit(false);
+            }
+            return synchronizations;
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private void commit(List<TransactionSynchronization> synchronizations, Long journalId) {
+        journal.put(journalId, written.get(journalId));
+        for (TransactionSynchronization synchronization : synchronizations) {
+            synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+        }
+    }
+
+    private interface Step {
+        void run(Random random);
+    }
+
+    private static void run(int threads, int steps, Step step) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int seed = t;
+            futures.add(executor.submit(() -> {
+                Random random = new Random(seed);
+                start.await();
+                for (int i = 0; i < steps; i++) {
+                    step.run(random);
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,160 @@
+package com.ecommerce.library.inventory;
+
+import com.ecommerce.library.repository.ProductRepository;
+import com.ecommerce.library.repository.StockJournalRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * The repository is replaced by counters that behave like the conditional UPDATE: check and decrement are atomic
+ */
+class StockReservationsTest {
+    private final Map<Long, AtomicInteger> stock = new ConcurrentHashMap<>();
+
+    private final ProductRepository productRepository = mock(ProductRepository.class);
+
+    private final StockReservations reservations = new StockReservations(productRepository,
+            new InventoryCounters(productRepository, mock(StockJournalRepository.class),
+                    mock(PlatformTransactionManager.class), new long[0], 16),
+            60_000);
+
+    @BeforeEach
+    void conditionalUpdates() {
+        when(productRepository.reserveStock(anyLong(), anyInt())).thenAnswer(call -> {
+            AtomicInteger left = stock.get(call.<Long>getArgument(0));
+            int quantity = call.getArgument(1);
+            while (true) {
+                int current = left.get();
+                if (current < quantity) {
+                    return 0;
+                }
+                if (left.compareAndSet(current, current - quantity)) {
+                    return 1;
+                }
+            }
+        });
+        when(productRepository.releaseStock(anyLong(), anyInt())).thenAnswer(call ->
+                stock.get(call.<Long>getArgument(0)).addAndGet(call.getArgument(1)) > 0 ? 1 : 0);
+        when(productRepository.findCurrentQuantity(anyLong())).thenAnswer(call ->
+                stock.get(call.<Long>getArgument(0)).get());
+    }
+
+    @Test
+    void updatesInProductIdOrder() {
+        stock.put(1L, new AtomicInteger(5));
+        stock.put(2L, new AtomicInteger(5));
+        stock.put(3L, new AtomicInteger(5));
+
+        reservations.reserve(Map.of(3L, 1, 1L, 2, 2L, 3));
+
+        InOrder order = inOrder(productRepository);
+        order.verify(productRepository).reserveStock(1L, 2);
+        order.verify(productRepository).reserveStock(2L, 3);
+        order.verify(productRepository).reserveStock(3L, 1);
+    }
+
+    @Test
+    void givesBackEarlierLinesWhenOneFails() {
+        stock.put(1L, new AtomicInteger(5));
+        stock.put(2L, new AtomicInteger(1));
+
+        OutOfStockException e = assertThrows(OutOfStockException.class,
+                () -> reservations.reserve(Map.of(1L, 2, 2L, 3)));
+
+        assertEquals(2L, e.getProductId());
+        assertEquals(5, stock.get(1L).get());
+        assertEquals(1, stock.get(2L).get());
+    }
+
+    @Test
+    void rejectsSoldOutProductsWithoutAnUpdate() {
+        stock.put(1L, new AtomicInteger(1));
+        reservations.reserve(Map.of(1L, 1));
+        assertThrows(OutOfStockException.class, () -> reservations.reserve(Map.of(1L, 1)));
+        assertTrue(reservations.isSoldOut(1L));
+
+        assertThrows(OutOfStockException.class, () -> reservations.reserve(Map.of(1L, 1)));
+        verify(productRepository, times(2)).reserveStock(1L, 1);
+
+        reservations.release(Map.of(1L, 1));
+        reservations.reserve(Map.of(1L, 1));
+        assertEquals(0, stock.get(1L).get());
+    }
+
+    @Test
+    void neverOversellsUnderContention() throws Exception {
+        long[] hot = {1, 2, 3, 4};
+        int initial = 500;
+        for (long id : hot) {
+            stock.put(id, new AtomicInteger(initial));
+        }
+        int threads = 64;
+        int ordersPerThread = 500;
+        AtomicLong[] sold = {new AtomicLong(), new AtomicLong(), new AtomicLong(), new AtomicLong()};
+        AtomicInteger rejected = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int seed = t;
+            futures.add(executor.submit(() -> {
+                Random random = new Random(seed);
+                start.await();
+                for (int i = 0; i < ordersPerThread; i++) {
+                    Map<Long, Integer> order = new HashMap<>();
+                    int lines = 1 + random.nextInt(3);
+                    for (int line = 0; line < lines; line++) {
+                        order.merge(hot[random.nextInt(hot.length)], 1 + random.nextInt(3), Integer::sum);
+                    }
+                    try {
+                        reservations.reserve(order);
+                        order.forEach((id, quantity) -> sold[(int) (id - 1)].addAndGet(quantity));
+                    } catch (OutOfStockException e) {
+                        rejected.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        for (long id : hot) {
+            int left = stock.get(id).get();
+            assertTrue(left >= 0, "oversold product " + id);
+            assertEquals(initial, left + sold[(int) (id - 1)].get());
+        }
+        assertTrue(rejected.get() > 0);
+    }
+}
@@ -0,0 +1,248 @@
+package com.ecommerce.library.model;
+
+import com.ecommerce.library.cart.CartConcurrency;
+import com.ecommerce.library.cart.CartExpiry;
+import com.ecommerce.library.cart.CartLineChange;
+import com.ecommerce.library.cart.CartStore;
+import com.ecommerce.library.cart.CartTotals;
+import com.ecommerce.library.dto.ProductDto;
+import com.ecommerce.library.dto.ShoppingCartDto;
+import com.ecommerce.library.repository.CartItemRepository;
+import com.ecommerce.library.repository.ShoppingCartRepository;
+import com.ecommerce.library.service.CustomerService;
+import com.ecommerce.library.service.impl.ShoppingCartServiceImpl;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ShoppingCartTest {
+    private final ShoppingCartServiceImpl service = new ShoppingCartServiceImpl(null, null, null,
+            new CartStore(null, null, null, null, false, 0, 0), null, null, null, new CartConcurrency(1, 1),
+                new CartExpiry(null, null, null, false, 30, 60_000, 500));
+
+    @Test
+    void keepsTotalsWhileLinesChange() {
+        ShoppingCart cart = new ShoppingCart();
+        CartItem phone = item(1, 2, 10.0);
+        cart.addItem(phone);
+        cart.addItem(item(2, 1, 5.5));
+
+        cart.setItemQuantity(phone, 5);
+        assertEquals(6, cart.getTotalItems());
+        assertEquals(55.5, cart.getTotalPrice(), 1e-9);
+
+        assertSame(phone, cart.removeItem(1));
+        assertNull(cart.findItem(1));
+        assertEquals(1, cart.getTotalItems());
+        assertEquals(5.5, cart.getTotalPrice(), 1e-9);
+
+        cart.removeItem(2);
+        assertEquals(0, cart.getTotalItems());
+        assertEquals(0.0, cart.getTotalPrice());
+    }
+
+    @Test
+    void indexesLinesLoadedWithTheCart() {
+        ShoppingCart cart = new ShoppingCart();
+        Set<CartItem> loaded = new HashSet<>();
+        loaded.add(item(7, 3, 2.0));
+        cart.setCartItems(loaded);
+
+        assertEquals(3, cart.findItem(7).getQuantity());
+        assertEquals(3, cart.getTotalItems());
+        assertEquals(6.0, cart.getTotalPrice(), 1e-9);
+    }
+
+    @Test
+    void sessionCartAddsToAnExistingLine() {
+        ShoppingCartDto cart = service.addItemToCartSession(null, product(1, 4.0), 1);
+        service.addItemToCartSession(cart, product(1, 4.0), 2);
+        service.addItemToCartSession(cart, product(2, 1.0), 1);
+        service.updateCartSession(cart, product(2, 1.0), 1);
+
+        assertEquals(2, cart.getCartItems().size());
+        assertEquals(5, cart.getTotalItems());
+        assertEquals(14.0, cart.getTotalPrice(), 1e-9);
+
+        service.removeItemFromCartSession(cart, product(1, 4.0), 0);
+        assertEquals(2, cart.getTotalItems());
+        assertEquals(2.0, cart.getTotalPrice(), 1e-9);
+    }
+
+    @Test
+    void combiningMergesLinesOfTheSameProduct() {
+        ShoppingCart cart = new ShoppingCart();
+        cart.addItem(item(1, 1, 4.0));
+        ShoppingCartDto session = service.addItemToCartSession(null, product(1, 4.0), 2);
+        service.addItemToCartSession(session, product(3, 1.0), 1);
+
+        service.combineCart(session, cart);
+
+        assertEquals(2, cart.getCartItems().size());
+        assertEquals(3, cart.findItem(1).getQuantity());
+        assertEquals(4, cart.getTotalItems());
+        assertEquals(13.0, cart.getTotalPrice(), 1e-9);
+    }
+
+    @Test
+    void updatesManyLinesInOneTransaction() {
+        CustomerService customerService = mock(CustomerService.class);
+        CartItemRepository itemRepository = mock(CartItemRepository.class);
+        ShoppingCartRepository cartRepository = mock(ShoppingCartRepository.class);
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        ShoppingCart cart = new ShoppingCart();
+        CartItem phone = item(1, 1, 10.0);
+        CartItem cover = item(2, 1, 2.0);
+        cart.addItem(phone);
+        cart.addItem(cover);
+        cart.addItem(item(3, 1, 1.0));
+        Customer customer = new Customer();
+        customer.setCart(cart);
+        when(customerService.findByUsername("ann")).thenReturn(customer);
+        when(cartRepository.save(cart)).thenReturn(cart);
+        ShoppingCartServiceImpl cartService = new ShoppingCartServiceImpl(cartRepository, itemRepository,
+                customerService, new CartStore(null, null, null, null, false, 0, 0), transactionManager, null, null,
+                new CartConcurrency(1, 1),
+                new CartExpiry(null, null, null, false, 30, 60_000, 500));
+
+        ShoppingCart updated = cartService.updateCartLines(List.of(new CartLineChange(1L, 4),
+                new CartLineChange(2L, 0), new CartLineChange(9L, 5)), "ann");
+
+        assertEquals(5, updated.getTotalItems());
+        assertEquals(41.0, updated.getTotalPrice(), 1e-9);
+        verify(itemRepository).deleteAllInBatch(List.of(cover));
+        verify(cartRepository).save(cart);
+        verify(transactionManager).commit(any());
+        assertEquals(List.of(new CartTotals.Line(1L, 4, 40.0)),
+                CartTotals.of(updated).lines().stream().filter(line -> line.productId() == 1L).toList());
+    }
+
+    @Test
+    void createsTheCartWhenTheCustomerHasNone() {
+        CustomerService customerService = mock(CustomerService.class);
+        ShoppingCartRepository cartRepository = mock(ShoppingCartRepository.class);
+        Customer customer = new Customer();
+        customer.setCart(null);
+        when(customerService.findByUsername("ann")).thenReturn(customer);
+        when(cartRepository.save(any(ShoppingCart.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        ShoppingCartServiceImpl cartService = new ShoppingCartServiceImpl(cartRepository,
+                mock(CartItemRepository.class), customerService, new CartStore(null, null, null, null, false, 0, 0),
+                mock(PlatformTransactionManager.class), null, null, new CartConcurrency(1, 1),
+                new CartExpiry(null, null, null, false, 30, 60_000, 500));
+
+        ShoppingCart cart = cartService.updateCartLines(List.of(new CartLineChange(1L, 4)), "ann");
+
+        assertEquals(0, cart.getTotalItems());
+        assertSame(customer, cart.getCustomer());
+        verify(cartRepository).save(cart);
+    }
+
+    /**
+     * One add, one quantity change and one lookup per product for carts of 1, 50 and 500 lines, the keyed cart
+     * against the former linear scan with full recount after every change; from 50 lines on the keyed cart wins
+     */
+    @Test
+    @Tag("benchmark")
+    void benchmarkCartOperations() {
+        for (int lines : new int[]{1, 50, 500}) {
+            assertEquals(linearCart(lines), keyedCart(lines), 1e-9);
+            int rounds = Math.max(20, 20_000 / lines);
+            long keyed = 0;
+            long linear = 0;
+            for (int warm = 0; warm < 2; warm++) {
+                keyed = time(rounds, () -> keyedCart(lines));
+                linear = time(rounds, () -> linearCart(lines));
+            }
+            if (lines >= 50) {
+                assertTrue(keyed < linear, lines + " lines: keyed " + keyed + " ns, linear " + linear + " ns");
+            }
+        }
+    }
+
+    private static double keyedCart(int lines) {
+        ShoppingCart cart = new ShoppingCart();
+        for (long id = 0; id < lines; id++) {
+            cart.addItem(item(id, 1, 1.5));
+        }
+        for (long id = 0; id < lines; id++) {
+            CartItem item = cart.findItem(id);
+            cart.setItemQuantity(item, item.getQuantity() + 1);
+        }
+        return cart.getTotalPrice();
+    }
+
+    private static double linearCart(int lines) {
+        Set<CartItem> items = new HashSet<>();
+        double total = 0;
+        for (long id = 0; id < lines; id++) {
+            items.add(item(id, 1, 1.5));
+            total = recount(items);
+        }
+        for (long id = 0; id < lines; id++) {
+            CartItem found = null;
+            for (CartItem item : items) {
+                if (item.getProduct().getId() == id) {
+                    found = item;
+                }
+            }
+            found.setQuantity(found.getQuantity() + 1);
+            total = recount(items);
+        }
+        return total;
+    }
+
+    private static double recount(Set<CartItem> items) {
+        double total = 0;
+        for (CartItem item : items) {
+            total += item.getUnitPrice() * item.getQuantity();
+        }
+        return total;
+    }
+
+    private interface Cart {
+        double build();
+    }
+
+    private static long time(int rounds, Cart cart) {
+        double sink = 0;
+        long begin = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            sink += cart.build();
+        }
+        long nanos = System.nanoTime() - begin;
+        if (sink < 0) {
+            throw new IllegalStateException();
+        }
+        return nanos;
+    }
+
+    private static CartItem item(long productId, int quantity, double unitPrice) {
+        Product product = new Product();
+        product.setId(productId);
+        CartItem item = new CartItem();
+        item.setProduct(product);
+        item.setQuantity(quantity);
+        item.setUnitPrice(unitPrice);
+        return item;
+    }
+
+    private static ProductDto product(long id, double costPrice) {
+        ProductDto product = new ProductDto();
+        product.setId(id);
+        product.setCostPrice(costPrice);
+        return product;
+    }
+}
@@ -0,0 +1,150 @@
+package com.ecommerce.library.search;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProductSearchIndexTest {
+
+    @Test
+    void ranksNameMatchesAboveDescriptionMatches() {
+        ProductSearchIndex index = new ProductSearchIndex(null);
+        index.index(1L, "Baklava", "Pistachio pastry with syrup", true);
+        index.index(2L, "Kunefe", "Cheese pastry, served like baklava", true);
+        index.index(3L, "Doner", "Grilled meat", true);
+
+        Page<Long> result = index.search("baklava", false, PageRequest.of(0, 10));
+
+        assertEquals(List.of(1L, 2L), result.getContent());
+        assertEquals(2, result.getTotalElements());
+    }
+
+    @Test
+    void matchesLastTermAsPrefixAndCyrillicText() {
+        ProductSearchIndex index = new ProductSearchIndex(null);
+        index.index(1L, "Баклава", "Сладкиш с орехи", true);
+        index.index(2L, "Doner kebab", "Chicken", true);
+
+        assertEquals(List.of(1L), index.search("бакл", false, Pageable.unpaged()).getContent());
+        assertEquals(List.of(2L), index.search("keb", false, Pageable.unpaged()).getContent());
+    }
+
+    @Test
+    void matchesAcrossScriptsAndToleratesTyposInFuzzyMode() {
+        ProductSearchIndex index = new ProductSearchIndex(null);
+        index.index(1L, "Кюфте", "Kebapche and kofte from minced meat", true);
+        index.index(2L, "Baklava", "Pistachio pastry", true);
+        index.index(3L, "Shopska salad", "Tomatoes, cucumbers, sirene", true);
+
+        assertEquals(List.of(2L), index.search("баклава", true, Pageable.unpaged()).getContent());
+        assertEquals(List.of(1L), index.search("кофте", true, Pageable.unpaged()).getContent());
+        assertTrue(index.search("bakalva", true, Pageable.unpaged()).isEmpty());
+        assertEquals(List.of(2L), index.search("bakalva", true, true, Pageable.unpaged()).getContent());
+        assertEquals(List.of(3L), index.search("шопска салта", true, true, Pageable.unpaged()).getContent());
+        assertEquals(List.of(1L), index.search("kyufte", true, true, Pageable.unpaged()).getContent());
+        assertTrue(index.search("pie", true, true, Pageable.unpaged()).isEmpty());
+    }
+
+    @Test
+    void exactMatchesRankAboveFuzzyOnes() {
+        ProductSearchIndex index = new ProductSearchIndex(null);
+        index.index(1L, "Kebab", "Grill", true);
+        index.index(2L, "Kebap", "Grill", true);
+
+        assertEquals(List.of(2L, 1L), index.search("kebap", true, true, Pageable.unpaged()).getContent());
+    }
+
+    @Test
+    void updatesAndRemovesIncrementally() {
+        ProductSearchIndex index = new ProductSearchIndex(null);
+        index.index(1L, "Ayran", "Yogurt drink", true);
+        index.index(1L, "Salgam", "Turnip juice", true);
+
+        assertTrue(index.search("ayran", false, Pageable.unpaged()).isEmpty());
+        assertEquals(List.of(1L), index.search("turnip", false, Pageable.unpaged()).getContent());
+
+        index.index(1L, "Salgam", "Turnip juice", false);
+        assertTrue(index.search("turnip", true, Pageable.unpaged()).isEmpty());
+        assertFalse(index.search("turnip", false, Pageable.unpaged()).isEmpty());
+
+        index.remove(1L);
+        assertEquals(0, index.size());
+        assertTrue(index.search("turnip", false, Pageable.unpaged()).isEmpty());
+    }
+
+    @Test
+    void pagesThroughRankedResults() {
+        ProductSearchIndex index = new ProductSearchIndex(null);
+        for (long id = 1; id <= 12; id++) {
+            index.index(id, "Lokum " + id, "Turkish delight", true);
+        }
+        Page<Long> first = index.search("lokum", false, PageRequest.of(0, 5));
+        Page<Long> last = index.search("lokum", false, PageRequest.of(2, 5));
+
+        assertEquals(12, first.getTotalElements());
+        assertEquals(3, first.getTotalPages());
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L), first.getContent());
+        assertEquals(List.of(11L, 12L), last.getContent());
+        assertTrue(index.search("lokum", false, PageRequest.of(3, 5)).isEmpty());
+    }
+
+    /**
+     * Compares the index with a linear substring scan, which is what "like %keyword%" does in MySQL
+     */
+    @Test
+    @Tag("benchmark")
+    void benchmarkAgainstSubstringScan() {
+        Random random = new Random(42);
+        String[] words = new String[5_000];
+        for (int i = 0; i < words.length; i++) {
+            StringBuilder word = new StringBuilder();
+            for (int j = 0; j < 6; j++) {
+                word.append((char) ('a' + random.nextInt(26)));
+            }
+            words[i] = word.toString();
+        }
+        for (int size : new int[]{10_000, 100_000}) {
+            ProductSearchIndex index = new ProductSearchIndex(null);
+            List<String[]> rows = new ArrayList<>(size);
+            for (long id = 1; id <= size; id++) {
+                String name = words[random.nextInt(words.length)] + " " + words[random.nextInt(words.length)];
+                String description = words[random.nextInt(words.length)] + " with " + words[random.nextInt(words.length)];
+                rows.add(new String[]{name, description});
+                index.index(id, name, description, true);
+            }
+
+            int rounds = 500;
+            long scanMatches = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < rounds; i++) {
+                String keyword = " " + words[i] + " ";
+                for (String[] row : rows) {
+                    if ((" " + row[0] + " ").contains(keyword) || (" " + row[1] + " ").contains(keyword)) {
+                        scanMatches++;
+                    }
+                }
+            }
+            long scanNanos = System.nanoTime() - start;
+
+            long indexMatches = 0;
+            start = System.nanoTime();
+            for (int i = 0; i < rounds; i++) {
+                indexMatches += index.search(words[i], true, PageRequest.of(0, 5)).getTotalElements();
+            }
+            long indexNanos = System.nanoTime() - start;
+
+            assertEquals(scanMatches, indexMatches);
+            assertTrue(indexNanos < scanNanos, "index " + indexNanos + " ns, scan " + scanNanos + " ns");
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.ecommerce.library.search;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TermTrieTest {
+
+    @Test
+    void computesLevenshteinDistance() {
+        assertEquals(0, TermTrie.distance("kebab", "kebab"));
+        assertEquals(1, TermTrie.distance("kebab", "kebap"));
+        assertEquals(2, TermTrie.distance("baklava", "bakalva"));
+        assertEquals(3, TermTrie.distance("kitten", "sitting"));
+        assertEquals(5, TermTrie.distance("", "ayran"));
+    }
+
+    @Test
+    void findsTheSameTermsAsAFullScan() {
+        Random random = new Random(7);
+        List<String> terms = randomTerms(random, 5_000);
+        TermTrie trie = new TermTrie();
+        terms.forEach(trie::add);
+        terms.forEach(trie::add);
+
+        assertEquals(new TreeSet<>(terms).size(), trie.size());
+        for (int i = 0; i < 200; i++) {
+            String word = typo(random, terms.get(random.nextInt(terms.size())));
+            for (int maxDistance = 0; maxDistance <= 2; maxDistance++) {
+                int limit = maxDistance;
+                Set<String> expected = terms.stream()
+                        .filter(term -> TermTrie.distance(word, term) <= limit)
+                        .collect(Collectors.toCollection(TreeSet::new));
+                Set<String> found = trie.search(word, maxDistance).stream()
+                        .map(TermTrie.Match::term)
+                        .collect(Collectors.toCollection(TreeSet::new));
+                assertEquals(expected, found);
+
+                Set<String> expectedWithPrefix = expected.stream()
+                        .filter(term -> term.charAt(0) == word.charAt(0))
+                        .collect(Collectors.toCollection(TreeSet::new));
+                Set<String> foundWithPrefix = trie.search(word, maxDistance, 1).stream()
+                        .map(TermTrie.Match::term)
+                        .collect(Collectors.toCollection(TreeSet::new));
+                assertEquals(expectedWithPrefix, foundWithPrefix);
+            }
+        }
+    }
+
+    /**
+     * Fuzzy lookups with two typos in a dictionary of 100 000 terms should keep p99 under a few milliseconds
+     */
+    @Test
+    @Tag("benchmark")
+    void benchmarkOneHundredThousandTerms() {
+        Random random = new Random(42);
+        List<String> terms = randomTerms(random, 100_000);
+        TermTrie trie = new TermTrie();
+        terms.forEach(trie::add);
+
+        int rounds = 2_000;
+        List<String> queries = new ArrayList<>(rounds);
+        for (int i = 0; i < rounds; i++) {
+            queries.add(typo(random, typo(random, terms.get(random.nextInt(terms.size())))));
+        }
+        for (String query : queries.subList(0, 200)) {
+            trie.search(query, ProductSearchIndex.maxEdits(query), 1);
+        }
+        long[] nanos = new long[rounds];
+        long found = 0;
+        for (int i = 0; i < rounds; i++) {
+            String query = queries.get(i);
+            long start = System.nanoTime();
+            found += trie.search(query, ProductSearchIndex.maxEdits(query), 1).size();
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+
+        assertTrue(found > 0);
+        long p99 = nanos[rounds * 99 / 100];
+        assertTrue(p99 < 5_000_000, "p99 " + p99 + " ns");
+    }
+
+    private static List<String> randomTerms(Random random, int count) {
+        List<String> terms = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            char[] term = new char[4 + random.nextInt(7)];
+            for (int j = 0; j < term.length; j++) {
+                term[j] = (char) ('a' + random.nextInt(26));
+            }
+            terms.add(new String(term));
+        }
+        return terms;
+    }
+
+    /**
+     * One random insertion, deletion or substitution
+     */
+    private static String typo(Random random, String word) {
+        StringBuilder typo = new StringBuilder(word);
+        int at = random.nextInt(word.length());
+        switch (random.nextInt(3)) {
+            case 0 -> typo.insert(at, (char) ('a' + random.nextInt(26)));
+            case 1 -> typo.deleteCharAt(at);
+            default -> typo.setCharAt(at, (char) ('a' + random.nextInt(26)));
+        }
+        return typo.toString();
+    }
+}
@@ -0,0 +1,107 @@
+package com.ecommerce.library.search;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TypeaheadTest {
+
+    @Test
+    void completesFromTheStartOfEveryWordMostPopularFirst() {
+        Typeahead typeahead = Typeahead.builder()
+                .add(product(1L, "Adana kebab"), 5)
+                .add(product(2L, "Kebab in pita"), 9)
+                .add(product(3L, "Baklava"), 1)
+                .add(new Suggestion(Suggestion.Type.CATEGORY, 7L, "Kebabs"), 14)
+                .build();
+
+        assertEquals(List.of(7L, 2L, 1L), ids(typeahead.complete("keb", 10)));
+        assertEquals(List.of(1L), ids(typeahead.complete("ADANA  k", 10)));
+        assertEquals(List.of(2L), ids(typeahead.complete("kebab i", 10)));
+        assertEquals(List.of(7L, 2L), ids(typeahead.complete("kebab", 2)));
+        assertEquals(List.of(), typeahead.complete("x", 10));
+        assertEquals(List.of(), typeahead.complete("  ", 10));
+        assertEquals(List.of(), typeahead.complete("keb", 0));
+        assertEquals(List.of(), typeahead.complete("keb", -1));
+    }
+
+    @Test
+    void matchesCyrillicNames() {
+        Typeahead typeahead = Typeahead.builder()
+                .add(product(1L, "Кюфте на скара"), 3)
+                .add(product(2L, "Кебапче"), 4)
+                .build();
+
+        assertEquals(List.of(2L, 1L), ids(typeahead.complete("к", 10)));
+        assertEquals(List.of(1L), ids(typeahead.complete("Ска", 10)));
+    }
+
+    @Test
+    void keepsOnlyTheBestCompletionsPerPrefix() {
+        Typeahead.Builder builder = Typeahead.builder();
+        for (long id = 1; id <= 50; id++) {
+            builder.add(product(id, "Salad " + id), id);
+        }
+        Typeahead typeahead = builder.build();
+
+        List<Suggestion> top = typeahead.complete("sal", 20);
+
+        assertEquals(Typeahead.MAX_COMPLETIONS, top.size());
+        assertEquals(50L, top.get(0).id());
+        assertEquals(41L, top.get(9).id());
+    }
+
+    /**
+     * Completions over 100 000 products should take a few hundred microseconds at most
+     */
+    @Test
+    @Tag("benchmark")
+    void benchmarkLookups() {
+        Random random = new Random(42);
+        String[] words = new String[5_000];
+        for (int i = 0; i < words.length; i++) {
+            char[] word = new char[4 + random.nextInt(6)];
+            for (int j = 0; j < word.length; j++) {
+                word[j] = (char) ('a' + random.nextInt(26));
+            }
+            words[i] = new String(word);
+        }
+        Typeahead.Builder builder = Typeahead.builder();
+        int size = 100_000;
+        for (long id = 1; id <= size; id++) {
+            builder.add(product(id, words[random.nextInt(words.length)] + " " + words[random.nextInt(words.length)]),
+                    random.nextInt(1_000));
+        }
+        Typeahead typeahead = builder.build();
+
+        int rounds = 100_000;
+        long[] nanos = new long[rounds];
+        long found = 0;
+        for (int i = 0; i < rounds; i++) {
+            String word = words[random.nextInt(words.length)];
+            String prefix = word.substring(0, 1 + random.nextInt(word.length()));
+            long began = System.nanoTime();
+            found += typeahead.complete(prefix, 8).size();
+            nanos[i] = System.nanoTime() - began;
+        }
+        Arrays.sort(nanos);
+
+        assertTrue(found > 0);
+        long p99 = nanos[rounds * 99 / 100];
+        assertTrue(p99 < 300_000, "p99 " + p99 + " ns");
+    }
+
+    private static Suggestion product(Long id, String name) {
+        return new Suggestion(Suggestion.Type.PRODUCT, id, name);
+    }
+
+    private static List<Long> ids(List<Suggestion> suggestions) {
+        return suggestions.stream().map(Suggestion::id).toList();
+    }
+}
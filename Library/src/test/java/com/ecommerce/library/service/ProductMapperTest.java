@@ -0,0 +1,40 @@
+package com.ecommerce.library.service;
+
+import com.ecommerce.library.dto.ProductSummary;
+import com.ecommerce.library.model.Category;
+import com.ecommerce.library.model.Product;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ProductMapperTest {
+    private final Category sweets = new Category(1L, "Sweets", true, false);
+
+    @Test
+    void dropsTheLegacyImageOnceTheImageIsInTheStore() {
+        ProductSummary migrated = ProductMapper.toSummary(product(1L, "abc123", "base64"));
+        ProductSummary legacy = ProductMapper.toSummary(product(2L, null, "base64"));
+
+        assertNull(migrated.getImage());
+        assertEquals("abc123", migrated.getImageKey());
+        assertEquals("base64", legacy.getImage());
+        assertEquals(1L, legacy.getCategoryId());
+        assertEquals("Sweets", legacy.getCategoryName());
+    }
+
+    @Test
+    void keepsProductsWithoutCategory() {
+        Product product = product(3L, "abc123", null);
+        product.setCategory(null);
+
+        ProductSummary summary = ProductMapper.toSummary(product);
+
+        assertNull(summary.getCategoryId());
+        assertNull(summary.getCategoryName());
+    }
+
+    private Product product(Long id, String imageKey, String image) {
+        return new Product(id, "Baklava", "Walnut baklava", 10, 4.5, 0, image, imageKey, sweets, true, false);
+    }
+}
@@ -0,0 +1,84 @@
+package com.ecommerce.library.service.impl;
+
+import com.ecommerce.library.cart.CartStore;
+import com.ecommerce.library.inventory.StockReservations;
+import com.ecommerce.library.model.Customer;
+import com.ecommerce.library.model.Order;
+import com.ecommerce.library.model.OrderDetail;
+import com.ecommerce.library.model.ShoppingCart;
+import com.ecommerce.library.repository.OrderDetailRepository;
+import com.ecommerce.library.repository.OrderRepository;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OrderServiceImplTest {
+    @Test
+    void checkoutTakesTheSameStatementsForAnyCartSize() {
+        for (int lines : new int[]{1, 500}) {
+            JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+            OrderRepository orderRepository = mock(OrderRepository.class);
+            OrderDetailRepository detailRepository = mock(OrderDetailRepository.class);
+            StockReservations stockReservations = mock(StockReservations.class);
+            List<Map<String, Object>> rows = new ArrayList<>();
+            Map<Long, Integer> quantities = new HashMap<>();
+            for (long product = 1; product <= lines; product++) {
+                rows.add(Map.of("product_id", product, "quantity", 2));
+                quantities.put(product, 2);
+            }
+            when(jdbcTemplate.queryForMap(OrderServiceImpl.LOCK_CART, 7L))
+                    .thenReturn(Map.of("total_items", lines * 2, "total_price", lines * 20.0));
+            when(jdbcTemplate.queryForList(OrderServiceImpl.CART_QUANTITIES, 7L)).thenReturn(rows);
+            when(orderRepository.save(any(Order.class))).thenAnswer(invocation -> {
+                Order order = invocation.getArgument(0);
+                order.setId(3L);
+                return order;
+            });
+            List<OrderDetail> details = List.of(new OrderDetail());
+            when(detailRepository.findAllByOrderId(3L)).thenReturn(details);
+            OrderServiceImpl service = new OrderServiceImpl(orderRepository, detailRepository, null,
+                    stockReservations, new CartStore(null, null, null, null, false, 0, 0), jdbcTemplate);
+
+            Order order = service.save(cart());
+
+            assertEquals(lines * 2, order.getQuantity());
+            assertEquals(lines * 20.0, order.getTotalPrice(), 1e-9);
+            assertSame(details, order.getOrderDetailList());
+            verify(stockReservations).reserve(quantities);
+            InOrder statements = inOrder(jdbcTemplate, orderRepository);
+            statements.verify(jdbcTemplate).queryForMap(OrderServiceImpl.LOCK_CART, 7L);
+            statements.verify(orderRepository).save(any(Order.class));
+            statements.verify(jdbcTemplate).update(OrderServiceImpl.COPY_LINES, 3L, 7L);
+            statements.verify(jdbcTemplate).update(OrderServiceImpl.DELETE_LINES, 7L);
+            statements.verify(jdbcTemplate).update(eq(OrderServiceImpl.EMPTY_CART), anyLong(), eq(7L));
+            verify(jdbcTemplate, times(3)).update(any(String.class), any(Object[].class));
+            verify(detailRepository, never()).save(any());
+        }
+    }
+
+    private static ShoppingCart cart() {
+        Customer customer = new Customer();
+        customer.setUsername("ann");
+        ShoppingCart cart = new ShoppingCart();
+        cart.setId(7L);
+        cart.setCustomer(customer);
+        return cart;
+    }
+}
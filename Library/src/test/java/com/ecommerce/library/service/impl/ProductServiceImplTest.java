@@ -0,0 +1,103 @@
+package com.ecommerce.library.service.impl;
+
+import com.ecommerce.library.dto.ProductDto;
+import com.ecommerce.library.dto.ProductSummary;
+import com.ecommerce.library.model.Product;
+import com.ecommerce.library.repository.ProductRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ProductServiceImplTest {
+    private final ProductRepository productRepository = mock(ProductRepository.class);
+
+    private final ProductServiceImpl service = new ProductServiceImpl(productRepository, null, null, null, null, null,
+            null, null, null, mock(ApplicationEventPublisher.class));
+
+    @Test
+    void addsOnlyTheChangeMadeInTheForm() {
+        Product product = product(7);
+        when(productRepository.getReferenceById(1L)).thenReturn(product);
+        when(productRepository.findCurrentQuantity(1L)).thenReturn(9);
+        when(productRepository.save(product)).thenReturn(product);
+
+        Product updated = service.update(null, form(10, 12));
+
+        verify(productRepository).adjustStock(1L, 2);
+        assertEquals(9, updated.getCurrentQuantity());
+    }
+
+    @Test
+    void leavesTheStockAloneWhenTheQuantityWasNotEdited() {
+        Product product = product(7);
+        when(productRepository.getReferenceById(1L)).thenReturn(product);
+        when(productRepository.save(product)).thenReturn(product);
+
+        service.update(null, form(10, 10));
+
+        verify(productRepository, never()).adjustStock(anyLong(), anyInt());
+    }
+
+    @Test
+    void seeksPastTheLastIdOnDeepPages() {
+        int pageNo = ProductServiceImpl.KEYSET_FROM_PAGE + 5;
+        List<ProductSummary> next = List.of(summary(91L), summary(92L));
+        when(productRepository.findSummariesAfterId(eq(90L), any())).thenReturn(next);
+        when(productRepository.count()).thenReturn(92L);
+
+        Page<ProductSummary> page = service.getAllProducts(pageNo, 90L);
+
+        assertEquals(next, page.getContent());
+        assertEquals(pageNo, page.getNumber());
+        assertEquals(16, page.getTotalPages());
+        verify(productRepository, never()).findAllSummaries(any(Pageable.class));
+    }
+
+    @Test
+    void usesOffsetsForTheFirstPagesAndWithoutALastId() {
+        when(productRepository.findAllSummaries(any(Pageable.class))).thenReturn(Page.empty());
+
+        service.getAllProducts(1, 6L);
+        service.getAllProducts(ProductServiceImpl.KEYSET_FROM_PAGE + 5, null);
+
+        verify(productRepository).findAllSummaries(PageRequest.of(1, 6, Sort.by("id")));
+        verify(productRepository).findAllSummaries(PageRequest.of(ProductServiceImpl.KEYSET_FROM_PAGE + 5, 6, Sort.by("id")));
+        verify(productRepository, never()).findSummariesAfterId(anyLong(), any());
+    }
+
+    private static ProductSummary summary(Long id) {
+        return new ProductSummary(id, "Baklava", "Walnut baklava", 4.5, 0, 10, 1L, "Sweets", "key" + id, null,
+                true, false);
+    }
+
+    private static Product product(int quantity) {
+        Product product = new Product();
+        product.setId(1L);
+        product.setCurrentQuantity(quantity);
+        return product;
+    }
+
+    private static ProductDto form(int loaded, int entered) {
+        ProductDto productDto = new ProductDto();
+        productDto.setId(1L);
+        productDto.setName("Baklava");
+        productDto.setLoadedQuantity(loaded);
+        productDto.setCurrentQuantity(entered);
+        return productDto;
+    }
+}
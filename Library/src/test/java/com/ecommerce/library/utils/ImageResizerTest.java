@@ -0,0 +1,47 @@
+package com.ecommerce.library.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ImageResizerTest {
+    @TempDir
+    Path root;
+
+    @Test
+    void writesEveryVariantNextToTheOriginal() throws Exception {
+        ImageUpload imageUpload = new ImageUpload(root.toString());
+        ImageResizer imageResizer = new ImageResizer(imageUpload, 1, 1);
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(2000, 1000, BufferedImage.TYPE_INT_ARGB), "png", png);
+        String key = imageUpload.store(png.toByteArray());
+
+        imageResizer.resize(key);
+
+        for (ImageVariant variant : ImageVariant.values()) {
+            Path file = imageUpload.resolve(key, variant);
+            assertTrue(Files.exists(file));
+            BufferedImage image = ImageIO.read(file.toFile());
+            assertEquals(variant.getMaxSize(), image.getWidth());
+            assertEquals(variant.getMaxSize() / 2, image.getHeight());
+        }
+        assertTrue(Files.size(imageUpload.resolve(key, ImageVariant.CARD)) < Files.size(imageUpload.resolve(key)));
+        imageResizer.shutdown();
+    }
+
+    @Test
+    void neverUpscalesSmallImages() {
+        BufferedImage scaled = ImageResizer.scale(new BufferedImage(80, 60, BufferedImage.TYPE_INT_RGB), 400);
+
+        assertEquals(80, scaled.getWidth());
+        assertEquals(60, scaled.getHeight());
+    }
+}
@@ -0,0 +1,39 @@
+package com.ecommerce.library.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ImageUploadTest {
+    @TempDir
+    Path root;
+
+    @Test
+    void storesImagesUnderTheirContentHash() throws Exception {
+        ImageUpload imageUpload = new ImageUpload(root.toString());
+        byte[] bytes = {1, 2, 3};
+
+        String key = imageUpload.store(bytes);
+
+        assertEquals("039058c6f2c0cb492c533b0a4d14ef77cc0f78abccced5287d84a1a2011cfb81", key);
+        assertEquals(key, imageUpload.store(bytes.clone()));
+        assertTrue(imageUpload.checkExist(key));
+        assertArrayEquals(bytes, Files.readAllBytes(root.resolve("03").resolve(key)));
+    }
+
+    @Test
+    void rejectsKeysThatAreNotHashes() {
+        ImageUpload imageUpload = new ImageUpload(root.toString());
+
+        assertFalse(imageUpload.checkExist("../../etc/passwd"));
+        assertThrows(IllegalArgumentException.class, () -> imageUpload.resolve("ab/../cd"));
+    }
+}